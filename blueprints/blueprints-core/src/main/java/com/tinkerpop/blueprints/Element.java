@@ -1,5 +1,6 @@
 package com.tinkerpop.blueprints;
 
+import java.util.Collections;
 import java.util.Map;
 import java.util.NoSuchElementException;
 import java.util.Set;
@@ -26,6 +27,14 @@ public abstract interface Element {
 
     public Map<String, Property> getProperties();
 
+    /**
+     * Get a read-only view of the properties of the element. Unlike {@link #getProperties()}, implementations should
+     * not copy the properties, so the view is meant for callers that only read them, such as serializers.
+     */
+    public default Map<String, Property> getPropertiesView() {
+        return Collections.unmodifiableMap(this.getProperties());
+    }
+
     public <V> Property<V> getProperty(final String key);
 
     public <V> void setProperty(final String key, final V value);
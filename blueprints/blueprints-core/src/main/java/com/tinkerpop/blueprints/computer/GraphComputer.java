@@ -29,6 +29,16 @@ public interface GraphComputer {
 
     public GraphComputer isolation(final Isolation isolation);
 
+    /**
+     * The number of threads that execute the {@link VertexProgram} on the vertices of the graph. An implementation that
+     * does not control its threads ignores it.
+     */
+    public default GraphComputer workers(final int workers) {
+        if (workers < 1)
+            throw Exceptions.workersMustBeAtLeastOne(workers);
+        return this;
+    }
+
     public GraphComputer program(final VertexProgram program);
 
     public Future<ComputeResult> submit();
@@ -117,6 +127,10 @@ public interface GraphComputer {
         public static IllegalStateException adjacentAnnotationsCanNotBeReadOrWritten() {
             return new IllegalStateException("The annotations of an adjacent elements properties can not be read or written");
         }
+
+        public static IllegalArgumentException workersMustBeAtLeastOne(final int workers) {
+            return new IllegalArgumentException("The number of workers must be at least 1: " + workers);
+        }
     }
 
 }
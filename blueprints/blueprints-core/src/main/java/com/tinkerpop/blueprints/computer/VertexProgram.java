@@ -3,9 +3,11 @@ package com.tinkerpop.blueprints.computer;
 import com.tinkerpop.blueprints.Vertex;
 
 import java.io.Serializable;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Objects;
+import java.util.function.BinaryOperator;
 
 /**
  * A {@link VertexProgram} represents one component of a distributed graph computation. Each applicable vertex
@@ -50,6 +52,17 @@ public interface VertexProgram<M extends Serializable> extends Serializable {
 
     public Map<String, KeyType> getComputeKeys();
 
+    /**
+     * The combiners of the messages by message label. The {@link GraphComputer} may combine the messages of a label
+     * that are sent to the same vertex as they are sent, so the vertex may receive fewer messages than were sent to
+     * it. A combiner must be associative and commutative.
+     *
+     * @return the combiners of the messages by message label
+     */
+    public default Map<String, BinaryOperator<M>> getMessageCombiners() {
+        return Collections.emptyMap();
+    }
+
     public static Map<String, KeyType> ofComputeKeys(final Object... computeKeys) {
         if (computeKeys.length % 2 != 0)
             throw new IllegalArgumentException("The provided arguments must have a size that is a factor of 2");
@@ -1,10 +1,13 @@
 package com.tinkerpop.blueprints.query.util;
 
+import com.tinkerpop.blueprints.Contains;
 import com.tinkerpop.blueprints.Edge;
 import com.tinkerpop.blueprints.Graph;
+import com.tinkerpop.blueprints.Property;
 import com.tinkerpop.blueprints.Vertex;
 import com.tinkerpop.blueprints.query.GraphQuery;
 
+import java.util.Collection;
 import java.util.function.BiPredicate;
 
 /**
@@ -47,10 +50,17 @@ public class GraphQueryBuilder extends DefaultGraphQuery implements QueryBuilder
         return this;
     }
 
+    /**
+     * Builds the query against the graph. Id lookups are passed to {@link GraphQuery#ids(Object...)} so that the
+     * graph (and its {@link com.tinkerpop.blueprints.strategy.GraphStrategy}) can resolve them directly.
+     */
     public GraphQuery build(final Graph graph) {
         final GraphQuery query = graph.query();
         for (final HasContainer hasContainer : this.hasContainers) {
-            query.has(hasContainer.key, hasContainer.predicate, hasContainer.value);
+            if (hasContainer.key.equals(Property.Key.ID) && hasContainer.predicate.equals(Contains.IN) && hasContainer.value instanceof Collection)
+                query.ids(((Collection) hasContainer.value).toArray());
+            else
+                query.has(hasContainer.key, hasContainer.predicate, hasContainer.value);
         }
         return query.limit(this.limit);
     }
@@ -155,7 +155,7 @@ public class GraphMLWriter implements GraphWriter {
                 }
 
                 final List<String> keys = new ArrayList<>();
-                keys.addAll(edge.getPropertyKeys());
+                keys.addAll(edge.getPropertiesView().keySet());
                 Collections.sort(keys);
 
                 for (String key : keys) {
@@ -176,7 +176,7 @@ public class GraphMLWriter implements GraphWriter {
                 writer.writeAttribute(GraphMLTokens.TARGET, edge.getVertex(Direction.IN).getId().toString());
                 writer.writeAttribute(GraphMLTokens.LABEL, edge.getLabel());
 
-                for (String key : edge.getPropertyKeys()) {
+                for (String key : edge.getPropertiesView().keySet()) {
                     writer.writeStartElement(GraphMLTokens.DATA);
                     writer.writeAttribute(GraphMLTokens.KEY, key);
                     // technically there can't be a null here as Blueprints forbids that occurrence even if Graph
@@ -211,10 +211,10 @@ public class GraphMLWriter implements GraphWriter {
         final Collection<String> keys;
         if (normalize) {
             keys = new ArrayList<>();
-            keys.addAll(element.getPropertyKeys());
+            keys.addAll(element.getPropertiesView().keySet());
             Collections.sort((List<String>) keys);
         } else
-            keys = element.getPropertyKeys();
+            keys = element.getPropertiesView().keySet();
 
         return keys;
     }
@@ -271,7 +271,7 @@ public class GraphMLWriter implements GraphWriter {
     private Map<String,String> determineVertexTypes() {
         final Map<String, String> vertexKeyTypes = new HashMap<>();
         for (Vertex vertex : graph.query().vertices()) {
-            for (String key : vertex.getPropertyKeys()) {
+            for (String key : vertex.getPropertiesView().keySet()) {
                 if (!vertexKeyTypes.containsKey(key)) {
                     vertexKeyTypes.put(key, GraphMLWriter.getStringType(vertex.getProperty(key).get()));
                 }
@@ -284,7 +284,7 @@ public class GraphMLWriter implements GraphWriter {
     private Map<String,String> determineEdgeTypes() {
         final Map<String, String> edgeKeyTypes = new HashMap<>();
         for (Edge edge : graph.query().edges()) {
-            for (String key : edge.getPropertyKeys()) {
+            for (String key : edge.getPropertiesView().keySet()) {
                 if (!edgeKeyTypes.containsKey(key))
                     edgeKeyTypes.put(key, GraphMLWriter.getStringType(edge.getProperty(key).get()));
             }
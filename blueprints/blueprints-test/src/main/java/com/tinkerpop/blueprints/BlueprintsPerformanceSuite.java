@@ -32,7 +32,8 @@ public class BlueprintsPerformanceSuite extends AbstractBlueprintsSuite {
      * as needed to enforce tests upon implementations.
      */
     private static final Class<?>[] testsToExecute = new Class<?>[]{
-            GraphGeneratePerformanceTest.class};
+            GraphGeneratePerformanceTest.class,
+            VertexQueryPerformanceTest.class};
 
     public BlueprintsPerformanceSuite(final Class<?> klass, final RunnerBuilder builder) throws InitializationError {
         super(klass, builder, testsToExecute);
@@ -50,6 +50,21 @@ public class GraphGeneratePerformanceTest {
             AbstractBlueprintsSuite.assertVertexEdgeCounts(verticesToGenerate, 0).accept(g);
         }
 
+        @Test
+        @BenchmarkOptions(benchmarkRounds = 10, warmupRounds = 0, concurrency = BenchmarkOptions.CONCURRENCY_SEQUENTIAL)
+        @FeatureRequirement(featureClass = Graph.Features.VertexFeatures.class, feature = Graph.Features.VertexFeatures.FEATURE_USER_SUPPLIED_IDS)
+        public void writeEmptyVerticesAfterUserSuppliedIds() throws Exception {
+            final int verticesToGenerate = 100000;
+            for (int ix = 0; ix < verticesToGenerate / 2; ix++) {
+                g.addVertex(Property.Key.ID, ix);
+            }
+            for (int ix = 0; ix < verticesToGenerate / 2; ix++) {
+                g.addVertex();
+            }
+
+            AbstractBlueprintsSuite.assertVertexEdgeCounts(verticesToGenerate, 0).accept(g);
+        }
+
         @Test
         @BenchmarkOptions(benchmarkRounds = 10, warmupRounds = 0, concurrency = BenchmarkOptions.CONCURRENCY_SEQUENTIAL)
         public void writeEmptyVerticesAndEdges() throws Exception {
@@ -0,0 +1,92 @@
+package com.tinkerpop.blueprints;
+
+import com.carrotsearch.junitbenchmarks.BenchmarkOptions;
+import com.carrotsearch.junitbenchmarks.BenchmarkRule;
+import com.carrotsearch.junitbenchmarks.annotation.AxisRange;
+import com.carrotsearch.junitbenchmarks.annotation.BenchmarkHistoryChart;
+import com.carrotsearch.junitbenchmarks.annotation.BenchmarkMethodChart;
+import com.carrotsearch.junitbenchmarks.annotation.LabelType;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TestRule;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Repeatedly walks the adjacency of a few supernodes. The timings (and the garbage collection statistics reported
+ * by junit-benchmarks) expose the cost of the intermediate objects a {@link com.tinkerpop.blueprints.query.VertexQuery}
+ * creates per call.
+ */
+@AxisRange(min = 0, max = 1)
+@BenchmarkMethodChart(filePrefix = "blueprints-vertex-query")
+@BenchmarkHistoryChart(labelWith = LabelType.CUSTOM_KEY, maxRuns = 20, filePrefix = "hx-blueprints-vertex-query")
+public class VertexQueryPerformanceTest extends AbstractBlueprintsTest {
+
+    private static final int SUPERNODES = 10;
+    private static final int DEGREE = 10000;
+    private static final int WALKS = 100;
+
+    @Rule
+    public TestRule benchmarkRun = new BenchmarkRule();
+
+    @Test
+    @BenchmarkOptions(benchmarkRounds = 10, warmupRounds = 1, concurrency = BenchmarkOptions.CONCURRENCY_SEQUENTIAL)
+    public void walkOutEdges() throws Exception {
+        final List<Vertex> supernodes = this.generateSupernodes();
+        long count = 0;
+        for (int i = 0; i < WALKS; i++) {
+            for (final Vertex supernode : supernodes) {
+                for (final Edge edge : supernode.query().direction(Direction.OUT).edges()) {
+                    count++;
+                }
+            }
+        }
+        assertEquals((long) WALKS * SUPERNODES * DEGREE, count);
+    }
+
+    @Test
+    @BenchmarkOptions(benchmarkRounds = 10, warmupRounds = 1, concurrency = BenchmarkOptions.CONCURRENCY_SEQUENTIAL)
+    public void walkOutVerticesWithLabel() throws Exception {
+        final List<Vertex> supernodes = this.generateSupernodes();
+        long count = 0;
+        for (int i = 0; i < WALKS; i++) {
+            for (final Vertex supernode : supernodes) {
+                for (final Vertex vertex : supernode.query().direction(Direction.OUT).labels("knows").vertices()) {
+                    count++;
+                }
+            }
+        }
+        assertEquals((long) WALKS * SUPERNODES * DEGREE / 2, count);
+    }
+
+    @Test
+    @BenchmarkOptions(benchmarkRounds = 10, warmupRounds = 1, concurrency = BenchmarkOptions.CONCURRENCY_SEQUENTIAL)
+    public void walkBothVerticesWithLimit() throws Exception {
+        final List<Vertex> supernodes = this.generateSupernodes();
+        long count = 0;
+        for (int i = 0; i < WALKS * 100; i++) {
+            for (final Vertex supernode : supernodes) {
+                for (final Vertex vertex : supernode.query().direction(Direction.BOTH).limit(10).vertices()) {
+                    count++;
+                }
+            }
+        }
+        assertEquals((long) WALKS * 100 * SUPERNODES * 10, count);
+    }
+
+    private List<Vertex> generateSupernodes() {
+        final List<Vertex> supernodes = new ArrayList<>();
+        for (int i = 0; i < SUPERNODES; i++) {
+            final Vertex supernode = g.addVertex();
+            for (int j = 0; j < DEGREE; j++) {
+                supernode.addEdge(j % 2 == 0 ? "knows" : "created", g.addVertex());
+            }
+            supernodes.add(supernode);
+        }
+        tryCommit(g);
+        return supernodes;
+    }
+}
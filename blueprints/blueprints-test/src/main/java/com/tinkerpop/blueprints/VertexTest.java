@@ -216,6 +216,26 @@ public class VertexTest extends AbstractBlueprintsTest {
         assertEquals(0, keys.size());
     }
 
+    @Test
+    @FeatureRequirement(featureClass = VertexPropertyFeatures.class, feature = FEATURE_STRING_VALUES)
+    public void shouldGetReadOnlyPropertiesViewOnVertex() {
+        final Vertex v = g.addVertex("name", "marko", "location", "desert");
+        final Map<String, Property> m = v.getPropertiesView();
+        assertEquals(2, m.size());
+        assertEquals("marko", m.get("name").orElse(""));
+        assertEquals("desert", m.get("location").orElse(""));
+
+        try {
+            m.remove("name");
+            fail("The properties view should not be modifiable");
+        } catch (UnsupportedOperationException e) {
+        }
+
+        v.getProperty("location").remove();
+        assertEquals(1, v.getPropertiesView().size());
+        assertTrue(v.getPropertiesView().containsKey("name"));
+    }
+
     @Test
     public void shouldNotGetConcurrentModificationException() {
         for (int i = 0; i < 25; i++) {
@@ -0,0 +1,636 @@
+package com.tinkerpop.blueprints.tinkergraph;
+
+import com.tinkerpop.blueprints.Direction;
+import com.tinkerpop.blueprints.Edge;
+import com.tinkerpop.blueprints.Property;
+
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.stream.Collectors;
+
+/**
+ * The incident edges of a {@link TinkerVertex} in one direction. Edges are grouped by label into segments of a single
+ * backing array rather than kept in a {@link java.util.Set} per label. Labels are kept as their ids in the
+ * {@link TinkerSymbols} of the graph, so finding the segment of a label compares integers. Each {@link TinkerEdge}
+ * remembers its slot in the backing array so that removal is a constant time swap with the last edge of its segment.
+ * <p/>
+ * When a {@link TinkerGraph} is compacted (see {@link TinkerGraph#compact()}), the segments of many vertices are
+ * packed end-to-end into shared blocks (a compressed sparse row layout). A compacted adjacency can still be
+ * mutated: removal works in place and the first addition that needs more room copies the segments back out into a
+ * private backing array.
+ * <p/>
+ * The segment of a label with a vertex-centric index (see {@link TinkerVertexCentricIndex}) is kept sorted by the value
+ * of the indexed key, so a range of values is found with a binary search and iterated in place. Edges without a
+ * comparable value for the key are kept at the end of the segment. Removal from a sorted segment shifts the edges
+ * after the removed one rather than swapping in the last edge.
+ * <p/>
+ * An adjacency is not thread-safe. A {@link TinkerGraph} with concurrent writers uses {@link Concurrent} instead.
+ */
+class TinkerAdjacency implements Serializable {
+
+    private static final int[] NO_LABELS = new int[0];
+    private static final TinkerEdge[] NO_EDGES = new TinkerEdge[0];
+    private static final int[] NO_SEGMENTS = new int[0];
+
+    // the size of the shared blocks created by compaction
+    private static final int BLOCK_SIZE = 1 << 20;
+
+    // segment i is described by segments[3i] (start), segments[3i+1] (size) and segments[3i+2] (capacity)
+    private static final int START = 0, SIZE = 1, CAPACITY = 2, STRIDE = 3;
+
+    private final Direction direction;
+    private final TinkerSymbols symbols;
+    private int[] labels = NO_LABELS;
+    private int[] segments = NO_SEGMENTS;
+    private TinkerEdge[] edges = NO_EDGES;
+    private int used = 0;
+    private boolean shared = false;
+
+    public TinkerAdjacency(final Direction direction, final TinkerSymbols symbols) {
+        this.direction = direction;
+        this.symbols = symbols;
+    }
+
+    public void add(final TinkerEdge edge) {
+        int segment = this.indexOf(edge.labelId);
+        if (-1 == segment)
+            segment = this.addLabel(edge.labelId);
+        final int s = segment * STRIDE;
+        if (this.segments[s + SIZE] == this.segments[s + CAPACITY])
+            this.grow(segment);
+        final int start = this.segments[s + START];
+        final int end = start + this.segments[s + SIZE]++;
+        final String key = edge.graph.vertexCentricIndex.getSortKey(edge.label);
+        final Object value = null == key ? null : value(edge, key);
+        // an edge of a sorted segment goes after the edges with the same value
+        final int slot = null == value ? end : search(this.edges, start, end, key, value, 1);
+        for (int i = end; i > slot; i--) {
+            this.edges[i] = this.edges[i - 1];
+            this.setSlot(this.edges[i], i);
+        }
+        this.edges[slot] = edge;
+        this.setSlot(edge, slot);
+    }
+
+    public void remove(final TinkerEdge edge) {
+        final int segment = this.indexOf(edge.labelId);
+        final int slot = this.getSlot(edge);
+        if (-1 == segment || slot < 0 || this.edges[slot] != edge)
+            return;
+        final int s = segment * STRIDE;
+        final int last = this.segments[s + START] + --this.segments[s + SIZE];
+        if (null != edge.graph.vertexCentricIndex.getSortKey(edge.label)) {
+            for (int i = slot; i < last; i++) {
+                this.edges[i] = this.edges[i + 1];
+                this.setSlot(this.edges[i], i);
+            }
+        } else if (slot != last) {
+            this.edges[slot] = this.edges[last];
+            this.setSlot(this.edges[slot], slot);
+        }
+        this.edges[last] = null;
+        this.setSlot(edge, -1);
+    }
+
+    /**
+     * The number of edges with any of the provided labels (or all edges if no labels are provided).
+     */
+    public int size(final String... labels) {
+        final int[] ids = this.symbols.lookup(labels);
+        int size = 0;
+        for (int i = 0; i < this.labels.length; i++) {
+            if (matches(this.labels[i], ids))
+                size = size + this.segments[i * STRIDE + SIZE];
+        }
+        return size;
+    }
+
+    /**
+     * Iterates the edges with any of the provided labels (or all edges if no labels are provided) without copying
+     * them. Each segment is walked from its end so that removing the current edge during iteration is safe.
+     */
+    public Iterator<Edge> iterator(final String... labels) {
+        final int[] ids = this.symbols.lookup(labels);
+        return new Iterator<Edge>() {
+            private int segment = -1;
+            private int position = -1;
+
+            public boolean hasNext() {
+                while (true) {
+                    if (this.segment >= 0 && this.segment < TinkerAdjacency.this.labels.length) {
+                        // edges other than the current one may have been removed since the last call
+                        this.position = Math.min(this.position, segments[this.segment * STRIDE + SIZE] - 1);
+                        if (this.position >= 0)
+                            return true;
+                    }
+                    do {
+                        if (++this.segment >= TinkerAdjacency.this.labels.length)
+                            return false;
+                    } while (!matches(TinkerAdjacency.this.labels[this.segment], ids));
+                    this.position = segments[this.segment * STRIDE + SIZE] - 1;
+                }
+            }
+
+            public Edge next() {
+                if (!this.hasNext())
+                    throw new NoSuchElementException();
+                return edges[segments[this.segment * STRIDE + START] + this.position--];
+            }
+        };
+    }
+
+    /**
+     * Iterates the edges with any of the provided labels whose value for the key of the range is within the range.
+     * Every label must have its segment sorted by the key of the range. The bounds of the range are found with a
+     * binary search and the edges between them are walked in place from the last one, so that removing the current
+     * edge during iteration is safe.
+     */
+    public Iterator<Edge> iterator(final TinkerRange range, final String... labels) {
+        if (range.isEmpty())
+            return Collections.emptyIterator();
+        final int[] ids = this.symbols.lookup(labels);
+        return new Iterator<Edge>() {
+            private int label = -1;
+            private int low = 0;
+            private int position = -1;
+            private TinkerEdge next = null;
+
+            public boolean hasNext() {
+                while (null == this.next) {
+                    if (this.position >= this.low) {
+                        final TinkerEdge edge = edges[this.position--];
+                        final Object value = value(edge, range.key);
+                        if (null != value && range.isComparable(value))
+                            this.next = edge;
+                    } else {
+                        if (++this.label >= ids.length)
+                            return false;
+                        final int segment = indexOf(ids[this.label]);
+                        if (-1 == segment)
+                            continue;
+                        final int start = segments[segment * STRIDE + START];
+                        final int end = start + segments[segment * STRIDE + SIZE];
+                        // the edges with a comparable value come before the others
+                        final int comparable = search(edges, start, end, range.key, null, 0);
+                        if (comparable > start)
+                            range.checkComparable(value(edges[start], range.key), value(edges[comparable - 1], range.key));
+                        this.low = null == range.low ? start : search(edges, start, end, range.key, range.low, range.lowInclusive ? 0 : 1);
+                        this.position = search(edges, start, end, range.key, range.high, range.highInclusive ? 1 : 0) - 1;
+                    }
+                }
+                return true;
+            }
+
+            public Edge next() {
+                if (!this.hasNext())
+                    throw new NoSuchElementException();
+                final Edge edge = this.next;
+                this.next = null;
+                return edge;
+            }
+        };
+    }
+
+    /**
+     * Moves the edge to its place in the sorted segment of its label after the value of the sort key changed.
+     */
+    protected void update(final TinkerEdge edge) {
+        if (this.getSlot(edge) < 0)
+            return;
+        this.remove(edge);
+        this.add(edge);
+    }
+
+    /**
+     * Sorts the segment of the label by the value of the key.
+     */
+    protected void sort(final String label, final String key) {
+        final int segment = this.indexOf(this.symbols.lookup(label));
+        if (-1 == segment)
+            return;
+        final int start = this.segments[segment * STRIDE + START];
+        final int end = start + this.segments[segment * STRIDE + SIZE];
+        Arrays.sort(this.edges, start, end, (a, b) -> compare(value(a, key), value(b, key)));
+        for (int i = start; i < end; i++) {
+            this.setSlot(this.edges[i], i);
+        }
+    }
+
+    ////////////////
+
+    private int indexOf(final int label) {
+        for (int i = 0; i < this.labels.length; i++) {
+            if (this.labels[i] == label)
+                return i;
+        }
+        return -1;
+    }
+
+    private int addLabel(final int label) {
+        // label arrays may be shared between vertices after compaction so they are never written in place
+        this.labels = Arrays.copyOf(this.labels, this.labels.length + 1);
+        this.labels[this.labels.length - 1] = label;
+        this.segments = Arrays.copyOf(this.segments, this.segments.length + STRIDE);
+        this.segments[this.segments.length - STRIDE + START] = this.used;
+        return this.labels.length - 1;
+    }
+
+    private void grow(final int segment) {
+        final int s = segment * STRIDE;
+        final int start = this.segments[s + START];
+        final int size = this.segments[s + SIZE];
+        final int capacity = Math.max(2, this.segments[s + CAPACITY] << 1);
+        if (!this.shared && start + this.segments[s + CAPACITY] == this.used && start + capacity <= this.edges.length) {
+            // the segment is the last one in the backing array so it can simply be extended
+            this.used = start + capacity;
+        } else if (!this.shared && this.used + capacity <= this.edges.length) {
+            // move the segment to the free space at the end of the backing array leaving a hole behind
+            System.arraycopy(this.edges, start, this.edges, this.used, size);
+            Arrays.fill(this.edges, start, start + size, null);
+            for (int i = this.used; i < this.used + size; i++) {
+                this.setSlot(this.edges[i], i);
+            }
+            this.segments[s + START] = this.used;
+            this.used = this.used + capacity;
+        } else {
+            this.segments[s + CAPACITY] = capacity;
+            this.repack(false);
+            return;
+        }
+        this.segments[s + CAPACITY] = capacity;
+    }
+
+    /**
+     * Copies all segments into a new private backing array. Segment capacities are kept unless trimming is requested.
+     */
+    private void repack(final boolean trim) {
+        int total = 0;
+        for (int i = 0; i < this.labels.length; i++) {
+            total = total + (trim ? this.segments[i * STRIDE + SIZE] : this.segments[i * STRIDE + CAPACITY]);
+        }
+        final TinkerEdge[] packed = new TinkerEdge[trim ? total : total + (total >> 1)];
+        this.used = this.pack(packed, 0, trim);
+        this.edges = packed;
+        this.shared = false;
+    }
+
+    private int pack(final TinkerEdge[] packed, int offset, final boolean trim) {
+        for (int i = 0; i < this.labels.length; i++) {
+            final int s = i * STRIDE;
+            final int size = this.segments[s + SIZE];
+            System.arraycopy(this.edges, this.segments[s + START], packed, offset, size);
+            for (int j = offset; j < offset + size; j++) {
+                this.setSlot(packed[j], j);
+            }
+            this.segments[s + START] = offset;
+            if (trim)
+                this.segments[s + CAPACITY] = size;
+            offset = offset + this.segments[s + CAPACITY];
+        }
+        return offset;
+    }
+
+    private void dropEmptyLabels() {
+        int count = 0;
+        for (int i = 0; i < this.labels.length; i++) {
+            if (this.segments[i * STRIDE + SIZE] > 0)
+                count++;
+        }
+        if (count == this.labels.length)
+            return;
+        final int[] keptLabels = new int[count];
+        final int[] keptSegments = new int[count * STRIDE];
+        for (int i = 0, j = 0; i < this.labels.length; i++) {
+            if (this.segments[i * STRIDE + SIZE] > 0) {
+                keptLabels[j] = this.labels[i];
+                System.arraycopy(this.segments, i * STRIDE, keptSegments, j * STRIDE, STRIDE);
+                j++;
+            }
+        }
+        this.labels = keptLabels;
+        this.segments = keptSegments;
+    }
+
+    /**
+     * The first slot from start to end of a sorted segment whose value for the key compares to the bound with at
+     * least the threshold: 0 for the first value at or above the bound and 1 for the first value above it. A null
+     * bound is above every comparable value.
+     */
+    private static int search(final TinkerEdge[] edges, int start, int end, final String key, final Object bound, final int threshold) {
+        while (start < end) {
+            final int middle = (start + end) >>> 1;
+            final Object value = value(edges[middle], key);
+            if (null == value || (null != bound && TinkerRange.ORDER.compare(value, bound) >= threshold))
+                end = middle;
+            else
+                start = middle + 1;
+        }
+        return start;
+    }
+
+    private int getSlot(final TinkerEdge edge) {
+        return this.direction == Direction.OUT ? edge.outSlot : edge.inSlot;
+    }
+
+    private void setSlot(final TinkerEdge edge, final int slot) {
+        if (this.direction == Direction.OUT)
+            edge.outSlot = slot;
+        else
+            edge.inSlot = slot;
+    }
+
+    private static Object value(final TinkerEdge edge, final String key) {
+        if (null == edge)
+            return null;
+        final Property property = edge.properties.get(key);
+        return null != property && property.get() instanceof Comparable ? property.get() : null;
+    }
+
+    // edges without a comparable value are sorted last
+    private static int compare(final Object a, final Object b) {
+        if (null == a || null == b)
+            return null == a ? (null == b ? 0 : 1) : -1;
+        return TinkerRange.ORDER.compare(a, b);
+    }
+
+    private static boolean matches(final int label, final int[] labels) {
+        if (labels.length == 0)
+            return true;
+        for (final int l : labels) {
+            if (label == l)
+                return true;
+        }
+        return false;
+    }
+
+    /**
+     * Packs the provided adjacencies end-to-end into shared blocks. Empty labels are dropped, every segment is
+     * trimmed to its size, and vertices with the same label set share a single label array. Concurrent adjacencies are
+     * skipped.
+     */
+    public static void compact(final Iterable<TinkerAdjacency> adjacencies) {
+        final Map<List<Integer>, int[]> labelSets = new HashMap<>();
+        TinkerEdge[] block = NO_EDGES;
+        int offset = 0;
+        for (final TinkerAdjacency adjacency : adjacencies) {
+            // a concurrent adjacency keeps its edges in segments of its own that readers may be walking
+            if (adjacency instanceof Concurrent)
+                continue;
+            adjacency.dropEmptyLabels();
+            final int[] labels = labelSets.putIfAbsent(Arrays.stream(adjacency.labels).boxed().collect(Collectors.toList()), adjacency.labels);
+            if (null != labels)
+                adjacency.labels = labels;
+
+            final int size = adjacency.size();
+            if (size > BLOCK_SIZE) {
+                adjacency.repack(true);
+                continue;
+            }
+            if (offset + size > block.length) {
+                block = new TinkerEdge[BLOCK_SIZE];
+                offset = 0;
+            }
+            offset = adjacency.pack(block, offset, true);
+            adjacency.edges = block;
+            adjacency.used = offset;
+            adjacency.shared = true;
+        }
+    }
+
+    /**
+     * An adjacency that many threads may mutate and read at once. Writers take the lock of the adjacency, so writers of
+     * different vertices never contend, and readers take no lock. The edges of each label are published together with
+     * their bounds as an immutable {@link Edges}. An edge is appended in place past the bounds that readers see, and a
+     * removed edge leaves a hole in place, which readers skip, until the holes outnumber the edges and are packed into
+     * a new array. A sorted segment is copied on every write instead, as its edges shift anyway. A reader walks the
+     * bounds it read when it reached a segment, so it sees none of the edges added since. An edge removed since is
+     * skipped unless the edges of its segment have moved to a new array since.
+     */
+    static class Concurrent extends TinkerAdjacency {
+
+        private volatile Segment[] labelSegments = new Segment[0];
+
+        public Concurrent(final Direction direction, final TinkerSymbols symbols) {
+            super(direction, symbols);
+        }
+
+        public synchronized void add(final TinkerEdge edge) {
+            Segment segment = this.segmentOf(edge.labelId);
+            if (null == segment) {
+                segment = new Segment(edge.labelId);
+                final Segment[] segments = Arrays.copyOf(this.labelSegments, this.labelSegments.length + 1);
+                segments[segments.length - 1] = segment;
+                this.labelSegments = segments;
+            }
+            final Edges edges = segment.edges;
+            final String key = edge.graph.vertexCentricIndex.getSortKey(edge.label);
+            final Object value = null == key ? null : value(edge, key);
+            if (null == value) {
+                // the slot is past the bounds of every published Edges of the array
+                TinkerEdge[] array = edges.array;
+                if (edges.size == array.length)
+                    array = Arrays.copyOf(array, Math.max(2, array.length << 1));
+                array[edges.size] = edge;
+                super.setSlot(edge, edges.size);
+                segment.edges = new Edges(array, edges.size + 1, edges.live + 1);
+            } else {
+                final TinkerEdge[] live = this.pack(edges, null, 0);
+                final int slot = search(live, 0, edges.live, key, value, 1);
+                final TinkerEdge[] array = new TinkerEdge[edges.live + 1];
+                System.arraycopy(live, 0, array, 0, slot);
+                array[slot] = edge;
+                System.arraycopy(live, slot, array, slot + 1, edges.live - slot);
+                this.publish(segment, array);
+            }
+        }
+
+        public synchronized void remove(final TinkerEdge edge) {
+            final Segment segment = this.segmentOf(edge.labelId);
+            final int slot = super.getSlot(edge);
+            if (null == segment)
+                return;
+            final Edges edges = segment.edges;
+            if (slot < 0 || slot >= edges.size || edges.array[slot] != edge)
+                return;
+            super.setSlot(edge, -1);
+            if (null != edge.graph.vertexCentricIndex.getSortKey(edge.label)) {
+                this.publish(segment, this.pack(edges, edge, 0));
+            } else {
+                edges.array[slot] = null;
+                if (edges.size - edges.live + 1 > edges.live - 1)
+                    this.publish(segment, this.pack(edges, edge, 0));
+                else
+                    segment.edges = new Edges(edges.array, edges.size, edges.live - 1);
+            }
+        }
+
+        public int size(final String... labels) {
+            final int[] ids = super.symbols.lookup(labels);
+            int size = 0;
+            for (final Segment segment : this.labelSegments) {
+                if (matches(segment.label, ids))
+                    size = size + segment.edges.live;
+            }
+            return size;
+        }
+
+        public Iterator<Edge> iterator(final String... labels) {
+            final int[] ids = super.symbols.lookup(labels);
+            final Segment[] segments = this.labelSegments;
+            return new Iterator<Edge>() {
+                private int segment = -1;
+                private TinkerEdge[] edges = NO_EDGES;
+                private int position = -1;
+                private TinkerEdge next = null;
+
+                public boolean hasNext() {
+                    while (null == this.next) {
+                        if (this.position >= 0)
+                            this.next = this.edges[this.position--];
+                        else {
+                            do {
+                                if (++this.segment >= segments.length)
+                                    return false;
+                            } while (!matches(segments[this.segment].label, ids));
+                            final Edges edges = segments[this.segment].edges;
+                            this.edges = edges.array;
+                            this.position = edges.size - 1;
+                        }
+                    }
+                    return true;
+                }
+
+                public Edge next() {
+                    if (!this.hasNext())
+                        throw new NoSuchElementException();
+                    final Edge edge = this.next;
+                    this.next = null;
+                    return edge;
+                }
+            };
+        }
+
+        public Iterator<Edge> iterator(final TinkerRange range, final String... labels) {
+            if (range.isEmpty())
+                return Collections.emptyIterator();
+            final int[] ids = super.symbols.lookup(labels);
+            return new Iterator<Edge>() {
+                private int label = -1;
+                private TinkerEdge[] edges = NO_EDGES;
+                private int low = 0;
+                private int position = -1;
+                private TinkerEdge next = null;
+
+                public boolean hasNext() {
+                    while (null == this.next) {
+                        if (this.position >= this.low) {
+                            final TinkerEdge edge = this.edges[this.position--];
+                            final Object value = value(edge, range.key);
+                            if (null != value && range.isComparable(value))
+                                this.next = edge;
+                        } else {
+                            if (++this.label >= ids.length)
+                                return false;
+                            final Segment segment = segmentOf(ids[this.label]);
+                            if (null == segment)
+                                continue;
+                            final Edges edges = segment.edges;
+                            this.edges = edges.array;
+                            final int comparable = search(this.edges, 0, edges.size, range.key, null, 0);
+                            if (comparable > 0)
+                                range.checkComparable(value(this.edges[0], range.key), value(this.edges[comparable - 1], range.key));
+                            this.low = null == range.low ? 0 : search(this.edges, 0, edges.size, range.key, range.low, range.lowInclusive ? 0 : 1);
+                            this.position = search(this.edges, 0, edges.size, range.key, range.high, range.highInclusive ? 1 : 0) - 1;
+                        }
+                    }
+                    return true;
+                }
+
+                public Edge next() {
+                    if (!this.hasNext())
+                        throw new NoSuchElementException();
+                    final Edge edge = this.next;
+                    this.next = null;
+                    return edge;
+                }
+            };
+        }
+
+        protected synchronized void update(final TinkerEdge edge) {
+            super.update(edge);
+        }
+
+        protected synchronized void sort(final String label, final String key) {
+            final Segment segment = this.segmentOf(super.symbols.lookup(label));
+            if (null == segment)
+                return;
+            final TinkerEdge[] array = this.pack(segment.edges, null, 0);
+            Arrays.sort(array, (a, b) -> compare(value(a, key), value(b, key)));
+            this.publish(segment, array);
+        }
+
+        private Segment segmentOf(final int label) {
+            for (final Segment segment : this.labelSegments) {
+                if (segment.label == label)
+                    return segment;
+            }
+            return null;
+        }
+
+        /**
+         * The edges of the segment without its holes and the skipped edge in a new array with room to spare.
+         */
+        private TinkerEdge[] pack(final Edges edges, final TinkerEdge skip, final int spare) {
+            final TinkerEdge[] packed = new TinkerEdge[edges.live - (null == skip ? 0 : 1) + spare];
+            int size = 0;
+            for (int i = 0; i < edges.size; i++) {
+                if (null != edges.array[i] && edges.array[i] != skip)
+                    packed[size++] = edges.array[i];
+            }
+            return packed;
+        }
+
+        /**
+         * Publishes a new array that is full of edges as the edges of the segment.
+         */
+        private void publish(final Segment segment, final TinkerEdge[] array) {
+            for (int i = 0; i < array.length; i++) {
+                super.setSlot(array[i], i);
+            }
+            segment.edges = new Edges(array, array.length, array.length);
+        }
+    }
+
+    private static class Segment implements Serializable {
+
+        private final int label;
+        private volatile Edges edges = new Edges(NO_EDGES, 0, 0);
+
+        private Segment(final int label) {
+            this.label = label;
+        }
+    }
+
+    /**
+     * The edges of a segment of a {@link Concurrent} adjacency: the slots of the array below the size hold the live
+     * edges and the holes they left.
+     */
+    private static class Edges implements Serializable {
+
+        private final TinkerEdge[] array;
+        private final int size;
+        private final int live;
+
+        private Edges(final TinkerEdge[] array, final int size, final int live) {
+            this.array = array;
+            this.size = size;
+            this.live = live;
+        }
+    }
+}
@@ -2,6 +2,8 @@ package com.tinkerpop.blueprints.tinkergraph;
 
 import com.tinkerpop.blueprints.AnnotatedList;
 import com.tinkerpop.blueprints.AnnotatedValue;
+import com.tinkerpop.blueprints.Annotations;
+import com.tinkerpop.blueprints.Property;
 import com.tinkerpop.blueprints.query.AnnotatedListQuery;
 import com.tinkerpop.blueprints.query.util.DefaultAnnotatedListQuery;
 import com.tinkerpop.blueprints.query.util.HasContainer;
@@ -10,45 +12,326 @@ import com.tinkerpop.blueprints.util.StringFactory;
 
 import java.io.Serializable;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.NoSuchElementException;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.function.BiConsumer;
 import java.util.stream.Collectors;
 
 /**
+ * The annotated values are linked in the order they were added so that a value is removed in constant time. A value
+ * that is removed while the list is being iterated is skipped and the iteration goes on with the values after it.
+ * <p/>
+ * Annotation keys can be indexed with {@link #createKeyIndex(String)}. The values of an indexed key are kept sorted
+ * so that a query with a range of values for the key (see {@link TinkerRange}) only visits the annotated values
+ * within the range. Those are returned in the order of the key rather than in the order they were added.
+ * <p/>
+ * Once the list is the value of a property, its mutations are mutations of the graph: they are logged and they fail
+ * on a snapshot. An annotated value is logged by its position among the values of the list, so removing a value or
+ * setting its annotations takes time linear in that position when the graph has a log.
+ *
  * @author Marko A. Rodriguez (http://markorodriguez.com)
  */
 public class TinkerAnnotatedList<V> implements AnnotatedList<V>, Serializable {
 
-    final List<AnnotatedValue<V>> annotatedValues = new ArrayList<>();
+    private Entry head = null;
+    private Entry tail = null;
+    private int size = 0;
+    private final Map<String, NavigableMap<Object, Set<Entry>>> keyIndices = new HashMap<>();
+    private transient TinkerElement element = null;
+    private transient String key = null;
 
     public AnnotatedValue<V> addValue(final V value, final Object... keyValues) {
-        final AnnotatedValue<V> annotatedValue = new TinkerAnnotatedValue<V>(value, keyValues) {
-            public void remove() {
-                annotatedValues.remove(this);
+        if (null == this.element)
+            return this.append(value, keyValues);
+        final TinkerLog log = TinkerLog.begin(this.element.graph);
+        try {
+            synchronized (this.element) {
+                final Entry entry = this.append(value, keyValues);
+                if (null != log && this.isAttached())
+                    log.addAnnotatedValue(this.element, this.key, value, entry.getAnnotations());
+                return entry;
             }
-        };
-        this.annotatedValues.add(annotatedValue);
-        return annotatedValue;
+        } finally {
+            TinkerLog.end(log);
+        }
+    }
+
+    private Entry append(final V value, final Object... keyValues) {
+        final Entry entry = new Entry(value, keyValues);
+        if (null == this.tail)
+            this.head = entry;
+        else {
+            this.tail.next = entry;
+            entry.previous = this.tail;
+        }
+        this.tail = entry;
+        this.size++;
+        this.keyIndices.keySet().forEach(key -> entry.getAnnotations().get(key).ifPresent(v -> this.index(key, v, entry)));
+        return entry;
     }
 
     public AnnotatedListQuery<V> query() {
         return new DefaultAnnotatedListQuery<V>(this) {
             @Override
             public Iterable<AnnotatedValue<V>> annotatedValues() {
-                return (Iterable) StreamFactory.stream(annotatedValues.iterator())
-                        .filter(p -> HasContainer.testAll((AnnotatedValue) p, this.hasContainers))
-                        .limit(this.limit)
-                        .collect(Collectors.toList());
+                final List<HasContainer> hasContainers = this.hasContainers;
+                final int limit = this.limit;
+                return () -> StreamFactory.stream(TinkerAnnotatedList.this.iterator(hasContainers))
+                        .filter(a -> HasContainer.testAll(a, hasContainers))
+                        .limit(limit)
+                        .iterator();
             }
 
             @Override
             public Iterable<V> values() {
-                return (Iterable) StreamFactory.stream(this.annotatedValues()).map(a -> a.getValue()).collect(Collectors.toList());
+                final Iterable<AnnotatedValue<V>> annotatedValues = this.annotatedValues();
+                return () -> StreamFactory.stream(annotatedValues).map(AnnotatedValue::getValue).iterator();
             }
         };
     }
 
+    /**
+     * Keep the values of the annotation key sorted so that queries with a range of values for the key are answered
+     * from the index.
+     */
+    public void createKeyIndex(final String key) {
+        if (null == key)
+            throw new IllegalArgumentException("The key to index can not be null");
+        if (this.keyIndices.containsKey(key))
+            return;
+        this.keyIndices.put(key, new TreeMap<>(TinkerRange.ORDER));
+        for (Entry entry = this.head; null != entry; entry = entry.next) {
+            final Entry e = entry;
+            e.getAnnotations().get(key).ifPresent(v -> this.index(key, v, e));
+        }
+    }
+
+    public void dropKeyIndex(final String key) {
+        this.keyIndices.remove(key);
+    }
+
+    public Set<String> getIndexedKeys() {
+        return Collections.unmodifiableSet(this.keyIndices.keySet());
+    }
+
+    public int size() {
+        return this.size;
+    }
+
+    /**
+     * The annotated values in the order they were added.
+     */
+    protected Iterator<AnnotatedValue<V>> iterator() {
+        return new EntryIterator(this.head);
+    }
+
+    /**
+     * Copy the annotated values and the key indices into a new list.
+     */
+    protected TinkerAnnotatedList<V> copy() {
+        final TinkerAnnotatedList<V> copy = new TinkerAnnotatedList<>();
+        this.keyIndices.keySet().forEach(copy::createKeyIndex);
+        for (Entry entry = this.head; null != entry; entry = entry.next) {
+            final Annotations annotations = entry.getAnnotations();
+            final List<Object> keyValues = new ArrayList<>();
+            for (final String key : annotations.getKeys()) {
+                keyValues.add(key);
+                keyValues.add(annotations.get(key).get());
+            }
+            copy.addValue(entry.getValue(), keyValues.toArray());
+        }
+        return copy;
+    }
+
+    /**
+     * The annotated value at the position among the values of the list.
+     */
+    protected Optional<AnnotatedValue<V>> getAnnotatedValue(final int position) {
+        final Iterator<AnnotatedValue<V>> iterator = this.iterator();
+        for (int i = 0; i < position && iterator.hasNext(); i++) {
+            iterator.next();
+        }
+        return iterator.hasNext() ? Optional.of(iterator.next()) : Optional.empty();
+    }
+
+    /**
+     * Attach the list to the property of the element that it is the value of.
+     */
+    protected void attach(final TinkerElement element, final String key) {
+        this.element = element;
+        this.key = key;
+    }
+
     public String toString() {
         return StringFactory.annotatedListString(this);
     }
-}
 
+    /**
+     * Whether the list is still the value of the property it was attached to. A list that was replaced or removed
+     * is no longer part of the graph and its mutations are not logged.
+     */
+    private boolean isAttached() {
+        final Property property = this.element.properties.get(this.key);
+        return null != property && property.get() == this;
+    }
+
+    private int position(final Entry entry) {
+        int position = 0;
+        for (Entry e = this.head; e != entry; e = e.next) {
+            position++;
+        }
+        return position;
+    }
+
+    /**
+     * Run the mutation of an annotated value as a mutation of the graph if the list is attached to an element.
+     */
+    private void mutate(final Entry entry, final Runnable mutation, final BiConsumer<TinkerLog, Integer> record) {
+        if (null == this.element || entry.removed) {
+            mutation.run();
+            return;
+        }
+        final TinkerLog log = TinkerLog.begin(this.element.graph);
+        try {
+            synchronized (this.element) {
+                final int position = null == log || !this.isAttached() ? -1 : this.position(entry);
+                mutation.run();
+                if (-1 != position)
+                    record.accept(log, position);
+            }
+        } finally {
+            TinkerLog.end(log);
+        }
+    }
+
+    /**
+     * The candidates of a query: the annotated values within the range of an indexed key or otherwise all of them.
+     * The candidates from an index are gathered up front as the index can not be iterated while it changes.
+     */
+    private Iterator<AnnotatedValue<V>> iterator(final List<HasContainer> hasContainers) {
+        for (final HasContainer hasContainer : hasContainers) {
+            final NavigableMap<Object, Set<Entry>> index = this.keyIndices.get(hasContainer.key);
+            if (null != index && TinkerRange.isRangePredicate(hasContainer)) {
+                final TinkerRange range = TinkerRange.of(hasContainer.key, hasContainers);
+                if (!index.isEmpty())
+                    range.checkComparable(index.firstKey(), index.lastKey());
+                return (Iterator) range.subMap(index).entrySet().stream()
+                        .filter(e -> range.isComparable(e.getKey()))
+                        .flatMap(e -> e.getValue().stream())
+                        .collect(Collectors.toList()).iterator();
+            }
+        }
+        return this.iterator();
+    }
+
+    private void index(final String key, final Object value, final Entry entry) {
+        if (value instanceof Comparable)
+            this.keyIndices.get(key).computeIfAbsent(value, v -> new LinkedHashSet<>()).add(entry);
+    }
+
+    private void unindex(final String key, final Object value, final Entry entry) {
+        final NavigableMap<Object, Set<Entry>> index = this.keyIndices.get(key);
+        if (null == index || !(value instanceof Comparable))
+            return;
+        index.computeIfPresent(value, (v, entries) -> {
+            entries.remove(entry);
+            return entries.isEmpty() ? null : entries;
+        });
+    }
+
+    private class Entry extends TinkerAnnotatedValue<V> {
+
+        private Entry previous = null;
+        private Entry next = null;
+        private boolean removed = false;
+        private final Annotations annotations;
+
+        private Entry(final V value, final Object... keyValues) {
+            super(value, keyValues);
+            final Annotations delegate = super.getAnnotations();
+            // the key indices follow the annotations that are set after the value was added
+            this.annotations = new Annotations() {
+                public void set(final String key, final Object value) {
+                    mutate(Entry.this, () -> {
+                        final Optional<Object> oldValue = delegate.get(key);
+                        delegate.set(key, value);
+                        if (!removed && keyIndices.containsKey(key)) {
+                            oldValue.ifPresent(v -> unindex(key, v, Entry.this));
+                            index(key, value, Entry.this);
+                        }
+                    }, (log, position) -> log.setAnnotation(element, TinkerAnnotatedList.this.key, position, key, value));
+                }
+
+                public <T> Optional<T> get(final String key) {
+                    return delegate.get(key);
+                }
+
+                public Set<String> getKeys() {
+                    return delegate.getKeys();
+                }
+
+                public String toString() {
+                    return delegate.toString();
+                }
+            };
+        }
+
+        public Annotations getAnnotations() {
+            return this.annotations;
+        }
+
+        public void remove() {
+            if (this.removed)
+                return;
+            mutate(this, this::unlink, (log, position) -> log.removeAnnotatedValue(element, key, position));
+        }
+
+        private void unlink() {
+            this.removed = true;
+            keyIndices.keySet().forEach(key -> this.annotations.get(key).ifPresent(v -> unindex(key, v, this)));
+            if (null == this.previous)
+                head = this.next;
+            else
+                this.previous.next = this.next;
+            if (null == this.next)
+                tail = this.previous;
+            else
+                this.next.previous = this.previous;
+            // the next link is kept so that an iterator on this value can still move on
+            size--;
+        }
+    }
+
+    private class EntryIterator implements Iterator<AnnotatedValue<V>> {
+
+        private Entry next;
+
+        private EntryIterator(final Entry head) {
+            this.next = head;
+        }
+
+        public boolean hasNext() {
+            while (null != this.next && this.next.removed) {
+                this.next = this.next.next;
+            }
+            return null != this.next;
+        }
+
+        public AnnotatedValue<V> next() {
+            if (!this.hasNext())
+                throw new NoSuchElementException();
+            final Entry entry = this.next;
+            this.next = entry.next;
+            return entry;
+        }
+    }
+}
@@ -3,6 +3,7 @@ package com.tinkerpop.blueprints.tinkergraph;
 import com.tinkerpop.blueprints.Annotations;
 import com.tinkerpop.blueprints.util.AnnotationHelper;
 
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Optional;
@@ -31,4 +32,27 @@ public class TinkerAnnotations implements Annotations {
     public String toString() {
         return this.annotations.toString();
     }
+
+    /**
+     * Get a view of the annotations for a read-only graph.
+     */
+    protected Annotations readOnly() {
+        return new Annotations() {
+            public void set(final String key, final Object value) {
+                throw TinkerMappedGraph.readOnly();
+            }
+
+            public <T> Optional<T> get(final String key) {
+                return TinkerAnnotations.this.get(key);
+            }
+
+            public Set<String> getKeys() {
+                return Collections.unmodifiableSet(TinkerAnnotations.this.getKeys());
+            }
+
+            public String toString() {
+                return TinkerAnnotations.this.toString();
+            }
+        };
+    }
 }
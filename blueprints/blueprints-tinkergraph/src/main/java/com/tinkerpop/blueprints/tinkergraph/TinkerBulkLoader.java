@@ -0,0 +1,183 @@
+package com.tinkerpop.blueprints.tinkergraph;
+
+import com.tinkerpop.blueprints.AnnotatedList;
+import com.tinkerpop.blueprints.Direction;
+import com.tinkerpop.blueprints.Edge;
+import com.tinkerpop.blueprints.Element;
+import com.tinkerpop.blueprints.Graph;
+import com.tinkerpop.blueprints.Property;
+import com.tinkerpop.blueprints.Vertex;
+import com.tinkerpop.blueprints.util.ElementHelper;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Loads many vertices and edges into a {@link TinkerGraph}. The elements are put into the graph as they are added,
+ * but the adjacency of the vertices and the key indices are only built, in parallel, once the load is finished with
+ * {@link #finish()}. Until then the edges can not be traversed and the elements can not be found by an index.
+ * <p/>
+ * If the graph has no strategy, the elements are created directly without composing strategy functions, logging or
+ * indexing each of them. Otherwise each element is added through the graph so that the strategy applies to it. A
+ * direct load into a graph with a log blocks the other writers and the checkpoints of the graph from the creation of
+ * the loader until the load is finished, when the graph is checkpointed (see {@link TinkerLog#beginUnlogged()}). A
+ * loader is meant to be used by a single thread, which must finish the load.
+ */
+public class TinkerBulkLoader {
+
+    private final TinkerGraph graph;
+    private final boolean direct;
+    private final TinkerLog log;
+    private final List<TinkerVertex> vertices = new ArrayList<>();
+    private final List<TinkerEdge> edges = new ArrayList<>();
+    private boolean finished = false;
+
+    protected TinkerBulkLoader(final TinkerGraph graph, final int expectedVertices, final int expectedEdges) {
+        if (expectedVertices < 0 || expectedEdges < 0)
+            throw new IllegalArgumentException("The expected number of elements can not be negative");
+        graph.checkNotFrozen();
+        this.graph = graph;
+        this.direct = !graph.strategy().getGraphStrategy().isPresent();
+        this.log = this.direct ? graph.log : null;
+        if (null != this.log)
+            this.log.beginUnlogged();
+        // the element maps of a graph with concurrent writers can not be swapped safely
+        if (this.direct && !graph.concurrent) {
+            if (expectedVertices > graph.vertices.size())
+                graph.vertices = presize(graph.vertices, expectedVertices);
+            if (expectedEdges > graph.edges.size())
+                graph.edges = presize(graph.edges, expectedEdges);
+        }
+    }
+
+    /**
+     * Add a vertex with the provided key/values, which may include {@link Property.Key#ID} and
+     * {@link Property.Key#LABEL}.
+     */
+    public Vertex addVertex(final Object... keyValues) {
+        this.checkNotFinished();
+        if (!this.direct)
+            return this.graph.addVertex(keyValues);
+
+        ElementHelper.legalKeyValues(keyValues);
+        final Object idString = ElementHelper.getIdValue(keyValues).orElse(null);
+        final String label = ElementHelper.getLabelValue(keyValues).orElse(null);
+        final TinkerVertex vertex = TinkerHelper.putElement(this.graph, this.graph.vertices, idString,
+                id -> new TinkerVertex(id, null == label ? Property.Key.DEFAULT_LABEL.toString() : label, this.graph),
+                Graph.Exceptions::vertexWithIdAlreadyExists);
+        attachProperties(vertex, keyValues);
+        this.vertices.add(vertex);
+        return vertex;
+    }
+
+    /**
+     * Add an edge between the provided vertices, which are either vertices of the graph or their ids. The key/values
+     * may include {@link Property.Key#ID}.
+     */
+    public Edge addEdge(final Object outVertex, final String label, final Object inVertex, final Object... keyValues) {
+        this.checkNotFinished();
+        if (label == null)
+            throw Edge.Exceptions.edgeLabelCanNotBeNull();
+        final TinkerVertex out = this.getVertex(outVertex);
+        final TinkerVertex in = this.getVertex(inVertex);
+        if (!this.direct)
+            return out.addEdge(label, in, keyValues);
+
+        ElementHelper.legalKeyValues(keyValues);
+        final Object idString = ElementHelper.getIdValue(keyValues).orElse(null);
+        final TinkerEdge edge = TinkerHelper.putElement(this.graph, this.graph.edges, idString,
+                id -> new TinkerEdge(id, out, label, in, this.graph),
+                Graph.Exceptions::edgeWithIdAlreadyExist);
+        attachProperties(edge, keyValues);
+        this.edges.add(edge);
+        return edge;
+    }
+
+    /**
+     * Add a vertex for each record, where a record is the key/values of the vertex.
+     */
+    public TinkerBulkLoader addVertices(final Stream<Object[]> records) {
+        records.sequential().forEach(this::addVertex);
+        return this;
+    }
+
+    /**
+     * Add an edge for each record, where a record is the out vertex (or its id), the label and the in vertex (or its
+     * id) of the edge followed by its key/values.
+     */
+    public TinkerBulkLoader addEdges(final Stream<Object[]> records) {
+        records.sequential().forEach(record -> {
+            if (record.length < 3)
+                throw new IllegalArgumentException("An edge record must start with the out vertex, the label and the in vertex");
+            this.addEdge(record[0], (String) record[1], record[2], Arrays.copyOfRange(record, 3, record.length));
+        });
+        return this;
+    }
+
+    /**
+     * Build the adjacency of the vertices and the key indices for the loaded elements. The loader can not be used
+     * once the load is finished.
+     */
+    public void finish() {
+        this.checkNotFinished();
+        this.finished = true;
+        if (!this.direct)
+            return;
+
+        try {
+            // each adjacency is only ever added to by the thread that handles its vertex
+            final Map<Vertex, List<TinkerEdge>> outEdges = this.edges.parallelStream().collect(Collectors.groupingBy(e -> e.getVertex(Direction.OUT)));
+            outEdges.entrySet().parallelStream().forEach(entry -> entry.getValue().forEach(edge -> TinkerHelper.addOutEdge((TinkerVertex) entry.getKey(), edge.label, edge)));
+            final Map<Vertex, List<TinkerEdge>> inEdges = this.edges.parallelStream().collect(Collectors.groupingBy(e -> e.getVertex(Direction.IN)));
+            inEdges.entrySet().parallelStream().forEach(entry -> entry.getValue().forEach(edge -> TinkerHelper.addInEdge((TinkerVertex) entry.getKey(), edge.label, edge)));
+
+            this.graph.vertexIndex.putAll(this.vertices);
+            this.graph.edgeIndex.putAll(this.edges);
+            this.vertices.clear();
+            this.edges.clear();
+        } finally {
+            if (null != this.log)
+                this.log.endUnlogged();
+        }
+    }
+
+    private TinkerVertex getVertex(final Object vertex) {
+        if (vertex instanceof TinkerVertex)
+            return (TinkerVertex) vertex;
+        if (null == vertex)
+            throw Graph.Exceptions.argumentCanNotBeNull("vertex");
+        final Vertex v = this.graph.vertices.get(vertex.toString());
+        if (null == v)
+            throw Element.Exceptions.elementHasAlreadyBeenRemovedOrDoesNotExist(Vertex.class, vertex);
+        return (TinkerVertex) v;
+    }
+
+    private void checkNotFinished() {
+        if (this.finished)
+            throw new IllegalStateException("The bulk load has already finished");
+    }
+
+    private static void attachProperties(final TinkerElement element, final Object... keyValues) {
+        for (int i = 0; i < keyValues.length; i = i + 2) {
+            if (!keyValues[i].equals(Property.Key.ID) && !keyValues[i].equals(Property.Key.LABEL)) {
+                final String key = (String) keyValues[i];
+                final Object value = keyValues[i + 1];
+                ElementHelper.validateProperty(key, value);
+                element.putProperty(new TinkerProperty<>(element, key, value == AnnotatedList.make() ? new TinkerAnnotatedList<>() : value));
+            }
+        }
+    }
+
+    private static <E> Map<String, E> presize(final Map<String, E> elements, final int expectedSize) {
+        final Map<String, E> map = elements instanceof TinkerLongMap ?
+                new TinkerLongMap<>(expectedSize) :
+                new HashMap<>((int) (expectedSize / 0.75f) + 1);
+        map.putAll(elements);
+        return map;
+    }
+}
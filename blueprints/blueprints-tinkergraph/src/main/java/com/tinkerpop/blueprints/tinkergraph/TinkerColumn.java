@@ -0,0 +1,272 @@
+package com.tinkerpop.blueprints.tinkergraph;
+
+import com.tinkerpop.blueprints.Compare;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.IntConsumer;
+
+/**
+ * The values of one key of many elements in a single primitive array indexed by the ordinal of the element (see
+ * {@link TinkerColumns}). Strings are dictionary encoded so a column of strings is best suited to keys with few
+ * distinct values. A {@link Compare} on a value of the type of the column is evaluated by a loop over the array
+ * without boxing the values.
+ */
+abstract class TinkerColumn implements Serializable {
+
+    protected final BitSet present = new BitSet();
+
+    public static TinkerColumn of(final Class<?> type) {
+        if (Integer.class.equals(type))
+            return new IntColumn();
+        else if (Long.class.equals(type))
+            return new LongColumn();
+        else if (Float.class.equals(type))
+            return new FloatColumn();
+        else if (Double.class.equals(type))
+            return new DoubleColumn();
+        else if (Boolean.class.equals(type))
+            return new BooleanColumn();
+        else if (String.class.equals(type))
+            return new StringColumn();
+        else
+            throw new IllegalArgumentException("The column type is not supported: " + type);
+    }
+
+    public abstract Class<?> getType();
+
+    public boolean accepts(final Object value) {
+        return this.getType().isInstance(value);
+    }
+
+    public synchronized Object get(final int ordinal) {
+        return this.present.get(ordinal) ? this.getValue(ordinal) : null;
+    }
+
+    public synchronized void set(final int ordinal, final Object value) {
+        this.setValue(ordinal, value);
+        this.present.set(ordinal);
+    }
+
+    public synchronized void remove(final int ordinal) {
+        this.present.clear(ordinal);
+    }
+
+    /**
+     * Pass the ordinals of the elements whose value satisfies the comparison with the provided value to the consumer.
+     */
+    public synchronized void select(final Compare compare, final Object value, final IntConsumer ordinals) {
+        for (int i = this.present.nextSetBit(0); i >= 0; i = this.present.nextSetBit(i + 1)) {
+            if (compare.test(this.getValue(i), value))
+                ordinals.accept(i);
+        }
+    }
+
+    protected abstract Object getValue(final int ordinal);
+
+    protected abstract void setValue(final int ordinal, final Object value);
+
+    protected static int capacity(final int length, final int ordinal) {
+        return Math.max(ordinal + 1, length + (length >> 1) + 16);
+    }
+
+    protected static boolean matches(final Compare compare, final int comparison) {
+        switch (compare) {
+            case EQUAL:
+                return 0 == comparison;
+            case NOT_EQUAL:
+                return 0 != comparison;
+            case GREATER_THAN:
+                return comparison > 0;
+            case GREATER_THAN_EQUAL:
+                return comparison >= 0;
+            case LESS_THAN:
+                return comparison < 0;
+            default:
+                return comparison <= 0;
+        }
+    }
+
+    static class IntColumn extends TinkerColumn {
+
+        private int[] values = new int[0];
+
+        public Class<?> getType() {
+            return Integer.class;
+        }
+
+        protected Object getValue(final int ordinal) {
+            return this.values[ordinal];
+        }
+
+        protected void setValue(final int ordinal, final Object value) {
+            if (ordinal >= this.values.length)
+                this.values = Arrays.copyOf(this.values, capacity(this.values.length, ordinal));
+            this.values[ordinal] = (Integer) value;
+        }
+
+        public synchronized void select(final Compare compare, final Object value, final IntConsumer ordinals) {
+            if (!(value instanceof Integer)) {
+                super.select(compare, value, ordinals);
+                return;
+            }
+            final int v = (Integer) value;
+            for (int i = this.present.nextSetBit(0); i >= 0; i = this.present.nextSetBit(i + 1)) {
+                if (matches(compare, Integer.compare(this.values[i], v)))
+                    ordinals.accept(i);
+            }
+        }
+    }
+
+    static class LongColumn extends TinkerColumn {
+
+        private long[] values = new long[0];
+
+        public Class<?> getType() {
+            return Long.class;
+        }
+
+        protected Object getValue(final int ordinal) {
+            return this.values[ordinal];
+        }
+
+        protected void setValue(final int ordinal, final Object value) {
+            if (ordinal >= this.values.length)
+                this.values = Arrays.copyOf(this.values, capacity(this.values.length, ordinal));
+            this.values[ordinal] = (Long) value;
+        }
+
+        public synchronized void select(final Compare compare, final Object value, final IntConsumer ordinals) {
+            if (!(value instanceof Long)) {
+                super.select(compare, value, ordinals);
+                return;
+            }
+            final long v = (Long) value;
+            for (int i = this.present.nextSetBit(0); i >= 0; i = this.present.nextSetBit(i + 1)) {
+                if (matches(compare, Long.compare(this.values[i], v)))
+                    ordinals.accept(i);
+            }
+        }
+    }
+
+    static class FloatColumn extends TinkerColumn {
+
+        private float[] values = new float[0];
+
+        public Class<?> getType() {
+            return Float.class;
+        }
+
+        protected Object getValue(final int ordinal) {
+            return this.values[ordinal];
+        }
+
+        protected void setValue(final int ordinal, final Object value) {
+            if (ordinal >= this.values.length)
+                this.values = Arrays.copyOf(this.values, capacity(this.values.length, ordinal));
+            this.values[ordinal] = (Float) value;
+        }
+
+        public synchronized void select(final Compare compare, final Object value, final IntConsumer ordinals) {
+            if (!(value instanceof Float)) {
+                super.select(compare, value, ordinals);
+                return;
+            }
+            // Float.compare orders values like Float.compareTo and Float.equals do
+            final float v = (Float) value;
+            for (int i = this.present.nextSetBit(0); i >= 0; i = this.present.nextSetBit(i + 1)) {
+                if (matches(compare, Float.compare(this.values[i], v)))
+                    ordinals.accept(i);
+            }
+        }
+    }
+
+    static class DoubleColumn extends TinkerColumn {
+
+        private double[] values = new double[0];
+
+        public Class<?> getType() {
+            return Double.class;
+        }
+
+        protected Object getValue(final int ordinal) {
+            return this.values[ordinal];
+        }
+
+        protected void setValue(final int ordinal, final Object value) {
+            if (ordinal >= this.values.length)
+                this.values = Arrays.copyOf(this.values, capacity(this.values.length, ordinal));
+            this.values[ordinal] = (Double) value;
+        }
+
+        public synchronized void select(final Compare compare, final Object value, final IntConsumer ordinals) {
+            if (!(value instanceof Double)) {
+                super.select(compare, value, ordinals);
+                return;
+            }
+            final double v = (Double) value;
+            for (int i = this.present.nextSetBit(0); i >= 0; i = this.present.nextSetBit(i + 1)) {
+                if (matches(compare, Double.compare(this.values[i], v)))
+                    ordinals.accept(i);
+            }
+        }
+    }
+
+    static class BooleanColumn extends TinkerColumn {
+
+        private final BitSet values = new BitSet();
+
+        public Class<?> getType() {
+            return Boolean.class;
+        }
+
+        protected Object getValue(final int ordinal) {
+            return this.values.get(ordinal);
+        }
+
+        protected void setValue(final int ordinal, final Object value) {
+            this.values.set(ordinal, (Boolean) value);
+        }
+    }
+
+    static class StringColumn extends TinkerColumn {
+
+        private final List<String> dictionary = new ArrayList<>();
+        private final Map<String, Integer> codes = new HashMap<>();
+        private int[] values = new int[0];
+
+        public Class<?> getType() {
+            return String.class;
+        }
+
+        protected Object getValue(final int ordinal) {
+            return this.dictionary.get(this.values[ordinal]);
+        }
+
+        protected void setValue(final int ordinal, final Object value) {
+            if (ordinal >= this.values.length)
+                this.values = Arrays.copyOf(this.values, capacity(this.values.length, ordinal));
+            this.values[ordinal] = this.codes.computeIfAbsent((String) value, v -> {
+                this.dictionary.add(v);
+                return this.dictionary.size() - 1;
+            });
+        }
+
+        public synchronized void select(final Compare compare, final Object value, final IntConsumer ordinals) {
+            // the comparison is evaluated once per distinct value and then looked up per element
+            final boolean[] matches = new boolean[this.dictionary.size()];
+            for (int code = 0; code < matches.length; code++) {
+                matches[code] = compare.test(this.dictionary.get(code), value);
+            }
+            for (int i = this.present.nextSetBit(0); i >= 0; i = this.present.nextSetBit(i + 1)) {
+                if (matches[this.values[i]])
+                    ordinals.accept(i);
+            }
+        }
+    }
+}
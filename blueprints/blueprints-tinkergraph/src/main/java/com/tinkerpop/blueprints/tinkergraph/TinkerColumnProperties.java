@@ -0,0 +1,141 @@
+package com.tinkerpop.blueprints.tinkergraph;
+
+import com.tinkerpop.blueprints.Property;
+
+import java.io.Serializable;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * The properties of an element of a class with columns (see {@link TinkerColumns}). The values of column keys are
+ * kept in the columns and a {@link TinkerProperty} is only created when such a property is got. The values of any
+ * other keys are kept in the wrapped map as usual. The views of the map are live: iterating them walks the wrapped
+ * map and then the columns, creating a property for each value of a column key.
+ */
+class TinkerColumnProperties extends AbstractMap<String, Property> implements Serializable {
+
+    private final TinkerElement element;
+    private final TinkerColumns columns;
+    protected final Map<String, Property> properties;
+
+    public TinkerColumnProperties(final TinkerElement element, final TinkerColumns columns, final Map<String, Property> properties) {
+        this.element = element;
+        this.columns = columns;
+        this.properties = properties;
+    }
+
+    public Property get(final Object key) {
+        final TinkerColumn column = this.columns.getColumn(key);
+        if (null == column)
+            return this.properties.get(key);
+        final Object value = -1 == this.element.ordinal ? null : column.get(this.element.ordinal);
+        return null == value ? null : new TinkerProperty<>(this.element, (String) key, value);
+    }
+
+    public boolean containsKey(final Object key) {
+        return null != this.get(key);
+    }
+
+    public Property put(final String key, final Property property) {
+        final TinkerColumn column = this.columns.getColumn(key);
+        if (null == column)
+            return this.properties.put(key, property);
+        if (!column.accepts(property.get()))
+            throw Property.Exceptions.dataTypeOfPropertyValueNotSupported(property.get());
+        final Property oldProperty = this.get(key);
+        this.columns.set(this.element, column, property.get());
+        return oldProperty;
+    }
+
+    public Property remove(final Object key) {
+        final TinkerColumn column = this.columns.getColumn(key);
+        if (null == column)
+            return this.properties.remove(key);
+        final Property oldProperty = this.get(key);
+        if (null != oldProperty)
+            column.remove(this.element.ordinal);
+        return oldProperty;
+    }
+
+    public void clear() {
+        this.columns.unregister(this.element);
+        this.properties.clear();
+    }
+
+    public int size() {
+        int size = this.properties.size();
+        if (-1 != this.element.ordinal) {
+            for (final String key : (Set<String>) this.columns.getKeys()) {
+                final TinkerColumn column = this.columns.getColumn(key);
+                if (null != column && null != column.get(this.element.ordinal))
+                    size++;
+            }
+        }
+        return size;
+    }
+
+    public Set<Entry<String, Property>> entrySet() {
+        return new AbstractSet<Entry<String, Property>>() {
+            public Iterator<Entry<String, Property>> iterator() {
+                return new EntryIterator();
+            }
+
+            public int size() {
+                return TinkerColumnProperties.this.size();
+            }
+        };
+    }
+
+    private class EntryIterator implements Iterator<Entry<String, Property>> {
+
+        private final Iterator<Entry<String, Property>> properties = TinkerColumnProperties.this.properties.entrySet().iterator();
+        private final Iterator<String> keys = columns.getKeys().iterator();
+        private Entry<String, Property> next = null;
+        private Entry<String, Property> last = null;
+        // whether the next and the last entry are from the columns rather than the wrapped map
+        private boolean nextInColumns = false;
+        private boolean lastInColumns = false;
+
+        public boolean hasNext() {
+            if (null != this.next)
+                return true;
+            if (this.properties.hasNext()) {
+                this.next = this.properties.next();
+                return true;
+            }
+            this.nextInColumns = true;
+            while (-1 != element.ordinal && this.keys.hasNext()) {
+                final String key = this.keys.next();
+                final Property property = get(key);
+                if (null != property) {
+                    this.next = new SimpleImmutableEntry<>(key, property);
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        public Entry<String, Property> next() {
+            if (!this.hasNext())
+                throw new NoSuchElementException();
+            this.last = this.next;
+            this.lastInColumns = this.nextInColumns;
+            this.next = null;
+            return this.last;
+        }
+
+        public void remove() {
+            if (null == this.last)
+                throw new IllegalStateException();
+            if (this.lastInColumns)
+                TinkerColumnProperties.this.remove(this.last.getKey());
+            else
+                this.properties.remove();
+            this.last = null;
+        }
+    }
+}
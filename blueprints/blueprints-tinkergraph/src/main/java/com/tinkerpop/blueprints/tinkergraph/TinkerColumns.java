@@ -0,0 +1,158 @@
+package com.tinkerpop.blueprints.tinkergraph;
+
+import com.tinkerpop.blueprints.Compare;
+import com.tinkerpop.blueprints.Graph;
+import com.tinkerpop.blueprints.Property;
+import com.tinkerpop.blueprints.Vertex;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The columns of the vertices or of the edges of a graph (see {@link TinkerGraph#createColumn}). An element is given
+ * an ordinal, its position in every column, when its first value is put into a column. The ordinal of a removed
+ * element is given to the next element, so the columns only grow with the number of elements in the graph.
+ * <p/>
+ * The elements of a class with columns keep their properties in a {@link TinkerColumnProperties}, which puts the
+ * values of the column keys into the columns and the values of any other keys into the usual map.
+ */
+class TinkerColumns<T extends TinkerElement> implements Serializable {
+
+    private final TinkerGraph graph;
+    private final Class<T> columnClass;
+    private final Map<String, TinkerColumn> columns = new ConcurrentHashMap<>();
+    private TinkerElement[] elements = new TinkerElement[0];
+    private int size = 0;
+    // the ordinals of removed elements that are free to be reused
+    private int[] free = new int[0];
+    private int freeSize = 0;
+
+    public TinkerColumns(final TinkerGraph graph, final Class<T> columnClass) {
+        this.graph = graph;
+        this.columnClass = columnClass;
+    }
+
+    public boolean isEmpty() {
+        return this.columns.isEmpty();
+    }
+
+    public TinkerColumn getColumn(final Object key) {
+        return null == key ? null : this.columns.get(key);
+    }
+
+    public Set<String> getKeys() {
+        return Collections.unmodifiableSet(this.columns.keySet());
+    }
+
+    public void set(final T element, final TinkerColumn column, final Object value) {
+        if (-1 == element.ordinal)
+            this.register(element);
+        column.set(element.ordinal, value);
+    }
+
+    /**
+     * Remove the values of the element from the columns as the element is removed from the graph.
+     */
+    public synchronized void unregister(final T element) {
+        if (-1 != element.ordinal) {
+            this.columns.values().forEach(column -> column.remove(element.ordinal));
+            this.elements[element.ordinal] = null;
+            if (this.freeSize == this.free.length)
+                this.free = Arrays.copyOf(this.free, this.freeSize + (this.freeSize >> 1) + 16);
+            this.free[this.freeSize++] = element.ordinal;
+            element.ordinal = -1;
+        }
+    }
+
+    /**
+     * Get the elements whose value in the column of the key satisfies the comparison with the provided value.
+     */
+    public synchronized List<T> select(final String key, final Compare compare, final Object value) {
+        final List<T> elements = new ArrayList<>();
+        this.columns.get(key).select(compare, value, ordinal -> {
+            final T element = (T) this.elements[ordinal];
+            if (null != element)
+                elements.add(element);
+        });
+        return elements;
+    }
+
+    public void createColumn(final String key, final Class<?> type) {
+        if (null == key)
+            throw Graph.Exceptions.argumentCanNotBeNull("key");
+        if (key.isEmpty())
+            throw new IllegalArgumentException("The key for the column cannot be an empty string");
+        if (key.equals(Property.Key.ID) || key.equals(Property.Key.LABEL))
+            throw Property.Exceptions.propertyKeyIsReserved(key);
+        final TinkerColumn column = TinkerColumn.of(type);
+        if (this.columns.containsKey(key)) {
+            if (this.columns.get(key).getType().equals(type))
+                return;
+            this.dropColumn(key);
+        }
+
+        final Collection<T> elements = this.getElements();
+        for (final T element : elements) {
+            final Property property = element.properties.get(key);
+            if (null != property && !column.accepts(property.get()))
+                throw new IllegalArgumentException("The value of the key is not of the type of the column: " + property);
+        }
+        for (final T element : elements) {
+            if (!(element.properties instanceof TinkerColumnProperties))
+                element.properties = new TinkerColumnProperties(element, this, element.properties);
+            final Property property = ((TinkerColumnProperties) element.properties).properties.remove(key);
+            if (null != property)
+                this.set(element, column, property.get());
+        }
+        this.columns.put(key, column);
+    }
+
+    public void dropColumn(final String key) {
+        final TinkerColumn column = this.columns.remove(key);
+        if (null == column)
+            return;
+        for (final T element : this.getElements()) {
+            if (-1 != element.ordinal) {
+                final Object value = column.get(element.ordinal);
+                if (null != value)
+                    ((TinkerColumnProperties) element.properties).properties.put(key, new TinkerProperty<>(element, key, value));
+            }
+        }
+        if (this.columns.isEmpty()) {
+            for (final T element : this.getElements()) {
+                if (element.properties instanceof TinkerColumnProperties)
+                    element.properties = ((TinkerColumnProperties) element.properties).properties;
+                element.ordinal = -1;
+            }
+            synchronized (this) {
+                this.elements = new TinkerElement[0];
+                this.size = 0;
+                this.free = new int[0];
+                this.freeSize = 0;
+            }
+        }
+    }
+
+    private synchronized void register(final T element) {
+        if (-1 == element.ordinal && this.freeSize > 0) {
+            element.ordinal = this.free[--this.freeSize];
+            this.elements[element.ordinal] = element;
+        } else if (-1 == element.ordinal) {
+            if (this.size == this.elements.length)
+                this.elements = Arrays.copyOf(this.elements, this.size + (this.size >> 1) + 16);
+            this.elements[this.size] = element;
+            element.ordinal = this.size++;
+        }
+    }
+
+    private Collection<T> getElements() {
+        return (Collection<T>) (Vertex.class.isAssignableFrom(this.columnClass) ? this.graph.vertices.values() : this.graph.edges.values());
+    }
+}
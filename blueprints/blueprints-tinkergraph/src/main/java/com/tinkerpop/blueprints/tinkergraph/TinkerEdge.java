@@ -9,8 +9,6 @@ import com.tinkerpop.blueprints.computer.GraphComputer;
 import com.tinkerpop.blueprints.util.ElementHelper;
 import com.tinkerpop.blueprints.util.StringFactory;
 
-import java.util.Set;
-
 /**
  * @author Marko A. Rodriguez (http://markorodriguez.com)
  */
@@ -19,19 +17,23 @@ class TinkerEdge extends TinkerElement implements Edge {
     private final Vertex inVertex;
     private final Vertex outVertex;
 
+    // the positions of the edge in the adjacency of its out and in vertex
+    protected int outSlot = -1;
+    protected int inSlot = -1;
+
     protected TinkerEdge(final String id, final Vertex outVertex, final String label, final Vertex inVertex, final TinkerGraph graph) {
         super(id, label, graph);
         this.outVertex = outVertex;
         this.inVertex = inVertex;
-        this.graph.edgeIndex.autoUpdate(Property.Key.LABEL, this.label, null, this);
+        if (!graph.edgeColumns.isEmpty())
+            this.properties = new TinkerColumnProperties(this, graph.edgeColumns, this.properties);
     }
 
     private TinkerEdge(final TinkerEdge edge, final TinkerGraphComputer.State state, final String centricId, final TinkerVertexMemory vertexMemory) {
-        super(edge.id, edge.label, edge.graph);
+        super(edge);
         this.state = state;
         this.inVertex = edge.inVertex;
         this.outVertex = edge.outVertex;
-        this.properties = edge.properties;
         this.vertexMemory = vertexMemory;
         this.centricId = centricId;
     }
@@ -39,9 +41,20 @@ class TinkerEdge extends TinkerElement implements Edge {
     public <V> void setProperty(final String key, final V value) {
         ElementHelper.validateProperty(key, value);
         if (TinkerGraphComputer.State.STANDARD == this.state) {
-            final Property oldProperty = super.getProperty(key);
-            this.properties.put(key, new TinkerProperty<>(this, key, value));
-            this.graph.edgeIndex.autoUpdate(key, value, oldProperty.isPresent() ? oldProperty.get() : null, this);
+            final TinkerLog log = TinkerLog.begin(this.graph);
+            try {
+                // the old value, the new value and the indices are updated together so that the indices have no stale values
+                synchronized (this) {
+                    final Property oldProperty = super.getProperty(key);
+                    this.putProperty(new TinkerProperty<>(this, key, value));
+                    if (null != log)
+                        log.setProperty(this, key, value);
+                    this.graph.edgeIndex.autoUpdate(key, value, oldProperty.isPresent() ? oldProperty.get() : null, this);
+                    this.graph.vertexCentricIndex.autoUpdate(key, this);
+                }
+            } finally {
+                TinkerLog.end(log);
+            }
         } else if (TinkerGraphComputer.State.CENTRIC == this.state) {
             if (this.vertexMemory.getComputeKeys().containsKey(key))
                 this.vertexMemory.setProperty(this, key, value);
@@ -62,25 +75,35 @@ class TinkerEdge extends TinkerElement implements Edge {
     }
 
     public void remove() {
-        if (!this.graph.edges.containsKey(this.getId()))
-            throw Element.Exceptions.elementHasAlreadyBeenRemovedOrDoesNotExist(Edge.class, this.getId());
+        final TinkerLog log = TinkerLog.begin(this.graph);
+        try {
+            if (!this.detach(log))
+                throw Element.Exceptions.elementHasAlreadyBeenRemovedOrDoesNotExist(Edge.class, this.getId());
+            synchronized (this) {
+                this.graph.edgeIndex.removeElement(this);
+                this.properties.clear();
+            }
+        } finally {
+            TinkerLog.end(log);
+        }
+    }
+
+    /**
+     * Remove the edge from the graph and from the adjacency of its vertices, but not from the key index as that needs
+     * the properties of the edge. Returns false if the edge has already been removed.
+     */
+    protected boolean detach(final TinkerLog log) {
+        // removing the edge from the graph first ensures that only one of many concurrent removals proceeds
+        if (!TinkerHelper.removeElement(log, this.graph.edges, this))
+            return false;
 
         final TinkerVertex outVertex = (TinkerVertex) this.getVertex(Direction.OUT);
         final TinkerVertex inVertex = (TinkerVertex) this.getVertex(Direction.IN);
-        if (null != outVertex && null != outVertex.outEdges) {
-            final Set<Edge> edges = outVertex.outEdges.get(this.getLabel());
-            if (null != edges)
-                edges.remove(this);
-        }
-        if (null != inVertex && null != inVertex.inEdges) {
-            final Set<Edge> edges = inVertex.inEdges.get(this.getLabel());
-            if (null != edges)
-                edges.remove(this);
-        }
-
-        this.graph.edgeIndex.removeElement(this);
-        this.graph.edges.remove(this.getId());
-        this.properties.clear();
+        if (null != outVertex && null != outVertex.outEdges)
+            outVertex.outEdges.remove(this);
+        if (null != inVertex && null != inVertex.inEdges)
+            inVertex.inEdges.remove(this);
+        return true;
     }
 
     public TinkerEdge createClone(final TinkerGraphComputer.State state, final String centricId, final TinkerVertexMemory vertexMemory) {
@@ -7,28 +7,57 @@ import com.tinkerpop.blueprints.computer.GraphComputer;
 import com.tinkerpop.blueprints.util.ElementHelper;
 
 import java.io.Serializable;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * @author Marko A. Rodriguez (http://markorodriguez.com)
  */
 abstract class TinkerElement implements Element, Serializable {
 
-    protected Map<String, Property> properties = new HashMap<>();
+    protected Map<String, Property> properties;
+    // the position of the element in the columns of the graph, if it has any column values
+    protected int ordinal = -1;
     protected final String id;
+    // the id as a long if it is the canonical form of one, parsed once for the elements of the graph (see TinkerLongMap)
+    protected final long longId;
+    protected final boolean isLongId;
     protected final String label;
+    // the id of the label in the symbols of the graph
+    protected final int labelId;
     protected final TinkerGraph graph;
 
     protected String centricId;
     protected TinkerGraphComputer.State state = TinkerGraphComputer.State.STANDARD;
     protected TinkerVertexMemory vertexMemory;
+    // the position of a clone in the columns of its vertex memory, if the computation numbered it (see TinkerVertexMemory)
+    protected int memoryOrdinal = -1;
 
 
     protected TinkerElement(final String id, final String label, final TinkerGraph graph) {
         this.graph = graph;
         this.id = id;
-        this.label = label;
+        this.isLongId = TinkerLongMap.isLongKey(id);
+        this.longId = this.isLongId ? Long.parseLong(id) : 0l;
+        this.labelId = graph.symbols.getId(label);
+        this.label = graph.symbols.get(this.labelId);
+        this.properties = graph.concurrent ? new ConcurrentHashMap<>() : new HashMap<>();
+    }
+
+    /**
+     * Creates a view of the element that shares its id, label and properties.
+     */
+    protected TinkerElement(final TinkerElement element) {
+        this.graph = element.graph;
+        this.id = element.id;
+        this.isLongId = element.isLongId;
+        this.longId = element.longId;
+        this.labelId = element.labelId;
+        this.label = element.label;
+        this.properties = element.properties;
+        this.ordinal = element.ordinal;
     }
 
     public int hashCode() {
@@ -47,6 +76,22 @@ abstract class TinkerElement implements Element, Serializable {
         return new HashMap<>(this.properties);
     }
 
+    /**
+     * The view follows the state of the element like {@link #getProperty(String)}: during a computation it is a copy
+     * of read-only clones of the properties. Like {@link #getProperties()}, it does not hold the compute keys.
+     */
+    public Map<String, Property> getPropertiesView() {
+        if (TinkerGraphComputer.State.STANDARD == this.state) {
+            return Collections.unmodifiableMap(this.properties);
+        } else if (TinkerGraphComputer.State.CENTRIC == this.state) {
+            final Map<String, Property> properties = new HashMap<>();
+            this.properties.forEach((key, property) -> properties.put(key, ((TinkerProperty) property).createClone(TinkerGraphComputer.State.CENTRIC, this.vertexMemory)));
+            return Collections.unmodifiableMap(properties);
+        } else {
+            throw GraphComputer.Exceptions.adjacentElementPropertiesCanNotBeRead();
+        }
+    }
+
     public <V> Property<V> getProperty(final String key) {
         if (TinkerGraphComputer.State.STANDARD == this.state) {
             return this.properties.getOrDefault(key, Property.empty());
@@ -62,6 +107,16 @@ abstract class TinkerElement implements Element, Serializable {
         }
     }
 
+    /**
+     * Put the property under the instance of its key that is shared by the graph. An annotated list value is attached
+     * to the element so that its mutations are logged.
+     */
+    protected void putProperty(final TinkerProperty<?> property) {
+        if (property.get() instanceof TinkerAnnotatedList)
+            ((TinkerAnnotatedList) property.get()).attach(this, property.getKey());
+        this.properties.put(property.getKey(), property);
+    }
+
     public boolean equals(final Object object) {
         return ElementHelper.areEqual(this, object);
     }
@@ -4,23 +4,23 @@ import com.tinkerpop.blueprints.Annotations;
 import com.tinkerpop.blueprints.Edge;
 import com.tinkerpop.blueprints.Element;
 import com.tinkerpop.blueprints.Graph;
-import com.tinkerpop.blueprints.Property;
 import com.tinkerpop.blueprints.Strategy;
 import com.tinkerpop.blueprints.Transaction;
 import com.tinkerpop.blueprints.Vertex;
 import com.tinkerpop.blueprints.computer.GraphComputer;
 import com.tinkerpop.blueprints.query.GraphQuery;
 import com.tinkerpop.blueprints.strategy.GraphStrategy;
-import com.tinkerpop.blueprints.util.ElementHelper;
 import com.tinkerpop.blueprints.util.StringFactory;
 import org.apache.commons.configuration.Configuration;
 
 import java.io.Serializable;
+import java.nio.file.Paths;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * An in-memory, reference implementation of the property graph interfaces provided by Blueprints.
@@ -30,13 +30,81 @@ import java.util.Set;
  */
 public class TinkerGraph implements Graph, Serializable {
 
-    protected Long currentId = -1l;
-    protected Map<String, Vertex> vertices = new HashMap<>();
-    protected Map<String, Edge> edges = new HashMap<>();
+    /**
+     * The configuration key that determines how the vertices and edges of the graph are stored.  By default, elements
+     * are stored in a {@link HashMap} keyed by their id.  Set to {@link #STORAGE_LONG} to keep numeric ids as
+     * primitive longs in an open-addressing table, which is considerably lighter on memory for large graphs.
+     */
+    public static final String CONFIG_STORAGE = "blueprints.tg.storage";
+    public static final String STORAGE_HASH = "hash";
+    public static final String STORAGE_LONG = "long";
+
+    /**
+     * The configuration key that allows many threads to write to (and read from) the graph at once.  When true, the
+     * elements, their properties and the key indices are kept in concurrent maps and the adjacency of each vertex is
+     * guarded by its own lock, so writers only contend when they touch the same vertex.  Index creation should not
+     * race with writers of the indexed key.  It can not be combined with {@link #STORAGE_LONG}.
+     */
+    public static final String CONFIG_CONCURRENT = "blueprints.tg.concurrent";
+
+    /**
+     * The configuration key that determines how the ids of elements added without an id are generated.  By default,
+     * ids are sequential numbers (see {@link TinkerIdGenerator.Sequential}).  Set to {@link #ID_GENERATOR_UUID} for
+     * random UUIDs, or to a {@link TinkerIdGenerator} instance or the name of a {@link TinkerIdGenerator} class with
+     * a public no-argument constructor.
+     */
+    public static final String CONFIG_ID_GENERATOR = "blueprints.tg.idGenerator";
+    public static final String ID_GENERATOR_SEQUENTIAL = "sequential";
+    public static final String ID_GENERATOR_UUID = "uuid";
+
+    /**
+     * The configuration key of the directory that the graph is persisted to.  If set, the graph is written to a
+     * binary snapshot in the directory on {@link #close()} and read back from it when the graph is opened.
+     */
+    public static final String CONFIG_DIRECTORY = "blueprints.tg.directory";
+
+    /**
+     * The configuration key that appends every mutation of the graph to a write-ahead log in its directory (see
+     * {@link #CONFIG_DIRECTORY}) so that the graph survives a crash.  The log is replayed onto the snapshot when the
+     * graph is opened and is truncated whenever a checkpoint writes a new snapshot.
+     */
+    public static final String CONFIG_LOG = "blueprints.tg.log";
+
+    /**
+     * The configuration key that makes every mutation wait for its log record to be on disk.  Concurrent writers
+     * share the wait so they are synced together.  By default, the log is synced every sync interval.
+     */
+    public static final String CONFIG_LOG_SYNC = "blueprints.tg.log.sync";
+
+    /**
+     * The configuration key of the milliseconds between syncs of the log.  It defaults to 100.
+     */
+    public static final String CONFIG_LOG_SYNC_INTERVAL = "blueprints.tg.log.syncInterval";
+
+    /**
+     * The configuration key of the milliseconds between checkpoints of a logged graph.  It defaults to a minute.  Set
+     * to 0 to only checkpoint when the graph is closed.  A checkpoint writes a delta of the elements mutated since the
+     * last checkpoint, blocking writers only while they are encoded, so its cost grows with the mutations rather than
+     * with the graph.
+     */
+    public static final String CONFIG_CHECKPOINT_INTERVAL = "blueprints.tg.checkpointInterval";
+
+    protected final TinkerIdGenerator idGenerator;
+    protected final TinkerSymbols symbols = new TinkerSymbols();
+    protected final boolean concurrent;
+    protected final String directory;
+    protected transient TinkerLog log;
+    // a snapshot of a graph can not be mutated
+    protected boolean frozen = false;
+    protected Map<String, Vertex> vertices;
+    protected Map<String, Edge> edges;
     protected Annotations annotations = new TinkerAnnotations();
 
-    protected TinkerIndex<TinkerVertex> vertexIndex = new TinkerIndex<>(this, TinkerVertex.class);
-    protected TinkerIndex<TinkerEdge> edgeIndex = new TinkerIndex<>(this, TinkerEdge.class);
+    protected TinkerIndex<TinkerVertex> vertexIndex;
+    protected TinkerIndex<TinkerEdge> edgeIndex;
+    protected TinkerVertexCentricIndex vertexCentricIndex;
+    protected TinkerColumns<TinkerVertex> vertexColumns;
+    protected TinkerColumns<TinkerEdge> edgeColumns;
 
     protected final Strategy strategy = new Strategy.Simple();
     private final Strategy.Context<Graph> graphContext = new Strategy.Context<Graph>(this, this);
@@ -48,10 +116,58 @@ public class TinkerGraph implements Graph, Serializable {
      * and therefore {@link Graph} implementations should maintain a private or protected constructor.  This rule is
      * enforced by the Blueprints Test suite.
      */
-    private TinkerGraph(final Optional<GraphStrategy> strategy) {
+    private TinkerGraph(final Optional<Configuration> configuration, final Optional<GraphStrategy> strategy) {
+        // the strategy is only set once the elements of the directory are read back so that it does not apply to them
+        this.strategy.set(Optional.empty());
+        final String storage = configuration.map(c -> c.getString(CONFIG_STORAGE, STORAGE_HASH)).orElse(STORAGE_HASH);
+        this.concurrent = configuration.map(c -> c.getBoolean(CONFIG_CONCURRENT, false)).orElse(false);
+        if (storage.equals(STORAGE_LONG)) {
+            if (this.concurrent)
+                throw new IllegalArgumentException("The storage type does not support concurrent writers: " + storage);
+            this.vertices = new TinkerLongMap<>();
+            this.edges = new TinkerLongMap<>();
+        } else if (storage.equals(STORAGE_HASH)) {
+            this.vertices = this.concurrent ? new ConcurrentHashMap<>() : new HashMap<>();
+            this.edges = this.concurrent ? new ConcurrentHashMap<>() : new HashMap<>();
+        } else
+            throw new IllegalArgumentException("The storage type is not supported: " + storage);
+        this.idGenerator = configuration.map(c -> c.getProperty(CONFIG_ID_GENERATOR)).map(TinkerGraph::createIdGenerator).orElseGet(TinkerIdGenerator.Sequential::new);
+        this.vertexIndex = new TinkerIndex<>(this, TinkerVertex.class);
+        this.edgeIndex = new TinkerIndex<>(this, TinkerEdge.class);
+        this.vertexCentricIndex = new TinkerVertexCentricIndex(this);
+        this.vertexColumns = new TinkerColumns<>(this, TinkerVertex.class);
+        this.edgeColumns = new TinkerColumns<>(this, TinkerEdge.class);
+
+        this.directory = configuration.map(c -> c.getString(CONFIG_DIRECTORY, null)).orElse(null);
+        if (null != this.directory && TinkerStorage.exists(Paths.get(this.directory)))
+            TinkerStorage.load(this, Paths.get(this.directory));
+
+        if (configuration.map(c -> c.getBoolean(CONFIG_LOG, false)).orElse(false)) {
+            if (null == this.directory)
+                throw new IllegalArgumentException("The log requires the directory of the graph: " + CONFIG_DIRECTORY);
+            final Configuration c = configuration.get();
+            TinkerLog.replay(this, Paths.get(this.directory));
+            this.log = new TinkerLog(this, Paths.get(this.directory), c.getBoolean(CONFIG_LOG_SYNC, false),
+                    c.getLong(CONFIG_LOG_SYNC_INTERVAL, 100l), c.getLong(CONFIG_CHECKPOINT_INTERVAL, 60000l));
+        }
+
         this.strategy.set(strategy);
     }
 
+    private static TinkerIdGenerator createIdGenerator(final Object idGenerator) {
+        if (idGenerator instanceof TinkerIdGenerator)
+            return (TinkerIdGenerator) idGenerator;
+        else if (idGenerator.equals(ID_GENERATOR_SEQUENTIAL))
+            return new TinkerIdGenerator.Sequential();
+        else if (idGenerator.equals(ID_GENERATOR_UUID))
+            return new TinkerIdGenerator.RandomUUID();
+        try {
+            return (TinkerIdGenerator) Class.forName(idGenerator.toString()).newInstance();
+        } catch (final Exception e) {
+            throw new IllegalArgumentException("The id generator is not supported: " + idGenerator, e);
+        }
+    }
+
     /**
      * Open a new {@link TinkerGraph} instance.
      * <p/>
@@ -87,7 +203,7 @@ public class TinkerGraph implements Graph, Serializable {
      * @return a newly opened {@link Graph}
      */
     public static <G extends Graph> G open(final Optional<Configuration> configuration, final Optional<GraphStrategy> strategy) {
-        return (G) new TinkerGraph(strategy);
+        return (G) new TinkerGraph(configuration, strategy);
     }
 
     ////////////// BLUEPRINTS API METHODS //////////////////
@@ -100,23 +216,7 @@ public class TinkerGraph implements Graph, Serializable {
         // The composed function must then be applied with the arguments originally passed to addVertex.
         return strategy.compose(
                 s -> s.getAddVertexStrategy(graphContext),
-                (kvs) -> {
-                    ElementHelper.legalKeyValues(kvs);
-                    Object idString = ElementHelper.getIdValue(kvs).orElse(null);
-                    final String label = ElementHelper.getLabelValue(kvs).orElse(null);
-
-                    if (null != idString) {
-                        if (this.vertices.containsKey(idString.toString()))
-                            throw Exceptions.vertexWithIdAlreadyExists(idString);
-                    } else {
-                        idString = TinkerHelper.getNextId(this);
-                    }
-
-                    final Vertex vertex = new TinkerVertex(idString.toString(), null == label ? Property.Key.DEFAULT_LABEL.toString() : label, this);
-                    this.vertices.put(vertex.getId().toString(), vertex);
-                    ElementHelper.attachKeyValues(vertex, kvs);
-                    return vertex;
-                }).apply(keyValues);
+                (kvs) -> TinkerHelper.addVertex(this, kvs)).apply(keyValues);
     }
 
     public GraphQuery query() {
@@ -139,17 +239,107 @@ public class TinkerGraph implements Graph, Serializable {
         return StringFactory.graphString(this, "vertices:" + this.vertices.size() + " edges:" + this.edges.size());
     }
 
+    /**
+     * Get the generator of the ids of elements that are added without an id.
+     */
+    public TinkerIdGenerator getIdGenerator() {
+        return this.idGenerator;
+    }
+
+    /**
+     * Remove the vertices and edges, and the edges of the vertices, as a batch. Each indexed value is updated once
+     * for the batch rather than once per element. Elements that have already been removed are skipped. If the graph
+     * has a strategy, the elements are removed one at a time so that the strategy applies to each of them.
+     */
+    public void removeAll(final Iterable<? extends Element> elements) {
+        if (this.strategy.getGraphStrategy().isPresent()) {
+            for (final Element element : elements) {
+                if (element instanceof Vertex ? this.vertices.get(element.getId()) == element : this.edges.get(element.getId()) == element)
+                    element.remove();
+            }
+        } else
+            TinkerHelper.removeAll(this, elements);
+    }
+
+    /**
+     * Get an immutable copy of the graph for analytics, such as OLAP jobs and long traversals, while the graph keeps
+     * taking writes. The adjacency of the copy is compacted (see {@link #compact()}) so that the edges and the degree
+     * of a vertex are read from arrays, its labels and keys are interned and it keeps the key indices of the graph.
+     * Property values are shared with the graph, except for annotated lists which are copied. The copy can be read by
+     * many threads at once without locking, and any mutation of it, its elements or its annotated lists fails.
+     * <p/>
+     * A snapshot of a concurrent graph (see {@link #CONFIG_CONCURRENT}) can be taken while the graph is written. Elements
+     * that are added or removed meanwhile may or may not be in it, but an edge is only ever copied along with both of
+     * its vertices and the properties of an element are copied as they were between two of its writes. Like any read
+     * of a graph that is not concurrent, a snapshot of it must not be taken while it is written.
+     */
+    public TinkerGraph snapshot() {
+        final TinkerGraph snapshot = new TinkerGraph(Optional.empty(), Optional.empty());
+        TinkerHelper.copy(this, snapshot);
+        snapshot.compact();
+        snapshot.frozen = true;
+        return snapshot;
+    }
+
+    /**
+     * Get a loader that adds many vertices and edges to the graph and builds their adjacency and indices at once.
+     */
+    public TinkerBulkLoader bulkLoader() {
+        return new TinkerBulkLoader(this, 0, 0);
+    }
+
+    /**
+     * Get a loader that adds many vertices and edges to the graph, sizing the graph for the expected number of
+     * vertices and edges upfront.
+     */
+    public TinkerBulkLoader bulkLoader(final int expectedVertices, final int expectedEdges) {
+        return new TinkerBulkLoader(this, expectedVertices, expectedEdges);
+    }
+
     public void clear() {
+        this.checkNotFrozen();
+        // the log can not express a clear so the empty graph is checkpointed before any other writer logs again
+        if (null != this.log)
+            this.log.checkpoint(this::reset);
+        else
+            this.reset();
+    }
+
+    private void reset() {
         this.vertices.clear();
         this.edges.clear();
         this.annotations = new TinkerAnnotations();
-        this.currentId = 0l;
+        this.idGenerator.reset();
         this.vertexIndex = new TinkerIndex<>(this, TinkerVertex.class);
         this.edgeIndex = new TinkerIndex<>(this, TinkerEdge.class);
+        this.vertexCentricIndex = new TinkerVertexCentricIndex(this);
+        this.vertexColumns = new TinkerColumns<>(this, TinkerVertex.class);
+        this.edgeColumns = new TinkerColumns<>(this, TinkerEdge.class);
     }
 
-    public void close() {
+    /**
+     * Packs the adjacency of every vertex into shared contiguous arrays (a compressed sparse row layout) so that
+     * traversals walk memory sequentially instead of chasing pointers through per-label sets. This is intended for
+     * read-mostly graphs, for instance after a bulk load and before OLAP jobs. The graph remains fully mutable. The
+     * adjacencies of a graph with concurrent writers are left as they are.
+     */
+    public void compact() {
+        this.checkNotFrozen();
+        TinkerAdjacency.compact(() -> this.vertices.values().stream().map(v -> ((TinkerVertex) v).outEdges).iterator());
+        TinkerAdjacency.compact(() -> this.vertices.values().stream().map(v -> ((TinkerVertex) v).inEdges).iterator());
+    }
 
+    /**
+     * Writes the graph to its directory if one is configured and closes its log. Writers should be done with the graph
+     * by then.
+     */
+    public void close() {
+        if (null != this.log) {
+            this.log.close();
+            this.log = null;
+        } else if (null != this.directory)
+            // a log left in the directory does not apply to the new snapshot
+            TinkerStorage.save(this, Paths.get(this.directory), TinkerStorage.generation(Paths.get(this.directory)) + 1);
     }
 
     public Transaction tx() {
@@ -158,10 +348,17 @@ public class TinkerGraph implements Graph, Serializable {
 
 
     public Features getFeatures() {
-        return new TinkerGraphFeatures();
+        return new TinkerGraphFeatures(null != this.directory);
     }
 
     public static class TinkerGraphFeatures implements Graph.Features {
+
+        private final boolean persistent;
+
+        public TinkerGraphFeatures(final boolean persistent) {
+            this.persistent = persistent;
+        }
+
         @Override
         public GraphFeatures graph() {
             return new GraphFeatures() {
@@ -172,8 +369,7 @@ public class TinkerGraph implements Graph, Serializable {
 
                 @Override
                 public boolean supportsPersistence() {
-                    // todo: temporary.........
-                    return false;
+                    return persistent;
                 }
             };
         }
@@ -181,33 +377,152 @@ public class TinkerGraph implements Graph, Serializable {
 
     ///////////// GRAPH SPECIFIC INDEXING METHODS ///////////////
 
+    /**
+     * The types of key indices. A {@link #HASH} index answers exact matches on the key. A {@link #SORTED} index also
+     * answers ranges of values such as {@code has(key, Compare.GREATER_THAN, value)} or {@code interval(key, a, b)}.
+     */
+    public enum IndexType {
+        HASH, SORTED
+    }
+
     public <E extends Element> void createIndex(final String key, final Class<E> elementClass) {
+        this.createIndex(key, elementClass, IndexType.HASH);
+    }
+
+    public <E extends Element> void createIndex(final String key, final Class<E> elementClass, final IndexType indexType) {
+        final TinkerLog log = TinkerLog.begin(this);
+        try {
+            if (Vertex.class.isAssignableFrom(elementClass)) {
+                this.vertexIndex.createKeyIndex(key, indexType == IndexType.SORTED);
+            } else if (Edge.class.isAssignableFrom(elementClass)) {
+                this.edgeIndex.createKeyIndex(key, indexType == IndexType.SORTED);
+            } else {
+                throw new IllegalArgumentException("Class is not indexable: " + elementClass);
+            }
+            if (null != log)
+                log.createIndex(key, elementClass, indexType);
+        } finally {
+            TinkerLog.end(log);
+        }
+    }
+
+    public <E extends Element> void dropIndex(final String key, final Class<E> elementClass) {
+        final TinkerLog log = TinkerLog.begin(this);
+        try {
+            if (Vertex.class.isAssignableFrom(elementClass)) {
+                this.vertexIndex.dropKeyIndex(key);
+            } else if (Edge.class.isAssignableFrom(elementClass)) {
+                this.edgeIndex.dropKeyIndex(key);
+            } else {
+                throw new IllegalArgumentException("Class is not indexable: " + elementClass);
+            }
+            if (null != log)
+                log.dropIndex(key, elementClass);
+        } finally {
+            TinkerLog.end(log);
+        }
+    }
+
+    public <E extends Element> Set<String> getIndexedKeys(final Class<E> elementClass) {
         if (Vertex.class.isAssignableFrom(elementClass)) {
-            this.vertexIndex.createKeyIndex(key);
+            return this.vertexIndex.getIndexedKeys();
         } else if (Edge.class.isAssignableFrom(elementClass)) {
-            this.edgeIndex.createKeyIndex(key);
+            return this.edgeIndex.getIndexedKeys();
         } else {
             throw new IllegalArgumentException("Class is not indexable: " + elementClass);
         }
     }
 
-    public <E extends Element> void dropIndex(final String key, final Class<E> elementClass) {
+    /**
+     * Get the cardinality statistics of a key index. The statistics are empty if the key is not indexed.
+     */
+    public <E extends Element> Optional<TinkerIndexStatistics> getIndexStatistics(final String key, final Class<E> elementClass) {
+        final TinkerIndex<?> index;
         if (Vertex.class.isAssignableFrom(elementClass)) {
-            this.vertexIndex.dropKeyIndex(key);
+            index = this.vertexIndex;
         } else if (Edge.class.isAssignableFrom(elementClass)) {
-            this.edgeIndex.dropKeyIndex(key);
+            index = this.edgeIndex;
         } else {
             throw new IllegalArgumentException("Class is not indexable: " + elementClass);
         }
+        return index.getIndexedKeys().contains(key) ? Optional.of(index.getStatistics(key)) : Optional.empty();
     }
 
-    public <E extends Element> Set<String> getIndexedKeys(final Class<E> elementClass) {
+    /**
+     * Create a vertex-centric index that keeps the incident edges with the provided label sorted by the value of the
+     * provided key on every vertex. A vertex query on the label with {@link com.tinkerpop.blueprints.Compare}
+     * has-containers (or an interval) on the key is then answered by a range scan over the sorted edges.
+     */
+    public void createVertexCentricIndex(final String label, final String key) {
+        final TinkerLog log = TinkerLog.begin(this);
+        try {
+            this.vertexCentricIndex.createKeyIndex(label, key);
+            if (null != log)
+                log.createVertexCentricIndex(label, key);
+        } finally {
+            TinkerLog.end(log);
+        }
+    }
+
+    public void dropVertexCentricIndex(final String label, final String key) {
+        final TinkerLog log = TinkerLog.begin(this);
+        try {
+            this.vertexCentricIndex.dropKeyIndex(label, key);
+            if (null != log)
+                log.dropVertexCentricIndex(label, key);
+        } finally {
+            TinkerLog.end(log);
+        }
+    }
+
+    public Set<String> getVertexCentricIndexedKeys(final String label) {
+        return this.vertexCentricIndex.getIndexedKeys(label);
+    }
+
+    ///////////// GRAPH SPECIFIC COLUMN METHODS ///////////////
+
+    /**
+     * Store the values of the key of the elements of the class in a column, a primitive array indexed by element,
+     * instead of in a property object per element. The type of the column is one of {@link Integer}, {@link Long},
+     * {@link Float}, {@link Double}, {@link Boolean} or {@link String}, and other types of values can not be set on
+     * the key while the column exists. Strings are dictionary encoded, so string columns suit keys with few distinct
+     * values. A query with a {@link com.tinkerpop.blueprints.Compare} on a column key that no index answers scans the
+     * column. Columns are not persisted and column creation should not race with writers of the class.
+     */
+    public <E extends Element> void createColumn(final String key, final Class<E> elementClass, final Class<?> type) {
+        this.checkNotFrozen();
         if (Vertex.class.isAssignableFrom(elementClass)) {
-            return this.vertexIndex.getIndexedKeys();
+            this.vertexColumns.createColumn(key, type);
         } else if (Edge.class.isAssignableFrom(elementClass)) {
-            return this.edgeIndex.getIndexedKeys();
+            this.edgeColumns.createColumn(key, type);
+        } else {
+            throw new IllegalArgumentException("Class is not indexable: " + elementClass);
+        }
+    }
+
+    public <E extends Element> void dropColumn(final String key, final Class<E> elementClass) {
+        this.checkNotFrozen();
+        if (Vertex.class.isAssignableFrom(elementClass)) {
+            this.vertexColumns.dropColumn(key);
+        } else if (Edge.class.isAssignableFrom(elementClass)) {
+            this.edgeColumns.dropColumn(key);
         } else {
             throw new IllegalArgumentException("Class is not indexable: " + elementClass);
         }
     }
+
+    public <E extends Element> Set<String> getColumnKeys(final Class<E> elementClass) {
+        if (Vertex.class.isAssignableFrom(elementClass)) {
+            return this.vertexColumns.getKeys();
+        } else if (Edge.class.isAssignableFrom(elementClass)) {
+            return this.edgeColumns.getKeys();
+        } else {
+            throw new IllegalArgumentException("Class is not indexable: " + elementClass);
+        }
+    }
+
+    protected void checkNotFrozen() {
+        if (this.frozen)
+            throw TinkerMappedGraph.readOnly();
+    }
 }
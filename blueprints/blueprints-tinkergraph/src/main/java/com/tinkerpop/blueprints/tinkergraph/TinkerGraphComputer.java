@@ -1,6 +1,6 @@
 package com.tinkerpop.blueprints.tinkergraph;
 
-
+import com.tinkerpop.blueprints.Vertex;
 import com.tinkerpop.blueprints.computer.ComputeResult;
 import com.tinkerpop.blueprints.computer.GraphComputer;
 import com.tinkerpop.blueprints.computer.GraphMemory;
@@ -8,8 +8,11 @@ import com.tinkerpop.blueprints.computer.VertexMemory;
 import com.tinkerpop.blueprints.computer.VertexProgram;
 import com.tinkerpop.blueprints.util.StreamFactory;
 
+import java.util.List;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ForkJoinPool;
 import java.util.concurrent.Future;
+import java.util.stream.Collectors;
 
 /**
  * @author Marko A. Rodriguez (http://markorodriguez.com)
@@ -19,6 +22,7 @@ public class TinkerGraphComputer implements GraphComputer {
     protected enum State {STANDARD, CENTRIC, ADJACENT}
 
     private Isolation isolation = Isolation.BSP;
+    private int workers = Runtime.getRuntime().availableProcessors();
     private VertexProgram vertexProgram;
     private final TinkerGraph graph;
     private final TinkerGraphMemory graphMemory;
@@ -36,6 +40,13 @@ public class TinkerGraphComputer implements GraphComputer {
         return this;
     }
 
+    public GraphComputer workers(final int workers) {
+        if (workers < 1)
+            throw GraphComputer.Exceptions.workersMustBeAtLeastOne(workers);
+        this.workers = workers;
+        return this;
+    }
+
     public GraphComputer program(final VertexProgram program) {
         this.vertexProgram = program;
         return this;
@@ -45,18 +56,29 @@ public class TinkerGraphComputer implements GraphComputer {
         return CompletableFuture.<ComputeResult>supplyAsync(() -> {
             final long time = System.currentTimeMillis();
             this.vertexMemory.setComputeKeys(this.vertexProgram.getComputeKeys());
+            // the vertices are read through the strategy of the graph, such as a partition of it
+            final List<Vertex> vertices = StreamFactory.stream(this.graph.query().vertices()).collect(Collectors.toList());
+            final int[] ordinals = this.vertexMemory.setVertices(vertices);
+            this.messenger.setMessageCombiners(this.vertexProgram.getMessageCombiners());
             this.vertexProgram.setup(this.graphMemory);
 
-            while (true) {
-                StreamFactory.parallelStream(this.graph.query().vertices()).forEach(vertex ->
-                        this.vertexProgram.execute(((TinkerVertex) vertex).createClone(State.CENTRIC,
-                                vertex.getId().toString(),
-                                this.vertexMemory), this.messenger, this.graphMemory));
+            final TinkerScheduler scheduler = new TinkerScheduler(vertices, this.workers);
+            final ForkJoinPool pool = new ForkJoinPool(this.workers);
+            try {
+                while (true) {
+                    scheduler.forEach(pool, (vertex, i) -> {
+                        final TinkerVertex clone = vertex.createClone(State.CENTRIC, vertex.getId().toString(), this.vertexMemory);
+                        clone.memoryOrdinal = ordinals[i];
+                        this.vertexProgram.execute(clone, this.messenger, this.graphMemory);
+                    });
 
-                this.vertexMemory.completeIteration();
-                this.graphMemory.incrIteration();
-                this.messenger.completeIteration();
-                if (this.vertexProgram.terminate(this.graphMemory)) break;
+                    this.vertexMemory.completeIteration();
+                    this.graphMemory.incrIteration();
+                    this.messenger.completeIteration();
+                    if (this.vertexProgram.terminate(this.graphMemory)) break;
+                }
+            } finally {
+                pool.shutdown();
             }
 
             this.graphMemory.setRuntime(System.currentTimeMillis() - time);
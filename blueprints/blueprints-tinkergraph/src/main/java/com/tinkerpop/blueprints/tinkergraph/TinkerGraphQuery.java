@@ -1,6 +1,7 @@
 package com.tinkerpop.blueprints.tinkergraph;
 
 import com.tinkerpop.blueprints.Compare;
+import com.tinkerpop.blueprints.Contains;
 import com.tinkerpop.blueprints.Edge;
 import com.tinkerpop.blueprints.Element;
 import com.tinkerpop.blueprints.Property;
@@ -11,15 +12,26 @@ import com.tinkerpop.blueprints.query.util.DefaultGraphQuery;
 import com.tinkerpop.blueprints.query.util.HasContainer;
 
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
 import java.util.Set;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 /**
  * @author Marko A. Rodriguez (http://markorodriguez.com)
  */
 public class TinkerGraphQuery extends DefaultGraphQuery {
 
+    /**
+     * Candidates beyond this size are looked up and filtered in parallel.
+     */
+    private static final int PARALLEL_THRESHOLD = 1000;
+
     private final TinkerGraph graph;
 
     public TinkerGraphQuery(final TinkerGraph graph) {
@@ -33,13 +45,10 @@ public class TinkerGraphQuery extends DefaultGraphQuery {
 
     public Iterable<Edge> edges() {
         stringifyIds();
-        final HasContainer indexedContainer = getIndexKey(Edge.class);
-        return ((null == indexedContainer) ?
-                this.graph.edges.values().parallelStream() :
-                this.graph.edgeIndex.get(indexedContainer.key, indexedContainer.value).parallelStream())
-                .filter(e -> HasContainer.testAll((Edge) e, this.hasContainers))
+        return (Iterable) stream(this.getCandidates(this.graph.edgeIndex, this.graph.edgeColumns, this.graph.edges))
+                .filter(e -> HasContainer.testAll(e, this.hasContainers))
                 .limit(this.limit)
-                .collect(Collectors.<Edge>toList());
+                .collect(Collectors.toList());
     }
 
     public Iterable<Vertex> vertices() {
@@ -48,28 +57,102 @@ public class TinkerGraphQuery extends DefaultGraphQuery {
     }
 
     private Iterable<Vertex> internalVertices() {
-        final HasContainer indexedContainer = getIndexKey(Vertex.class);
-        return ((null == indexedContainer) ?
-                this.graph.vertices.values().parallelStream() :
-                this.graph.vertexIndex.get(indexedContainer.key, indexedContainer.value).parallelStream())
-                .filter(v -> HasContainer.testAll((Vertex) v, this.hasContainers))
+        return (Iterable) stream(this.getCandidates(this.graph.vertexIndex, this.graph.vertexColumns, this.graph.vertices))
+                .filter(v -> HasContainer.testAll(v, this.hasContainers))
                 .limit(this.limit)
-                .collect(Collectors.<Vertex>toList());
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * The candidate elements for the query. Ids are looked up directly. Otherwise, the has-containers that an index
+     * can answer (exact matches, {@link Contains} on indexed keys and ranges on sorted keys) are costed by the number
+     * of elements they return and the most selective one is used. The elements of a most selective exact match are
+     * intersected with those of the other exact matches. If no index applies, a {@link Compare} on a column key is
+     * answered by a scan of the column. Otherwise, all elements are candidates.
+     */
+    private <T extends TinkerElement> Collection<? extends Element> getCandidates(final TinkerIndex<T> index, final TinkerColumns<T> columns,
+                                                                                  final Map<String, ? extends Element> elements) {
+        for (final HasContainer hasContainer : this.hasContainers) {
+            if (hasContainer.key.equals(Property.Key.ID)) {
+                if (hasContainer.predicate.equals(Contains.IN) && hasContainer.value instanceof Collection)
+                    return stream((Collection<String>) hasContainer.value).distinct().map(elements::get).filter(e -> null != e).collect(Collectors.toList());
+                else if (hasContainer.predicate.equals(Compare.EQUAL))
+                    return Optional.ofNullable(elements.get(hasContainer.value)).map(Collections::singletonList).orElse(Collections.emptyList());
+            }
+        }
+
+        final Set<String> indexedKeys = index.getIndexedKeys();
+        if (indexedKeys.isEmpty())
+            return this.getColumnCandidates(columns, elements);
+
+        HasContainer best = null;
+        long bestCount = elements.size();
+        final Set<String> rangeKeys = new HashSet<>();
+        for (final HasContainer hasContainer : this.hasContainers) {
+            if (!indexedKeys.contains(hasContainer.key))
+                continue;
+            final long count;
+            if (hasContainer.predicate.equals(Compare.EQUAL))
+                count = index.count(hasContainer.key, hasContainer.value);
+            else if (hasContainer.predicate instanceof Contains && hasContainer.value instanceof Collection)
+                count = index.count(hasContainer.key, (Contains) hasContainer.predicate, (Collection) hasContainer.value);
+            else if (TinkerRange.isRangePredicate(hasContainer) && index.isSorted(hasContainer.key) && rangeKeys.add(hasContainer.key))
+                count = index.count(TinkerRange.of(hasContainer.key, this.hasContainers), bestCount);
+            else
+                continue;
+            if (count < bestCount) {
+                best = hasContainer;
+                bestCount = count;
+            }
+        }
+
+        if (null == best)
+            return this.getColumnCandidates(columns, elements);
+        else if (best.predicate instanceof Contains)
+            return index.get(best.key, (Contains) best.predicate, (Collection) best.value);
+        else if (!best.predicate.equals(Compare.EQUAL))
+            return index.get(TinkerRange.of(best.key, this.hasContainers));
+        else {
+            final List<Set<T>> postings = new ArrayList<>();
+            for (final HasContainer hasContainer : this.hasContainers) {
+                if (hasContainer != best && hasContainer.predicate.equals(Compare.EQUAL) && indexedKeys.contains(hasContainer.key))
+                    postings.add(index.getPostings(hasContainer.key, hasContainer.value));
+            }
+            final List<T> candidates = new ArrayList<>();
+            for (final T element : index.getPostings(best.key, best.value)) {
+                boolean contained = true;
+                for (int i = 0; i < postings.size() && contained; i++) {
+                    contained = postings.get(i).contains(element);
+                }
+                if (contained)
+                    candidates.add(element);
+            }
+            return candidates;
+        }
+    }
+
+    private <T extends TinkerElement> Collection<? extends Element> getColumnCandidates(final TinkerColumns<T> columns, final Map<String, ? extends Element> elements) {
+        if (!columns.isEmpty()) {
+            for (final HasContainer hasContainer : this.hasContainers) {
+                if (hasContainer.predicate instanceof Compare && null != hasContainer.value && null != columns.getColumn(hasContainer.key))
+                    return columns.select(hasContainer.key, (Compare) hasContainer.predicate, hasContainer.value);
+            }
+        }
+        return elements.values();
     }
 
-    private HasContainer getIndexKey(final Class<? extends Element> indexedClass) {
-        final Set<String> indexedKeys = this.graph.getIndexedKeys(indexedClass);
-        return this.hasContainers.stream()
-                .filter(c -> indexedKeys.contains(c.key) && c.predicate.equals(Compare.EQUAL))
-                .findFirst()
-                .orElseGet(() -> null);
+    private static <E> Stream<E> stream(final Collection<E> collection) {
+        return collection.size() > PARALLEL_THRESHOLD ? collection.parallelStream() : collection.stream();
     }
 
     private void stringifyIds() {
         this.hasContainers.stream().filter(h -> h.key.equals(Property.Key.ID)).forEach(h -> {
-            final List<String> ids = new ArrayList<>();
-            ((List<Object>) h.value).forEach(v -> ids.add(v.toString()));
-            h.value = ids;
+            if (h.value instanceof Collection) {
+                final List<String> ids = new ArrayList<>();
+                ((Collection<Object>) h.value).forEach(v -> ids.add(v.toString()));
+                h.value = ids;
+            } else if (null != h.value)
+                h.value = h.value.toString();
         });
     }
 }
@@ -1,20 +1,104 @@
 package com.tinkerpop.blueprints.tinkergraph;
 
+import com.tinkerpop.blueprints.Direction;
 import com.tinkerpop.blueprints.Edge;
+import com.tinkerpop.blueprints.Element;
 import com.tinkerpop.blueprints.Graph;
+import com.tinkerpop.blueprints.Property;
+import com.tinkerpop.blueprints.Vertex;
 import com.tinkerpop.blueprints.util.ElementHelper;
 
-import java.util.HashSet;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
-import java.util.stream.Stream;
+import java.util.function.Function;
 
 /**
  * @author Marko A. Rodriguez (http://markorodriguez.com)
  */
 class TinkerHelper {
 
-    protected static String getNextId(final TinkerGraph graph) {
-        return Stream.generate(() -> ((Long) (++graph.currentId)).toString()).filter(id -> !graph.vertices.containsKey(id) && !graph.edges.containsKey(id)).findFirst().get();
+    // the number of generated ids to try before giving up on the id generator
+    private static final int MAX_ID_ATTEMPTS = 16;
+
+    /**
+     * Creates an element and puts it into the elements of the graph unless its id is taken. A taken id is an error
+     * if the id was provided, otherwise the taken id is passed on to the id generator and another id is generated, up
+     * to {@link #MAX_ID_ATTEMPTS} times. Provided ids are passed on to the id generator.
+     */
+    protected static <E extends Element> E putElement(final TinkerGraph graph, final Map<String, ? super E> elements, final Object id,
+                                                      final Function<String, E> elementFactory, final Function<Object, RuntimeException> idExists) {
+        for (int attempt = 1; ; attempt++) {
+            final E element = elementFactory.apply(null == id ? graph.idGenerator.next() : id.toString());
+            if (TinkerHelper.putElement(elements, (TinkerElement) element)) {
+                if (null != id)
+                    graph.idGenerator.observe((String) element.getId());
+                return element;
+            } else if (null != id || attempt == MAX_ID_ATTEMPTS)
+                throw idExists.apply(element.getId());
+            graph.idGenerator.observe((String) element.getId());
+        }
+    }
+
+    /**
+     * Put the element under its id unless the id is taken. A long map is keyed by the id the element has parsed.
+     */
+    protected static boolean putElement(final Map<String, ?> elements, final TinkerElement element) {
+        if (element.isLongId && elements instanceof TinkerLongMap)
+            return null == ((TinkerLongMap) elements).putIfAbsent(element.longId, element);
+        else
+            return null == ((Map) elements).putIfAbsent(element.id, element);
+    }
+
+    /**
+     * Whether the element, rather than another element with its id, is in the elements of the graph.
+     */
+    protected static boolean containsElement(final Map<String, ?> elements, final TinkerElement element) {
+        if (element.isLongId && elements instanceof TinkerLongMap)
+            return element == ((TinkerLongMap) elements).get(element.longId);
+        else
+            return element == elements.get(element.id);
+    }
+
+    /**
+     * Remove the element from the elements of the graph. Returns false if the element is not in them.
+     */
+    protected static boolean removeElement(final Map<String, ?> elements, final TinkerElement element) {
+        if (element.isLongId && elements instanceof TinkerLongMap)
+            return ((TinkerLongMap) elements).remove(element.longId, element);
+        else
+            return elements.remove(element.id, element);
+    }
+
+    /**
+     * Remove the element from the elements of the graph and log its removal in one critical section of the log (see
+     * {@link TinkerLog#withdraw}). Returns false if the element is not in them.
+     */
+    protected static boolean removeElement(final TinkerLog log, final Map<String, ?> elements, final TinkerElement element) {
+        return TinkerLog.withdraw(log, () -> TinkerHelper.removeElement(elements, element), (l, sequence, removed) -> {
+            if (removed)
+                l.removeElement(sequence, element);
+        });
+    }
+
+    protected static Vertex addVertex(final TinkerGraph graph, final Object... keyValues) {
+        ElementHelper.legalKeyValues(keyValues);
+        final Object idString = ElementHelper.getIdValue(keyValues).orElse(null);
+        final String label = ElementHelper.getLabelValue(keyValues).orElse(null);
+
+        final TinkerLog log = TinkerLog.begin(graph);
+        try {
+            final TinkerVertex vertex = TinkerLog.publish(log, () -> TinkerHelper.putElement(graph, graph.vertices, idString,
+                    id -> new TinkerVertex(id, null == label ? Property.Key.DEFAULT_LABEL.toString() : label, graph),
+                    Graph.Exceptions::vertexWithIdAlreadyExists), TinkerLog::addVertex);
+            ElementHelper.attachKeyValues(vertex, keyValues);
+            return vertex;
+        } finally {
+            TinkerLog.end(log);
+        }
     }
 
     protected static Edge addEdge(final TinkerGraph graph, final TinkerVertex outVertex, final TinkerVertex inVertex, final String label, final Object... keyValues) {
@@ -22,40 +106,135 @@ class TinkerHelper {
             throw Edge.Exceptions.edgeLabelCanNotBeNull();
         ElementHelper.legalKeyValues(keyValues);
 
-        Object idString = ElementHelper.getIdValue(keyValues).orElse(null);
+        final Object idString = ElementHelper.getIdValue(keyValues).orElse(null);
 
-        final Edge edge;
-        if (null != idString) {
-            if (graph.edges.containsKey(idString.toString()))
-                throw Graph.Exceptions.edgeWithIdAlreadyExist(idString);
-        } else {
-            idString = TinkerHelper.getNextId(graph);
+        final TinkerLog log = TinkerLog.begin(graph);
+        try {
+            final TinkerEdge edge = TinkerLog.publish(log, () -> {
+                // the edge is only logged while its vertices are in the graph so that its record follows theirs
+                for (final TinkerVertex vertex : Arrays.asList(outVertex, inVertex)) {
+                    if (!TinkerHelper.containsElement(graph.vertices, vertex))
+                        throw Element.Exceptions.elementHasAlreadyBeenRemovedOrDoesNotExist(Vertex.class, vertex.id);
+                }
+                return TinkerHelper.putElement(graph, graph.edges, idString,
+                        id -> new TinkerEdge(id, outVertex, label, inVertex, graph),
+                        Graph.Exceptions::edgeWithIdAlreadyExist);
+            }, TinkerLog::addEdge);
+            graph.edgeIndex.autoUpdate(Property.Key.LABEL, edge.label, null, edge);
+            ElementHelper.attachKeyValues(edge, keyValues);
+            TinkerHelper.addOutEdge(outVertex, label, edge);
+            TinkerHelper.addInEdge(inVertex, label, edge);
+            // a vertex that was concurrently removed may not have seen the edge in its adjacency so it is removed here
+            for (final TinkerVertex vertex : Arrays.asList(outVertex, inVertex)) {
+                if (!TinkerHelper.containsElement(graph.vertices, vertex)) {
+                    if (edge.detach(log)) {
+                        synchronized (edge) {
+                            graph.edgeIndex.removeElement(edge);
+                            edge.properties.clear();
+                        }
+                    }
+                    throw Element.Exceptions.elementHasAlreadyBeenRemovedOrDoesNotExist(Vertex.class, vertex.id);
+                }
+            }
+            return edge;
+        } finally {
+            TinkerLog.end(log);
         }
+    }
 
-        edge = new TinkerEdge(idString.toString(), outVertex, label, inVertex, graph);
-        ElementHelper.attachKeyValues(edge, keyValues);
-        graph.edges.put(edge.getId().toString(), edge);
-        TinkerHelper.addOutEdge(outVertex, label, edge);
-        TinkerHelper.addInEdge(inVertex, label, edge);
-        return edge;
+    /**
+     * Removes the vertices and edges along with the edges of the vertices. Elements that have already been removed
+     * are skipped. The elements are removed from the key indices in bulk once they are out of the graph.
+     */
+    protected static void removeAll(final TinkerGraph graph, final Iterable<? extends Element> elements) {
+        final Set<TinkerVertex> vertices = new LinkedHashSet<>();
+        final Set<TinkerEdge> edges = new LinkedHashSet<>();
+        elements.forEach(element -> {
+            if (element instanceof Vertex)
+                vertices.add((TinkerVertex) element);
+            else
+                edges.add((TinkerEdge) element);
+        });
 
+        final TinkerLog log = TinkerLog.begin(graph);
+        try {
+            final List<TinkerVertex> removedVertices = new ArrayList<>();
+            for (final TinkerVertex vertex : vertices) {
+                if (TinkerHelper.removeElement(log, graph.vertices, vertex)) {
+                    vertex.query().direction(Direction.BOTH).edges().forEach(edge -> edges.add((TinkerEdge) edge));
+                    removedVertices.add(vertex);
+                }
+            }
+            final List<TinkerEdge> removedEdges = new ArrayList<>();
+            for (final TinkerEdge edge : edges) {
+                if (edge.detach(log))
+                    removedEdges.add(edge);
+            }
+
+            graph.edgeIndex.removeAll(removedEdges);
+            removedEdges.forEach(edge -> edge.properties.clear());
+            graph.vertexIndex.removeAll(removedVertices);
+            removedVertices.forEach(vertex -> {
+                graph.vertexColumns.unregister(vertex);
+                vertex.properties.clear();
+            });
+        } finally {
+            TinkerLog.end(log);
+        }
     }
 
-    protected static void addOutEdge(final TinkerVertex vertex, final String label, final Edge edge) {
-        Set<Edge> edges = vertex.outEdges.get(label);
-        if (null == edges) {
-            edges = new HashSet<>();
-            vertex.outEdges.put(label, edges);
+    /**
+     * Copies the elements, annotations and index definitions of the graph into an empty graph. Edges whose vertices
+     * were not copied, as they were concurrently added, are skipped.
+     */
+    protected static void copy(final TinkerGraph graph, final TinkerGraph copy) {
+        final TinkerAnnotations annotations = new TinkerAnnotations();
+        for (final String key : graph.annotations().getKeys()) {
+            annotations.set(key, graph.annotations().get(key).get());
         }
-        edges.add(edge);
+        copy.annotations = annotations.readOnly();
+        for (final String key : graph.vertexIndex.getIndexedKeys()) {
+            copy.vertexIndex.createKeyIndex(key, graph.vertexIndex.isSorted(key));
+        }
+        for (final String key : graph.edgeIndex.getIndexedKeys()) {
+            copy.edgeIndex.createKeyIndex(key, graph.edgeIndex.isSorted(key));
+        }
+        graph.vertexCentricIndex.getIndexedKeys().forEach((label, keys) -> keys.forEach(key -> copy.vertexCentricIndex.createKeyIndex(label, key)));
+
+        final List<Vertex> vertices = new ArrayList<>(graph.vertices.values());
+        final List<Edge> edges = new ArrayList<>(graph.edges.values());
+        final TinkerBulkLoader loader = copy.bulkLoader(vertices.size(), edges.size());
+        for (final Vertex vertex : vertices) {
+            loader.addVertex(copyKeyValues((TinkerElement) vertex, Property.Key.LABEL, vertex.getLabel()));
+        }
+        for (final Edge edge : edges) {
+            final Object outId = edge.getVertex(Direction.OUT).getId();
+            final Object inId = edge.getVertex(Direction.IN).getId();
+            if (copy.vertices.containsKey(outId) && copy.vertices.containsKey(inId))
+                loader.addEdge(outId, edge.getLabel(), inId, copyKeyValues((TinkerElement) edge));
+        }
+        loader.finish();
     }
 
-    protected static void addInEdge(final TinkerVertex vertex, final String label, final Edge edge) {
-        Set<Edge> edges = vertex.inEdges.get(label);
-        if (null == edges) {
-            edges = new HashSet<>();
-            vertex.inEdges.put(label, edges);
+    private static Object[] copyKeyValues(final TinkerElement element, final Object... keyValues) {
+        final List<Object> copy = new ArrayList<>(Arrays.asList(keyValues));
+        copy.add(Property.Key.ID);
+        copy.add(element.id);
+        // the properties and annotated lists of the element are only written under its lock
+        synchronized (element) {
+            element.properties.forEach((key, property) -> {
+                copy.add(key);
+                copy.add(property.get() instanceof TinkerAnnotatedList ? ((TinkerAnnotatedList) property.get()).copy() : property.get());
+            });
         }
-        edges.add(edge);
+        return copy.toArray();
+    }
+
+    protected static void addOutEdge(final TinkerVertex vertex, final String label, final TinkerEdge edge) {
+        vertex.outEdges.add(edge);
+    }
+
+    protected static void addInEdge(final TinkerVertex vertex, final String label, final TinkerEdge edge) {
+        vertex.inEdges.add(edge);
     }
 }
@@ -0,0 +1,85 @@
+package com.tinkerpop.blueprints.tinkergraph;
+
+import java.io.Serializable;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Generates the ids of the vertices and edges that are added to a {@link TinkerGraph} without a user supplied id.
+ * The generator is configured with {@link TinkerGraph#CONFIG_ID_GENERATOR}. Should a generated id already be taken,
+ * the graph observes it and asks for another one, but only a few times before it fails the addition.
+ */
+public interface TinkerIdGenerator extends Serializable {
+
+    /**
+     * Generate an id for a new element. It may be called by many threads at once.
+     */
+    public String next();
+
+    /**
+     * Notifies the generator of a user supplied id so that it can avoid generating it.
+     */
+    public default void observe(final String id) {
+    }
+
+    /**
+     * Forget all generated and observed ids as the graph has been cleared.
+     */
+    public default void reset() {
+    }
+
+    /**
+     * Generates the sequence of longs 0, 1, 2, ... without locking. User supplied numeric ids advance the sequence
+     * past them so that the sequence never collides with them. A contiguous range of ids can be reserved, for
+     * instance by a bulk loader that assigns its own ids, and will never be generated.
+     */
+    public static class Sequential implements TinkerIdGenerator {
+
+        private final AtomicLong current = new AtomicLong(-1l);
+
+        public String next() {
+            return Long.toString(this.current.incrementAndGet());
+        }
+
+        /**
+         * Reserve a range of ids that will never be generated. Returns the first id of the range.
+         */
+        public long reserve(final long count) {
+            if (count < 1)
+                throw new IllegalArgumentException("The number of ids to reserve must be positive: " + count);
+            return this.current.getAndAdd(count) + 1;
+        }
+
+        public void observe(final String id) {
+            if (isLong(id)) {
+                final long value = Long.parseLong(id);
+                if (value > this.current.get())
+                    this.current.accumulateAndGet(value, Math::max);
+            }
+        }
+
+        public void reset() {
+            this.current.set(-1l);
+        }
+
+        private static boolean isLong(final String id) {
+            if (id.isEmpty() || id.length() > 18)
+                return false;
+            for (int i = 0; i < id.length(); i++) {
+                if (id.charAt(i) < '0' || id.charAt(i) > '9')
+                    return false;
+            }
+            return true;
+        }
+    }
+
+    /**
+     * Generates random {@link UUID}s. They never collide with each other so concurrent writers never have to retry.
+     */
+    public static class RandomUUID implements TinkerIdGenerator {
+
+        public String next() {
+            return UUID.randomUUID().toString();
+        }
+    }
+}
@@ -1,5 +1,7 @@
 package com.tinkerpop.blueprints.tinkergraph;
 
+import com.tinkerpop.blueprints.Contains;
+import com.tinkerpop.blueprints.Edge;
 import com.tinkerpop.blueprints.Element;
 import com.tinkerpop.blueprints.Graph;
 import com.tinkerpop.blueprints.Property;
@@ -7,45 +9,100 @@ import com.tinkerpop.blueprints.Vertex;
 
 import java.io.Serializable;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.NavigableMap;
+import java.util.NoSuchElementException;
 import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.stream.Collectors;
 
 /**
+ * A key index is either a hash index, which answers exact matches, or a sorted index, which additionally answers
+ * ranges of values (see {@link TinkerRange}). A sorted index keeps the {@link Comparable} values of its key in a
+ * {@link NavigableMap}. Any other values of a sorted key are kept in the hash index.
+ * <p/>
+ * The index keeps the number of elements indexed per key so that queries can estimate the selectivity of a key.
+ * <p/>
+ * If the graph has concurrent writers, the index is kept in concurrent maps and sets. The set of elements of a value
+ * is only ever modified within an atomic compute on its map so that it is never dropped while being added to.
+ *
  * @author Marko A. Rodriguez (http://markorodriguez.com)
  */
 class TinkerIndex<T extends Element> implements Serializable {
 
-    protected Map<String, Map<Object, Set<T>>> index = new HashMap<>();
+    protected Map<String, Map<Object, Set<T>>> index;
+    protected Map<String, NavigableMap<Object, Set<T>>> sortedIndex;
     protected final Class<T> indexClass;
-    private final Set<String> indexedKeys = new HashSet<>();
+    private final Set<String> indexedKeys;
+    private final Map<String, Long> elementCounts;
     private final TinkerGraph graph;
 
     public TinkerIndex(final TinkerGraph graph, final Class<T> indexClass) {
         this.graph = graph;
         this.indexClass = indexClass;
+        this.index = graph.concurrent ? new ConcurrentHashMap<>() : new HashMap<>();
+        this.sortedIndex = graph.concurrent ? new ConcurrentHashMap<>() : new HashMap<>();
+        this.indexedKeys = graph.concurrent ? ConcurrentHashMap.newKeySet() : new HashSet<>();
+        this.elementCounts = graph.concurrent ? new ConcurrentHashMap<>() : new HashMap<>();
     }
 
     protected void put(final String key, final Object value, final T element) {
-        Map<Object, Set<T>> keyMap = this.index.get(key);
-        if (keyMap == null) {
-            keyMap = new HashMap<>();
-            this.index.put(key, keyMap);
-        }
-        Set<T> objects = keyMap.get(value);
-        if (null == objects) {
-            objects = new HashSet<>();
-            keyMap.put(value, objects);
-        }
-        objects.add(element);
+        Map<Object, Set<T>> keyMap = this.getKeyMap(key, value);
+        if (keyMap == null)
+            keyMap = this.index.computeIfAbsent(key, k -> this.graph.concurrent ? new ConcurrentHashMap<>() : new HashMap<>());
+        // the function may be applied more than once by a concurrent map
+        final boolean[] added = {false};
+        keyMap.compute(value, (v, objects) -> {
+            final Set<T> set = null == objects ? (this.graph.concurrent ? ConcurrentHashMap.newKeySet() : new HashSet<>()) : objects;
+            added[0] = set.add(element) || added[0];
+            return set;
+        });
+        if (added[0])
+            this.elementCounts.merge(key, 1l, Long::sum);
+    }
 
+    /**
+     * Add many elements to the index at once. The elements are grouped by their values for each indexed key in
+     * parallel and the elements of a value are then added by a single update.
+     */
+    public void putAll(final Collection<T> elements) {
+        final Map<String, Map<Object, List<T>>> groups = this.indexedKeys.parallelStream()
+                .collect(Collectors.toMap(key -> key, key -> elements.parallelStream()
+                        .filter(element -> null != this.getIndexedValue(key, element))
+                        .collect(Collectors.groupingBy(element -> this.getIndexedValue(key, element)))));
+        groups.forEach((key, values) -> values.forEach((value, group) -> {
+            Map<Object, Set<T>> keyMap = this.getKeyMap(key, value);
+            if (keyMap == null)
+                keyMap = this.index.computeIfAbsent(key, k -> this.graph.concurrent ? new ConcurrentHashMap<>() : new HashMap<>());
+            // the function may be applied more than once by a concurrent map
+            final boolean[] added = new boolean[group.size()];
+            keyMap.compute(value, (v, objects) -> {
+                final Set<T> set = null == objects ? (this.graph.concurrent ? ConcurrentHashMap.newKeySet() : new HashSet<>()) : objects;
+                for (int i = 0; i < added.length; i++) {
+                    added[i] = set.add(group.get(i)) || added[i];
+                }
+                return set;
+            });
+            long count = 0;
+            for (final boolean a : added) {
+                if (a)
+                    count++;
+            }
+            if (count > 0)
+                this.elementCounts.merge(key, count, Long::sum);
+        }));
     }
 
     public List<T> get(final String key, final Object value) {
-        final Map<Object, Set<T>> keyMap = this.index.get(key);
+        final Map<Object, Set<T>> keyMap = this.getKeyMap(key, value);
         if (null == keyMap) {
             return Collections.emptyList();
         } else {
@@ -57,8 +114,99 @@ class TinkerIndex<T extends Element> implements Serializable {
         }
     }
 
+    /**
+     * Get the elements whose value for the key of the range is within the range. The key must have a sorted index.
+     */
+    public List<T> get(final TinkerRange range) {
+        final NavigableMap<Object, Set<T>> keyMap = this.sortedIndex.get(range.key);
+        if (null == keyMap)
+            return Collections.emptyList();
+        this.checkComparable(range, keyMap);
+        final List<T> elements = new ArrayList<>();
+        for (final Map.Entry<Object, Set<T>> entry : range.subMap(keyMap).entrySet()) {
+            if (range.isComparable(entry.getKey()))
+                elements.addAll(entry.getValue());
+        }
+        return elements;
+    }
+
+    /**
+     * Fail like a scan of the elements would if the range compares values of the key that can not be compared with its
+     * bounds, which includes the values of the key that are not {@link Comparable} and are kept in the hash index.
+     */
+    private void checkComparable(final TinkerRange range, final NavigableMap<Object, Set<T>> keyMap) {
+        final Map<Object, Set<T>> others = this.index.get(range.key);
+        if (range.ordered && null != others && !others.isEmpty())
+            throw new ClassCastException(String.format("The values of %s can not be compared with %s", range.key, others.keySet().iterator().next()));
+        try {
+            range.checkComparable(keyMap.firstKey(), keyMap.lastKey());
+        } catch (final NoSuchElementException e) {
+            // the key has no values
+        }
+    }
+
+    /**
+     * Get a read-only view of the elements with the value for the key.
+     */
+    public Set<T> getPostings(final String key, final Object value) {
+        final Map<Object, Set<T>> keyMap = this.getKeyMap(key, value);
+        final Set<T> set = null == keyMap ? null : keyMap.get(value);
+        return null == set ? Collections.emptySet() : Collections.unmodifiableSet(set);
+    }
+
+    /**
+     * Count the elements whose value for the key of the range is within the range. Counting stops as soon as more
+     * than the provided maximum are found.
+     */
+    public long count(final TinkerRange range, final long max) {
+        final NavigableMap<Object, Set<T>> keyMap = this.sortedIndex.get(range.key);
+        if (null == keyMap)
+            return 0;
+        this.checkComparable(range, keyMap);
+        long count = 0;
+        for (final Map.Entry<Object, Set<T>> entry : range.subMap(keyMap).entrySet()) {
+            if (range.isComparable(entry.getKey())) {
+                count = count + entry.getValue().size();
+                if (count > max)
+                    break;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Get the elements whose value for the key is (or is not) one of the provided values. Elements without a value
+     * for the key are never returned.
+     */
+    public List<T> get(final String key, final Contains contains, final Collection<?> values) {
+        final List<T> elements = new ArrayList<>();
+        if (contains.equals(Contains.IN)) {
+            for (final Object value : new HashSet<>(values)) {
+                elements.addAll(this.getPostings(key, value));
+            }
+        } else {
+            for (final Map<Object, Set<T>> keyMap : Arrays.asList(this.index.get(key), this.sortedIndex.get(key))) {
+                if (null != keyMap) {
+                    for (final Map.Entry<Object, Set<T>> entry : keyMap.entrySet()) {
+                        if (!values.contains(entry.getKey()))
+                            elements.addAll(entry.getValue());
+                    }
+                }
+            }
+        }
+        return elements;
+    }
+
+    public long count(final String key, final Contains contains, final Collection<?> values) {
+        long count = 0;
+        for (final Object value : new HashSet<>(values)) {
+            count = count + this.count(key, value);
+        }
+        return contains.equals(Contains.IN) ? count : this.count(key) - count;
+    }
+
     public long count(final String key, final Object value) {
-        final Map<Object, Set<T>> keyMap = this.index.get(key);
+        final Map<Object, Set<T>> keyMap = this.getKeyMap(key, value);
         if (null == keyMap) {
             return 0;
         } else {
@@ -71,25 +219,60 @@ class TinkerIndex<T extends Element> implements Serializable {
     }
 
     public void remove(final String key, final Object value, final T element) {
-        final Map<Object, Set<T>> keyMap = this.index.get(key);
+        final Map<Object, Set<T>> keyMap = this.getKeyMap(key, value);
         if (null != keyMap) {
-            Set<T> objects = keyMap.get(value);
-            if (null != objects) {
-                objects.remove(element);
-                if (objects.size() == 0) {
-                    keyMap.remove(value);
-                }
-            }
+            final boolean[] removed = {false};
+            keyMap.computeIfPresent(value, (v, objects) -> {
+                removed[0] = objects.remove(element) || removed[0];
+                return objects.isEmpty() ? null : objects;
+            });
+            if (removed[0])
+                this.elementCounts.merge(key, -1l, Long::sum);
         }
     }
 
+    /**
+     * Remove the element from the index by its current values for the indexed keys, so the element must still have
+     * its properties when it is removed.
+     */
     public void removeElement(final T element) {
         if (this.indexClass.isAssignableFrom(element.getClass())) {
-            for (Map<Object, Set<T>> map : index.values()) {
-                for (Set<T> set : map.values()) {
-                    set.remove(element);
-                }
+            for (final String key : this.indexedKeys) {
+                final Object value = this.getIndexedValue(key, element);
+                if (null != value)
+                    this.remove(key, value, element);
+            }
+        }
+    }
+
+    /**
+     * Remove many elements from the index at once. The elements are grouped by their values for each indexed key so
+     * that the elements of a value are removed by a single update.
+     */
+    public void removeAll(final Collection<T> elements) {
+        for (final String key : this.indexedKeys) {
+            final Map<Object, List<T>> values = new HashMap<>();
+            for (final T element : elements) {
+                final Object value = this.indexClass.isAssignableFrom(element.getClass()) ? this.getIndexedValue(key, element) : null;
+                if (null != value)
+                    values.computeIfAbsent(value, v -> new ArrayList<>()).add(element);
             }
+            values.forEach((value, group) -> {
+                final Map<Object, Set<T>> keyMap = this.getKeyMap(key, value);
+                if (null != keyMap) {
+                    // the function may be applied more than once by a concurrent map but removes each element once
+                    final long[] removed = {0l};
+                    keyMap.computeIfPresent(value, (v, objects) -> {
+                        for (final T element : group) {
+                            if (objects.remove(element))
+                                removed[0]++;
+                        }
+                        return objects.isEmpty() ? null : objects;
+                    });
+                    if (removed[0] > 0)
+                        this.elementCounts.merge(key, -removed[0], Long::sum);
+                }
+            });
         }
     }
 
@@ -98,6 +281,9 @@ class TinkerIndex<T extends Element> implements Serializable {
             if (oldValue != null)
                 this.remove(key, oldValue, element);
             this.put(key, newValue, element);
+            // a concurrent removal of the element may have removed it from the index before the value was put
+            if (this.graph.concurrent && this.isRemoved(element))
+                this.remove(key, newValue, element);
         }
     }
 
@@ -106,32 +292,83 @@ class TinkerIndex<T extends Element> implements Serializable {
             this.remove(key, oldValue, element);
     }
 
-    public void createKeyIndex(final String key) {
+    public void createKeyIndex(final String key, final boolean sorted) {
         if (null == key)
             throw Graph.Exceptions.argumentCanNotBeNull("key");
         if (key.isEmpty())
             throw new IllegalArgumentException("The key for the index cannot be an empty string");
 
-        if (this.indexedKeys.contains(key))
-            return;
+        if (this.indexedKeys.contains(key)) {
+            if (this.isSorted(key) == sorted)
+                return;
+            this.dropKeyIndex(key);
+        }
         this.indexedKeys.add(key);
+        if (sorted)
+            this.sortedIndex.put(key, this.graph.concurrent ? new ConcurrentSkipListMap<>(TinkerRange.ORDER) : new TreeMap<>(TinkerRange.ORDER));
 
         (Vertex.class.isAssignableFrom(this.indexClass) ?
                 this.graph.vertices.values().<T>parallelStream() :
                 this.graph.edges.values().<T>parallelStream())
                 .map(e -> new Object[]{((T) e).getProperty(key), e})
                 .filter(a -> ((Property) a[0]).isPresent())
-                .forEach(a -> this.put(key, ((Property) a[0]).get(), (T) a[1]));
+                .forEachOrdered(a -> this.put(key, ((Property) a[0]).get(), (T) a[1]));
     }
 
     public void dropKeyIndex(final String key) {
         if (this.index.containsKey(key))
             this.index.remove(key).clear();
+        if (this.sortedIndex.containsKey(key))
+            this.sortedIndex.remove(key).clear();
 
         this.indexedKeys.remove(key);
+        this.elementCounts.remove(key);
     }
 
     public Set<String> getIndexedKeys() {
         return this.indexedKeys;
     }
+
+    /**
+     * The number of elements that have a value for the key.
+     */
+    public long count(final String key) {
+        return this.elementCounts.getOrDefault(key, 0l);
+    }
+
+    public TinkerIndexStatistics getStatistics(final String key) {
+        long distinctValues = 0;
+        long maxValueCount = 0;
+        for (final Map<Object, Set<T>> keyMap : Arrays.asList(this.index.get(key), this.sortedIndex.get(key))) {
+            if (null != keyMap) {
+                distinctValues = distinctValues + keyMap.size();
+                for (final Set<T> set : keyMap.values()) {
+                    maxValueCount = Math.max(maxValueCount, set.size());
+                }
+            }
+        }
+        return new TinkerIndexStatistics(key, this.count(key), distinctValues, maxValueCount);
+    }
+
+    public boolean isSorted(final String key) {
+        return this.sortedIndex.containsKey(key);
+    }
+
+    private Object getIndexedValue(final String key, final T element) {
+        // only edges have their label indexed
+        if (Property.Key.LABEL.equals(key) && element instanceof Edge)
+            return element.getLabel();
+        final Property property = ((TinkerElement) element).properties.get(key);
+        return null == property ? null : property.get();
+    }
+
+    private boolean isRemoved(final T element) {
+        return (element instanceof Vertex ? this.graph.vertices : this.graph.edges).get(element.getId()) != element;
+    }
+
+    private Map<Object, Set<T>> getKeyMap(final String key, final Object value) {
+        return value instanceof Comparable && this.sortedIndex.containsKey(key) ?
+                this.sortedIndex.get(key) :
+                this.index.get(key);
+    }
 }
@@ -0,0 +1,59 @@
+package com.tinkerpop.blueprints.tinkergraph;
+
+import java.io.Serializable;
+
+/**
+ * The cardinality statistics of a key index of a {@link TinkerGraph}. They are a snapshot taken at the time they are
+ * requested via {@link TinkerGraph#getIndexStatistics(String, Class)}.
+ */
+public class TinkerIndexStatistics implements Serializable {
+
+    private final String key;
+    private final long elementCount;
+    private final long distinctValues;
+    private final long maxValueCount;
+
+    protected TinkerIndexStatistics(final String key, final long elementCount, final long distinctValues, final long maxValueCount) {
+        this.key = key;
+        this.elementCount = elementCount;
+        this.distinctValues = distinctValues;
+        this.maxValueCount = maxValueCount;
+    }
+
+    public String getKey() {
+        return this.key;
+    }
+
+    /**
+     * The number of elements that have a value for the key.
+     */
+    public long getElementCount() {
+        return this.elementCount;
+    }
+
+    /**
+     * The number of distinct values of the key.
+     */
+    public long getDistinctValues() {
+        return this.distinctValues;
+    }
+
+    /**
+     * The number of elements that have the most common value of the key.
+     */
+    public long getMaxValueCount() {
+        return this.maxValueCount;
+    }
+
+    /**
+     * The expected number of elements that an exact match on the key returns.
+     */
+    public double getAverageValueCount() {
+        return 0 == this.distinctValues ? 0.0d : (double) this.elementCount / (double) this.distinctValues;
+    }
+
+    public String toString() {
+        return "index[" + this.key + "]" +
+                "[elements:" + this.elementCount + " distinct:" + this.distinctValues + " max:" + this.maxValueCount + "]";
+    }
+}
@@ -0,0 +1,820 @@
+package com.tinkerpop.blueprints.tinkergraph;
+
+import com.tinkerpop.blueprints.AnnotatedValue;
+import com.tinkerpop.blueprints.Annotations;
+import com.tinkerpop.blueprints.Direction;
+import com.tinkerpop.blueprints.Edge;
+import com.tinkerpop.blueprints.Element;
+import com.tinkerpop.blueprints.Property;
+import com.tinkerpop.blueprints.Vertex;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+/**
+ * An append-only write-ahead log of the mutations of a {@link TinkerGraph} persisted to a directory (see
+ * {@link TinkerGraph#CONFIG_LOG}). Each record takes the next number of a sequence and is put aside without a lock
+ * for a background thread, which writes the records in the order of their numbers and forces them to disk every
+ * sync interval. With {@link TinkerGraph#CONFIG_LOG_SYNC}, a mutation only returns once its record is on disk and the
+ * records are forced right away, so concurrent writers share a single fsync (group commit). Otherwise, a crash loses
+ * at most the mutations of the last sync interval.
+ * <p/>
+ * An element is added to the graph after its record took its number (see
+ * {@link #publish(TinkerLog, Supplier, Recorder)}), so a writer that sees the element can only log records about it
+ * after that record. Additions run concurrently and only exclude removals, which are published one at a time along
+ * with their records (see {@link #withdraw(TinkerLog, Supplier, Recorder)}), so an edge is only added while its
+ * vertices are in the graph and the id of a removed element is only taken again after its removal is logged.
+ * <p/>
+ * A checkpoint is incremental: the log keeps the ids of the elements that its records are about, and a checkpoint
+ * encodes only those elements into a delta of the snapshot and rotates the log while writers are blocked, then writes
+ * the delta (see {@link TinkerStorage}) and deletes the rotated log while writers go on. The deltas are merged into
+ * the snapshot from disk once they grow as large as it. Only after a mutation that the log can not express, or after
+ * the log was replayed when the graph was opened, is the whole graph written to a snapshot, straight from the graph
+ * while writers are blocked. Checkpoints run periodically in the background and on {@link TinkerGraph#close()}.
+ * <p/>
+ * When the graph is opened, the logs are replayed onto the latest snapshot. The snapshot and the logs carry the
+ * generation of the checkpoint they belong to, so a log that is already in the snapshot, as after a crash between
+ * writing a snapshot and deleting the rotated log, is discarded rather than replayed. A partially written record at
+ * the end of the log is discarded. Any other record that can not be applied fails the replay. Records that set,
+ * remove or refer to the properties of an element that is no longer in the graph are skipped as they were no-ops
+ * when they were logged. The mutations of an {@link com.tinkerpop.blueprints.AnnotatedList} that is the value of a
+ * property have their own records, which refer to its annotated values by position.
+ */
+class TinkerLog {
+
+    public static final String LOG_FILE = "tinkergraph.log";
+
+    private static final byte ADD_VERTEX = 0, ADD_EDGE = 1, SET_PROPERTY = 2, REMOVE_PROPERTY = 3, REMOVE_VERTEX = 4,
+            REMOVE_EDGE = 5, CREATE_INDEX = 6, DROP_INDEX = 7, CREATE_VERTEX_CENTRIC_INDEX = 8, DROP_VERTEX_CENTRIC_INDEX = 9,
+            ADD_ANNOTATED_VALUE = 10, REMOVE_ANNOTATED_VALUE = 11, SET_ANNOTATION = 12;
+    private static final byte VERTEX = 0, EDGE = 1;
+    // what stands in for the record of a publication that failed or had nothing to log
+    private static final byte[] NO_RECORD = new byte[0];
+
+    private final TinkerGraph graph;
+    private final Path directory;
+    private FileChannel channel;
+    private final boolean sync;
+    private final long syncInterval;
+    // mutations hold the read lock so that checkpoints, which hold the write lock, see a quiet graph
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Thread flusher;
+    private final ScheduledExecutorService checkpointer;
+    private final ReentrantLock checkpoints = new ReentrantLock();
+    // the ids of the elements that the records since the last checkpoint are about
+    private final Set<String> dirtyVertices = ConcurrentHashMap.newKeySet();
+    private final Set<String> dirtyEdges = ConcurrentHashMap.newKeySet();
+    // whether the next checkpoint writes the whole graph as the records since the last one do not hold every mutation
+    private boolean full;
+    // the graph annotations are not logged, so a checkpoint is only skipped if they are as the last one wrote them
+    private Map<String, Object> annotations;
+
+    // additions hold the read lock and removals the write lock, so that a removal is published with its record alone
+    private final ReentrantReadWriteLock publications = new ReentrantReadWriteLock();
+    private final AtomicLong sequence = new AtomicLong();
+    // the records that have not been written yet by their sequence number
+    private final Map<Long, byte[]> pending = new ConcurrentHashMap<>();
+    // the generation of the snapshot the log applies to, which is written ahead of the first record
+    private long generation;
+    private boolean empty;
+    // the number of the first record that has not been written yet
+    private long flushed = 0;
+    private int waiters = 0;
+    private volatile boolean open = true;
+    private volatile IOException failure = null;
+
+    public TinkerLog(final TinkerGraph graph, final Path directory, final boolean sync, final long syncInterval, final long checkpointInterval) {
+        if (syncInterval < 1)
+            throw new IllegalArgumentException("The sync interval of the log must be positive: " + syncInterval);
+        this.graph = graph;
+        this.directory = directory;
+        this.sync = sync;
+        this.syncInterval = syncInterval;
+        try {
+            Files.createDirectories(directory);
+            this.channel = FileChannel.open(directory.resolve(LOG_FILE), StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+            this.generation = TinkerStorage.generation(directory);
+            this.empty = 0 == this.channel.size();
+            // the records of the log have been replayed without keeping the elements they are about
+            this.full = !this.empty;
+            this.annotations = annotations(graph);
+        } catch (final IOException e) {
+            throw new UncheckedIOException(e);
+        }
+
+        this.flusher = new Thread(this::flush, "tinkergraph-log-" + directory.getFileName());
+        this.flusher.setDaemon(true);
+        this.flusher.start();
+        this.checkpointer = Executors.newSingleThreadScheduledExecutor(r -> {
+            final Thread thread = new Thread(r, "tinkergraph-checkpoint-" + directory.getFileName());
+            thread.setDaemon(true);
+            return thread;
+        });
+        if (checkpointInterval > 0) {
+            this.checkpointer.scheduleWithFixedDelay(() -> {
+                try {
+                    this.checkpoint();
+                } catch (final RuntimeException e) {
+                    // the log is intact so the checkpoint is simply retried at the next interval
+                }
+            }, checkpointInterval, checkpointInterval, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Begins a mutation of the graph and returns the log of the graph (if it has one), which must then be passed to
+     * {@link #end(TinkerLog)} once the mutation is done. A snapshot of a graph can not be mutated.
+     */
+    public static TinkerLog begin(final TinkerGraph graph) {
+        graph.checkNotFrozen();
+        final TinkerLog log = graph.log;
+        if (null != log)
+            log.lock.readLock().lock();
+        return log;
+    }
+
+    /**
+     * Ends a mutation of the graph. If the log syncs, this waits for the logged mutation to be on disk.
+     */
+    public static void end(final TinkerLog log) {
+        if (null != log) {
+            log.lock.readLock().unlock();
+            if (log.sync && 0 == log.lock.getReadHoldCount())
+                log.await();
+        }
+    }
+
+    /**
+     * Adds an element to the graph and appends the record of that to the log with a number taken before the element
+     * is added, so any record about the element that another writer appends once it sees it comes after this record.
+     * Additions run concurrently with each other. Without a log, the publication is simply run.
+     */
+    public static <T> T publish(final TinkerLog log, final Supplier<T> publication, final Recorder<T> record) {
+        return publish(log, publication, record, false);
+    }
+
+    /**
+     * Removes an element from the graph and appends the record of that to the log while no other element is added or
+     * removed. Without a log, the withdrawal is simply run.
+     */
+    public static <T> T withdraw(final TinkerLog log, final Supplier<T> withdrawal, final Recorder<T> record) {
+        return publish(log, withdrawal, record, true);
+    }
+
+    private static <T> T publish(final TinkerLog log, final Supplier<T> publication, final Recorder<T> record, final boolean exclusive) {
+        if (null == log)
+            return publication.get();
+        final Lock lock = exclusive ? log.publications.writeLock() : log.publications.readLock();
+        lock.lock();
+        try {
+            // an element is never published without its record
+            final long sequence = log.reserve();
+            try {
+                final T t = publication.get();
+                record.record(log, sequence, t);
+                return t;
+            } finally {
+                // the records that follow are not held back by a publication that failed or had nothing to log
+                log.pending.putIfAbsent(sequence, NO_RECORD);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public void addVertex(final long sequence, final TinkerVertex vertex) {
+        this.dirtyVertices.add(vertex.id);
+        this.append(sequence, out -> {
+            out.writeByte(ADD_VERTEX);
+            TinkerStorage.writeString(out, vertex.id);
+            TinkerStorage.writeString(out, vertex.label);
+        });
+    }
+
+    public void addEdge(final long sequence, final TinkerEdge edge) {
+        this.dirtyEdges.add(edge.id);
+        this.append(sequence, out -> {
+            out.writeByte(ADD_EDGE);
+            TinkerStorage.writeString(out, edge.id);
+            TinkerStorage.writeString(out, edge.label);
+            TinkerStorage.writeString(out, ((TinkerElement) edge.getVertex(Direction.OUT)).id);
+            TinkerStorage.writeString(out, ((TinkerElement) edge.getVertex(Direction.IN)).id);
+        });
+    }
+
+    public void setProperty(final TinkerElement element, final String key, final Object value) {
+        this.dirty(element);
+        this.append(out -> {
+            out.writeByte(SET_PROPERTY);
+            out.writeByte(element instanceof Vertex ? VERTEX : EDGE);
+            TinkerStorage.writeString(out, element.id);
+            TinkerStorage.writeString(out, key);
+            TinkerStorage.writeValue(out, value);
+        });
+    }
+
+    public void removeProperty(final TinkerElement element, final String key) {
+        this.dirty(element);
+        this.append(out -> {
+            out.writeByte(REMOVE_PROPERTY);
+            out.writeByte(element instanceof Vertex ? VERTEX : EDGE);
+            TinkerStorage.writeString(out, element.id);
+            TinkerStorage.writeString(out, key);
+        });
+    }
+
+    public void addAnnotatedValue(final TinkerElement element, final String key, final Object value, final Annotations annotations) {
+        this.dirty(element);
+        this.append(out -> {
+            out.writeByte(ADD_ANNOTATED_VALUE);
+            out.writeByte(element instanceof Vertex ? VERTEX : EDGE);
+            TinkerStorage.writeString(out, element.id);
+            TinkerStorage.writeString(out, key);
+            TinkerStorage.writeValue(out, value);
+            TinkerStorage.writeAnnotations(out, annotations);
+        });
+    }
+
+    public void removeAnnotatedValue(final TinkerElement element, final String key, final int position) {
+        this.dirty(element);
+        this.append(out -> {
+            out.writeByte(REMOVE_ANNOTATED_VALUE);
+            out.writeByte(element instanceof Vertex ? VERTEX : EDGE);
+            TinkerStorage.writeString(out, element.id);
+            TinkerStorage.writeString(out, key);
+            out.writeInt(position);
+        });
+    }
+
+    public void setAnnotation(final TinkerElement element, final String key, final int position, final String annotationKey, final Object value) {
+        this.dirty(element);
+        this.append(out -> {
+            out.writeByte(SET_ANNOTATION);
+            out.writeByte(element instanceof Vertex ? VERTEX : EDGE);
+            TinkerStorage.writeString(out, element.id);
+            TinkerStorage.writeString(out, key);
+            out.writeInt(position);
+            TinkerStorage.writeString(out, annotationKey);
+            TinkerStorage.writeValue(out, value);
+        });
+    }
+
+    public void removeElement(final long sequence, final TinkerElement element) {
+        this.dirty(element);
+        this.append(sequence, out -> {
+            out.writeByte(element instanceof Vertex ? REMOVE_VERTEX : REMOVE_EDGE);
+            TinkerStorage.writeString(out, element.id);
+        });
+    }
+
+    public void createIndex(final String key, final Class<? extends Element> elementClass, final TinkerGraph.IndexType indexType) {
+        this.append(out -> {
+            out.writeByte(CREATE_INDEX);
+            out.writeByte(Vertex.class.isAssignableFrom(elementClass) ? VERTEX : EDGE);
+            TinkerStorage.writeString(out, key);
+            out.writeBoolean(indexType == TinkerGraph.IndexType.SORTED);
+        });
+    }
+
+    public void dropIndex(final String key, final Class<? extends Element> elementClass) {
+        this.append(out -> {
+            out.writeByte(DROP_INDEX);
+            out.writeByte(Vertex.class.isAssignableFrom(elementClass) ? VERTEX : EDGE);
+            TinkerStorage.writeString(out, key);
+        });
+    }
+
+    public void createVertexCentricIndex(final String label, final String key) {
+        this.append(out -> {
+            out.writeByte(CREATE_VERTEX_CENTRIC_INDEX);
+            TinkerStorage.writeString(out, label);
+            TinkerStorage.writeString(out, key);
+        });
+    }
+
+    public void dropVertexCentricIndex(final String label, final String key) {
+        this.append(out -> {
+            out.writeByte(DROP_VERTEX_CENTRIC_INDEX);
+            TinkerStorage.writeString(out, label);
+            TinkerStorage.writeString(out, key);
+        });
+    }
+
+    /**
+     * Writes a delta of the graph since the last checkpoint and starts a new log (see {@link #checkpoint(Runnable)}).
+     */
+    public void checkpoint() {
+        this.checkpoint(() -> {
+        }, false);
+    }
+
+    /**
+     * Runs a mutation that the log can not express and then writes the whole graph to a snapshot while writers are
+     * blocked.
+     */
+    public void checkpoint(final Runnable mutation) {
+        this.checkpoint(mutation, true);
+    }
+
+    private void checkpoint(final Runnable mutation, final boolean unlogged) {
+        // a rotated log is only deleted once a snapshot of its generation is on disk, so checkpoints do not overlap
+        this.checkpoints.lock();
+        try {
+            byte[] delta = null;
+            final long generation;
+            this.lock.writeLock().lock();
+            try {
+                this.await();
+                mutation.run();
+                this.full = this.full || unlogged;
+                final Map<String, Object> annotations = annotations(this.graph);
+                if (!this.full && this.empty && annotations.equals(this.annotations))
+                    return;
+                if (this.full) {
+                    generation = this.rotate();
+                    TinkerStorage.save(this.graph, this.directory, generation);
+                    this.full = false;
+                } else {
+                    delta = TinkerStorage.delta(this.graph, this.dirtyVertices, this.dirtyEdges);
+                    generation = this.rotate();
+                }
+                this.dirtyVertices.clear();
+                this.dirtyEdges.clear();
+                this.annotations = annotations;
+            } catch (final IOException e) {
+                this.full = true;
+                throw new UncheckedIOException(e);
+            } finally {
+                this.lock.writeLock().unlock();
+            }
+            try {
+                if (null != delta)
+                    TinkerStorage.saveDelta(delta, this.directory, generation);
+            } catch (final RuntimeException e) {
+                // the mutations of the delta are only in the rotated log, which the next delta does not follow
+                this.full = true;
+                throw e;
+            }
+            try {
+                for (final Path file : rotatedLogs(this.directory)) {
+                    Files.delete(file);
+                }
+            } catch (final IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            if (TinkerStorage.needsMerge(this.directory))
+                TinkerStorage.merge(this.directory);
+        } finally {
+            this.checkpoints.unlock();
+        }
+    }
+
+    /**
+     * Begins a mutation that is not logged, such as a bulk load (see {@link TinkerBulkLoader}). Writers and
+     * checkpoints are blocked until the same thread ends the mutation with {@link #endUnlogged()}, so no record can
+     * refer to an element that is not logged and no checkpoint copies the graph while it is mutated.
+     */
+    public void beginUnlogged() {
+        this.checkpoints.lock();
+        this.lock.writeLock().lock();
+    }
+
+    /**
+     * Ends a mutation that is not logged with a checkpoint, so that the snapshot the next records apply to holds the
+     * mutation, and unblocks writers and checkpoints.
+     */
+    public void endUnlogged() {
+        try {
+            this.checkpoint(() -> {
+            }, true);
+        } finally {
+            this.lock.writeLock().unlock();
+            this.checkpoints.unlock();
+        }
+    }
+
+    /**
+     * Stops the background checkpoints, takes a final checkpoint and closes the log.
+     */
+    public void close() {
+        synchronized (this) {
+            if (!this.open)
+                return;
+        }
+        this.checkpointer.shutdown();
+        try {
+            this.checkpointer.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+            this.checkpoint();
+            synchronized (this) {
+                this.open = false;
+                this.notifyAll();
+            }
+            this.flusher.join();
+            this.channel.close();
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (final IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Applies the records of the logs in the directory to the graph. A log is applied if it has the generation of
+     * the snapshot or, when a checkpoint was interrupted, follows a rotated log that was applied. The applied rotated
+     * logs are merged into a new snapshot. The log is truncated after the last complete record, or entirely if it is
+     * already in the snapshot of the graph.
+     */
+    public static void replay(final TinkerGraph graph, final Path directory) {
+        long generation = TinkerStorage.generation(directory);
+        try {
+            final List<Path> rotated = rotatedLogs(directory);
+            boolean merged = false;
+            for (final Path file : rotated) {
+                final long next = replay(graph, file, generation, true);
+                merged = merged || next > generation;
+                generation = next;
+            }
+            final Path file = directory.resolve(LOG_FILE);
+            if (Files.exists(file))
+                generation = replay(graph, file, generation, false);
+            if (merged) {
+                TinkerStorage.save(graph, directory, generation);
+                if (Files.exists(file))
+                    truncate(file, 0);
+            }
+            for (final Path r : rotated) {
+                Files.delete(r);
+            }
+        } catch (final IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    ////////////////
+
+    /**
+     * Applies the records of one log file if it has the expected generation and returns the generation that the next
+     * log file must have. A log of an older generation is already in the snapshot and is skipped.
+     */
+    private static long replay(final TinkerGraph graph, final Path file, final long expected, final boolean rotated) throws IOException {
+        long position = 0;
+        long next = expected;
+        try (final DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file), 1 << 16))) {
+            long generation = -1;
+            try {
+                generation = in.readLong();
+            } catch (final EOFException e) {
+                // the log is empty or its generation was torn before any record was written
+            }
+            if (generation > expected)
+                throw new IllegalStateException(String.format("The log %s of generation %s is ahead of the snapshot of generation %s", file, generation, expected));
+            if (generation == expected) {
+                position = 8;
+                next = expected + 1;
+                final CRC32 crc = new CRC32();
+                while (true) {
+                    final byte[] record;
+                    try {
+                        final int length = in.readInt();
+                        final int checksum = in.readInt();
+                        if (length < 1)
+                            break;
+                        record = new byte[length];
+                        in.readFully(record);
+                        crc.reset();
+                        crc.update(record, 0, length);
+                        if ((int) crc.getValue() != checksum)
+                            break;
+                    } catch (final EOFException e) {
+                        break;
+                    }
+                    apply(graph, new DataInputStream(new ByteArrayInputStream(record)));
+                    position = position + 8 + record.length;
+                }
+            }
+        }
+        if (rotated) {
+            // a log is only rotated once it is on disk so it can not end with a partially written record
+            if (next > expected && Files.size(file) > position)
+                throw new IllegalStateException("The rotated log is corrupt after position " + position + ": " + file);
+        } else
+            truncate(file, position);
+        return next;
+    }
+
+    private static void truncate(final Path file, final long position) throws IOException {
+        try (final FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            if (channel.size() > position)
+                channel.truncate(position);
+        }
+    }
+
+    /**
+     * The log files rotated by checkpoints whose snapshot has not been written yet, ordered by generation.
+     */
+    private static List<Path> rotatedLogs(final Path directory) throws IOException {
+        if (!Files.isDirectory(directory))
+            return Collections.emptyList();
+        final String prefix = LOG_FILE + ".";
+        try (final Stream<Path> files = Files.list(directory)) {
+            return files.filter(f -> f.getFileName().toString().startsWith(prefix))
+                    .sorted(Comparator.comparingLong(f -> Long.parseLong(f.getFileName().toString().substring(prefix.length()))))
+                    .collect(Collectors.toList());
+        }
+    }
+
+    /**
+     * Moves the records of the log to a rotated log named after its generation and starts the log of the next
+     * generation. Returns the next generation.
+     */
+    private synchronized long rotate() throws IOException {
+        if (!this.empty) {
+            final Path file = this.directory.resolve(LOG_FILE);
+            this.channel.close();
+            // the log may have been deleted along with the directory, in which case there is nothing to keep
+            if (Files.exists(file))
+                Files.move(file, this.directory.resolve(LOG_FILE + "." + this.generation), StandardCopyOption.ATOMIC_MOVE);
+            Files.createDirectories(this.directory);
+            this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        }
+        this.empty = true;
+        return ++this.generation;
+    }
+
+    private static void apply(final TinkerGraph graph, final DataInputStream in) throws IOException {
+        final byte type = in.readByte();
+        switch (type) {
+            case ADD_VERTEX: {
+                final String id = TinkerStorage.readString(in);
+                final String label = TinkerStorage.readString(in);
+                TinkerHelper.addVertex(graph, Property.Key.ID, id, Property.Key.LABEL, label);
+                break;
+            }
+            case ADD_EDGE: {
+                final String id = TinkerStorage.readString(in);
+                final String label = TinkerStorage.readString(in);
+                final String outId = TinkerStorage.readString(in);
+                final String inId = TinkerStorage.readString(in);
+                final Vertex outVertex = graph.vertices.get(outId);
+                final Vertex inVertex = graph.vertices.get(inId);
+                if (null == outVertex || null == inVertex)
+                    throw new IllegalStateException(String.format("The log adds the edge %s between vertices that are not in the graph: %s, %s", id, outId, inId));
+                TinkerHelper.addEdge(graph, (TinkerVertex) outVertex, (TinkerVertex) inVertex, label, Property.Key.ID, id);
+                break;
+            }
+            case SET_PROPERTY: {
+                final Element element = getElement(graph, in.readByte(), TinkerStorage.readString(in));
+                final String key = TinkerStorage.readString(in);
+                final Object value = TinkerStorage.readValue(in);
+                if (null != element)
+                    element.setProperty(key, value);
+                break;
+            }
+            case REMOVE_PROPERTY: {
+                final Element element = getElement(graph, in.readByte(), TinkerStorage.readString(in));
+                final String key = TinkerStorage.readString(in);
+                if (null != element && element.getProperty(key).isPresent())
+                    element.getProperty(key).remove();
+                break;
+            }
+            case ADD_ANNOTATED_VALUE: {
+                final Element element = getElement(graph, in.readByte(), TinkerStorage.readString(in));
+                final String key = TinkerStorage.readString(in);
+                final Object value = TinkerStorage.readValue(in);
+                final Object[] keyValues = TinkerStorage.readAnnotations(in);
+                if (null != element)
+                    getAnnotatedList(element, key).addValue(value, keyValues);
+                break;
+            }
+            case REMOVE_ANNOTATED_VALUE: {
+                final Element element = getElement(graph, in.readByte(), TinkerStorage.readString(in));
+                final String key = TinkerStorage.readString(in);
+                final int position = in.readInt();
+                if (null != element)
+                    getAnnotatedValue(element, key, position).remove();
+                break;
+            }
+            case SET_ANNOTATION: {
+                final Element element = getElement(graph, in.readByte(), TinkerStorage.readString(in));
+                final String key = TinkerStorage.readString(in);
+                final int position = in.readInt();
+                final String annotationKey = TinkerStorage.readString(in);
+                final Object value = TinkerStorage.readValue(in);
+                if (null != element)
+                    getAnnotatedValue(element, key, position).getAnnotations().set(annotationKey, value);
+                break;
+            }
+            case REMOVE_VERTEX:
+            case REMOVE_EDGE: {
+                final Element element = getElement(graph, type == REMOVE_VERTEX ? VERTEX : EDGE, TinkerStorage.readString(in));
+                if (null != element)
+                    element.remove();
+                break;
+            }
+            case CREATE_INDEX: {
+                final Class<? extends Element> elementClass = in.readByte() == VERTEX ? Vertex.class : Edge.class;
+                graph.createIndex(TinkerStorage.readString(in), elementClass, in.readBoolean() ? TinkerGraph.IndexType.SORTED : TinkerGraph.IndexType.HASH);
+                break;
+            }
+            case DROP_INDEX: {
+                final Class<? extends Element> elementClass = in.readByte() == VERTEX ? Vertex.class : Edge.class;
+                graph.dropIndex(TinkerStorage.readString(in), elementClass);
+                break;
+            }
+            case CREATE_VERTEX_CENTRIC_INDEX:
+                graph.createVertexCentricIndex(TinkerStorage.readString(in), TinkerStorage.readString(in));
+                break;
+            case DROP_VERTEX_CENTRIC_INDEX:
+                graph.dropVertexCentricIndex(TinkerStorage.readString(in), TinkerStorage.readString(in));
+                break;
+            default:
+                throw new IOException("The record type of the log is not supported: " + type);
+        }
+    }
+
+    private static Element getElement(final TinkerGraph graph, final byte kind, final String id) {
+        return kind == VERTEX ? graph.vertices.get(id) : graph.edges.get(id);
+    }
+
+    private static TinkerAnnotatedList<Object> getAnnotatedList(final Element element, final String key) {
+        final Property<Object> property = element.getProperty(key);
+        if (!property.isPresent() || !(property.get() instanceof TinkerAnnotatedList))
+            throw new IllegalStateException(String.format("The log mutates the annotated list %s of %s which is not in the graph", key, element.getId()));
+        return (TinkerAnnotatedList<Object>) property.get();
+    }
+
+    private static AnnotatedValue<Object> getAnnotatedValue(final Element element, final String key, final int position) {
+        return getAnnotatedList(element, key).getAnnotatedValue(position).orElseThrow(() -> new IllegalStateException(
+                String.format("The log mutates the annotated value %s of the annotated list %s of %s which is not in the graph", position, key, element.getId())));
+    }
+
+    private static Map<String, Object> annotations(final TinkerGraph graph) {
+        final Map<String, Object> annotations = new HashMap<>();
+        for (final String key : graph.annotations().getKeys()) {
+            annotations.put(key, graph.annotations().get(key).get());
+        }
+        return annotations;
+    }
+
+    private void dirty(final TinkerElement element) {
+        if (element instanceof Vertex)
+            this.dirtyVertices.add(element.id);
+        else
+            this.dirtyEdges.add(element.id);
+    }
+
+    private void append(final Record record) {
+        this.append(this.reserve(), record);
+    }
+
+    private void append(final long sequence, final Record record) {
+        byte[] bytes = NO_RECORD;
+        try {
+            final ByteArrayOutputStream payload = new ByteArrayOutputStream(64);
+            record.write(new DataOutputStream(payload));
+            final CRC32 crc = new CRC32();
+            crc.update(payload.toByteArray(), 0, payload.size());
+            final ByteArrayOutputStream framed = new ByteArrayOutputStream(payload.size() + 8);
+            final DataOutputStream out = new DataOutputStream(framed);
+            out.writeInt(payload.size());
+            out.writeInt((int) crc.getValue());
+            payload.writeTo(out);
+            bytes = framed.toByteArray();
+        } catch (final IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            this.pending.put(sequence, bytes);
+        }
+    }
+
+    private long reserve() {
+        this.checkAppendable();
+        return this.sequence.getAndIncrement();
+    }
+
+    private void checkAppendable() {
+        if (null != this.failure)
+            throw new UncheckedIOException(this.failure);
+        if (!this.open)
+            throw new IllegalStateException("The log of the graph has been closed");
+    }
+
+    /**
+     * Waits until everything appended so far is on disk.
+     */
+    private synchronized void await() {
+        final long sequence = this.sequence.get();
+        this.waiters++;
+        try {
+            // wake the flusher so that it does not wait for the sync interval
+            this.notifyAll();
+            while (this.flushed < sequence && null == this.failure) {
+                this.wait();
+            }
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            this.waiters--;
+        }
+        if (null != this.failure)
+            throw new UncheckedIOException(this.failure);
+    }
+
+    private void flush() {
+        try {
+            while (true) {
+                long sequence;
+                synchronized (this) {
+                    while (this.open && 0 == this.waiters) {
+                        this.wait(this.syncInterval);
+                        if (this.pending.containsKey(this.flushed))
+                            break;
+                    }
+                    if (!this.pending.containsKey(this.flushed)) {
+                        if (!this.open)
+                            return;
+                        this.wait(this.syncInterval);
+                        continue;
+                    }
+                    sequence = this.flushed;
+                }
+                // a record is only written once every record with a lower number is, whatever order they came in
+                final ByteArrayOutputStream records = new ByteArrayOutputStream();
+                for (byte[] record = this.pending.remove(sequence); null != record; record = this.pending.remove(sequence)) {
+                    records.write(record);
+                    sequence++;
+                }
+                final ByteArrayOutputStream bytes = new ByteArrayOutputStream(records.size() + 8);
+                final FileChannel channel;
+                synchronized (this) {
+                    if (this.empty && records.size() > 0) {
+                        new DataOutputStream(bytes).writeLong(this.generation);
+                        this.empty = false;
+                    }
+                    // the log is only rotated once everything appended is on disk so the channel is not swapped meanwhile
+                    channel = this.channel;
+                }
+                records.writeTo(bytes);
+                final ByteBuffer buffer = ByteBuffer.wrap(bytes.toByteArray());
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer);
+                }
+                channel.force(false);
+                synchronized (this) {
+                    this.flushed = sequence;
+                    this.notifyAll();
+                }
+            }
+        } catch (final IOException e) {
+            synchronized (this) {
+                this.failure = e;
+                this.notifyAll();
+            }
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Appends the record of a publication to the log with the sequence number that was taken for it.
+     */
+    @FunctionalInterface
+    public interface Recorder<T> {
+        public void record(final TinkerLog log, final long sequence, final T t);
+    }
+
+    @FunctionalInterface
+    private interface Record {
+        public void write(final DataOutputStream out) throws IOException;
+    }
+}
@@ -0,0 +1,306 @@
+package com.tinkerpop.blueprints.tinkergraph;
+
+import java.io.Serializable;
+import java.util.AbstractCollection;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * A {@link Map} used for {@link TinkerGraph} element storage that keeps numeric ids as primitive longs in an
+ * open-addressing (linear probing) table. No entry objects are created and no {@link String} keys are held for
+ * numeric ids. Keys that are not the canonical string form of a long (e.g. "marko" or "007") are kept in a
+ * {@link HashMap} on the side.
+ * <p/>
+ * The keys are the string ids of the elements, so a lookup by a string id parses it. The graph parses the id of an
+ * element once when the element is created (see {@link TinkerElement#longId}) and puts and removes the element by
+ * that long.
+ */
+class TinkerLongMap<V> extends AbstractMap<String, V> implements Serializable {
+
+    private static final int MIN_CAPACITY = 16;
+    private static final float LOAD_FACTOR = 0.6f;
+
+    private long[] keys;
+    private Object[] values;
+    private int mask;
+    private int size = 0;
+    private int threshold;
+    private final Map<String, V> otherKeys = new HashMap<>();
+
+    public TinkerLongMap() {
+        this(MIN_CAPACITY);
+    }
+
+    public TinkerLongMap(final int expectedSize) {
+        this.allocate(tableSizeFor(expectedSize));
+    }
+
+    ////////////////
+
+    public int size() {
+        return this.size + this.otherKeys.size();
+    }
+
+    public boolean containsKey(final Object key) {
+        return isLongKey(key) ? this.indexOf(Long.parseLong((String) key)) != -1 : this.otherKeys.containsKey(key);
+    }
+
+    public V get(final Object key) {
+        return isLongKey(key) ? this.get(Long.parseLong((String) key)) : this.otherKeys.get(key);
+    }
+
+    public V put(final String key, final V value) {
+        if (null == value)
+            throw new IllegalArgumentException("The value of a long map entry can not be null");
+        return isLongKey(key) ? this.put(Long.parseLong(key), value, false) : this.otherKeys.put(key, value);
+    }
+
+    public V putIfAbsent(final String key, final V value) {
+        if (null == value)
+            throw new IllegalArgumentException("The value of a long map entry can not be null");
+        return isLongKey(key) ? this.put(Long.parseLong(key), value, true) : this.otherKeys.putIfAbsent(key, value);
+    }
+
+    public V remove(final Object key) {
+        if (isLongKey(key)) {
+            final int index = this.indexOf(Long.parseLong((String) key));
+            if (-1 == index)
+                return null;
+            final V old = (V) this.values[index];
+            this.delete(index);
+            return old;
+        } else
+            return this.otherKeys.remove(key);
+    }
+
+    public boolean remove(final Object key, final Object value) {
+        return isLongKey(key) ? this.remove(Long.parseLong((String) key), value) : this.otherKeys.remove(key, value);
+    }
+
+    /**
+     * Get the value of a key that is known to be a long, such as the parsed id of an element.
+     */
+    public V get(final long key) {
+        final int index = this.indexOf(key);
+        return -1 == index ? null : (V) this.values[index];
+    }
+
+    /**
+     * Put the value under a key that is known to be a long unless the key is taken, in which case the value of the
+     * key is returned.
+     */
+    public V putIfAbsent(final long key, final V value) {
+        if (null == value)
+            throw new IllegalArgumentException("The value of a long map entry can not be null");
+        return this.put(key, value, true);
+    }
+
+    /**
+     * Remove a key that is known to be a long if it is mapped to the value.
+     */
+    public boolean remove(final long key, final Object value) {
+        final int index = this.indexOf(key);
+        if (-1 == index || !this.values[index].equals(value))
+            return false;
+        this.delete(index);
+        return true;
+    }
+
+    public void clear() {
+        this.values = null;
+        this.allocate(MIN_CAPACITY);
+        this.size = 0;
+        this.otherKeys.clear();
+    }
+
+    public Collection<V> values() {
+        return new AbstractCollection<V>() {
+            public Iterator<V> iterator() {
+                return new TableIterator<V>() {
+                    protected V next(final int index) {
+                        return (V) values[index];
+                    }
+
+                    protected V other(final Entry<String, V> entry) {
+                        return entry.getValue();
+                    }
+                };
+            }
+
+            public int size() {
+                return TinkerLongMap.this.size();
+            }
+        };
+    }
+
+    public Set<Entry<String, V>> entrySet() {
+        return new AbstractSet<Entry<String, V>>() {
+            public Iterator<Entry<String, V>> iterator() {
+                return new TableIterator<Entry<String, V>>() {
+                    protected Entry<String, V> next(final int index) {
+                        return new SimpleImmutableEntry<>(Long.toString(keys[index]), (V) values[index]);
+                    }
+
+                    protected Entry<String, V> other(final Entry<String, V> entry) {
+                        return entry;
+                    }
+                };
+            }
+
+            public int size() {
+                return TinkerLongMap.this.size();
+            }
+        };
+    }
+
+    ////////////////
+
+    private V put(final long key, final V value, final boolean onlyIfAbsent) {
+        int index = slot(key, this.mask);
+        while (null != this.values[index]) {
+            if (this.keys[index] == key) {
+                final V old = (V) this.values[index];
+                if (!onlyIfAbsent)
+                    this.values[index] = value;
+                return old;
+            }
+            index = (index + 1) & this.mask;
+        }
+        this.keys[index] = key;
+        this.values[index] = value;
+        if (++this.size > this.threshold)
+            this.allocate(this.values.length << 1);
+        return null;
+    }
+
+    private int indexOf(final long key) {
+        int index = slot(key, this.mask);
+        while (null != this.values[index]) {
+            if (this.keys[index] == key)
+                return index;
+            index = (index + 1) & this.mask;
+        }
+        return -1;
+    }
+
+    /**
+     * Backward shift deletion so that probe sequences stay intact without tombstones.
+     */
+    private void delete(int index) {
+        int next = (index + 1) & this.mask;
+        while (null != this.values[next]) {
+            final int home = slot(this.keys[next], this.mask);
+            // move the entry at next back into the hole if its home slot is not cyclically in (index, next]
+            if ((next > index && (home <= index || home > next)) || (next < index && (home <= index && home > next))) {
+                this.keys[index] = this.keys[next];
+                this.values[index] = this.values[next];
+                index = next;
+            }
+            next = (next + 1) & this.mask;
+        }
+        this.values[index] = null;
+        this.size--;
+    }
+
+    private void allocate(final int capacity) {
+        final long[] oldKeys = this.keys;
+        final Object[] oldValues = this.values;
+        this.keys = new long[capacity];
+        this.values = new Object[capacity];
+        this.mask = capacity - 1;
+        this.threshold = (int) (capacity * LOAD_FACTOR);
+        if (null != oldValues) {
+            for (int i = 0; i < oldValues.length; i++) {
+                if (null != oldValues[i]) {
+                    int index = slot(oldKeys[i], this.mask);
+                    while (null != this.values[index]) {
+                        index = (index + 1) & this.mask;
+                    }
+                    this.keys[index] = oldKeys[i];
+                    this.values[index] = oldValues[i];
+                }
+            }
+        }
+    }
+
+    private static int slot(final long key, final int mask) {
+        final long hash = key * 0x9E3779B97F4A7C15l;
+        return (int) (hash ^ (hash >>> 32)) & mask;
+    }
+
+    private static int tableSizeFor(final int expectedSize) {
+        int capacity = MIN_CAPACITY;
+        while (capacity * LOAD_FACTOR < expectedSize && capacity < (1 << 30)) {
+            capacity = capacity << 1;
+        }
+        return capacity;
+    }
+
+    /**
+     * Only the canonical form of a long is stored in the table, so that "7" and "07" remain different keys.
+     */
+    protected static boolean isLongKey(final Object key) {
+        if (!(key instanceof String))
+            return false;
+        final String string = (String) key;
+        final int length = string.length();
+        if (length == 0 || length > 20)
+            return false;
+        final int start = string.charAt(0) == '-' ? 1 : 0;
+        if (start == length || (string.charAt(start) == '0' && (length - start > 1 || start == 1)))
+            return false;
+        for (int i = start; i < length; i++) {
+            final char c = string.charAt(i);
+            if (c < '0' || c > '9')
+                return false;
+        }
+        if (length - start < 19)
+            return true;
+        try {
+            Long.parseLong(string);
+            return true;
+        } catch (final NumberFormatException e) {
+            return false;
+        }
+    }
+
+    private abstract class TableIterator<T> implements Iterator<T> {
+        private int index = -1;
+        private final Iterator<Entry<String, V>> otherIterator = otherKeys.entrySet().iterator();
+
+        public TableIterator() {
+            this.advance();
+        }
+
+        private void advance() {
+            do {
+                this.index++;
+            } while (this.index < values.length && null == values[this.index]);
+        }
+
+        public boolean hasNext() {
+            return this.index < values.length || this.otherIterator.hasNext();
+        }
+
+        public T next() {
+            if (this.index < values.length) {
+                final T t = this.next(this.index);
+                this.advance();
+                return t;
+            } else if (this.otherIterator.hasNext()) {
+                return this.other(this.otherIterator.next());
+            } else
+                throw new NoSuchElementException();
+        }
+
+        protected abstract T next(final int index);
+
+        protected abstract T other(final Entry<String, V> entry);
+    }
+}
@@ -0,0 +1,37 @@
+package com.tinkerpop.blueprints.tinkergraph;
+
+import com.tinkerpop.blueprints.Direction;
+import com.tinkerpop.blueprints.Edge;
+import com.tinkerpop.blueprints.Element;
+import com.tinkerpop.blueprints.Vertex;
+import com.tinkerpop.blueprints.util.StringFactory;
+
+class TinkerMappedEdge extends TinkerMappedElement implements Edge {
+
+    protected static final int OUT_VERTEX = 2, IN_VERTEX = 3;
+
+    protected TinkerMappedEdge(final TinkerMappedGraph graph, final int index) {
+        super(graph, index);
+    }
+
+    protected int getPropertyIndex() {
+        return this.graph.vertexCount + this.index;
+    }
+
+    protected int getInt(final int field) {
+        return this.graph.getEdgeInt(this.index, field);
+    }
+
+    public Vertex getVertex(final Direction direction) throws IllegalArgumentException {
+        if (direction.equals(Direction.IN))
+            return new TinkerMappedVertex(this.graph, this.getInt(IN_VERTEX));
+        else if (direction.equals(Direction.OUT))
+            return new TinkerMappedVertex(this.graph, this.getInt(OUT_VERTEX));
+        else
+            throw Element.Exceptions.bothIsNotSupported();
+    }
+
+    public String toString() {
+        return StringFactory.edgeString(this);
+    }
+}
@@ -0,0 +1,69 @@
+package com.tinkerpop.blueprints.tinkergraph;
+
+import com.tinkerpop.blueprints.Element;
+import com.tinkerpop.blueprints.Property;
+import com.tinkerpop.blueprints.util.ElementHelper;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * An element of a {@link TinkerMappedGraph}. It only holds the index of its record in the image and decodes its id,
+ * label and properties from the image when they are asked for.
+ */
+abstract class TinkerMappedElement implements Element {
+
+    protected final TinkerMappedGraph graph;
+    protected final int index;
+
+    protected TinkerMappedElement(final TinkerMappedGraph graph, final int index) {
+        this.graph = graph;
+        this.index = index;
+    }
+
+    /**
+     * The index of the element among the properties of the image, where the edges follow the vertices.
+     */
+    protected abstract int getPropertyIndex();
+
+    protected abstract int getInt(final int field);
+
+    public String getId() {
+        return this.graph.getString(this.getInt(0));
+    }
+
+    public String getLabel() {
+        return this.graph.getString(this.getInt(1));
+    }
+
+    public Map<String, Property> getProperties() {
+        final Map<String, Property> properties = new HashMap<>();
+        this.graph.getPropertyPositions(this.getPropertyIndex()).forEach((key, position) -> {
+            final String string = this.graph.getString(key);
+            properties.put(string, new TinkerMappedProperty<>(this, string, this.graph.getValue(position)));
+        });
+        return properties;
+    }
+
+    public <V> Property<V> getProperty(final String key) {
+        final int string = this.graph.getStringIndex(key);
+        final int position = -1 == string ? -1 : this.graph.getPropertyPosition(this.getPropertyIndex(), string);
+        return -1 == position ? Property.empty() : new TinkerMappedProperty<>(this, key, (V) this.graph.getValue(position));
+    }
+
+    public <V> void setProperty(final String key, final V value) {
+        throw TinkerMappedGraph.readOnly();
+    }
+
+    public void remove() {
+        throw TinkerMappedGraph.readOnly();
+    }
+
+    public int hashCode() {
+        return this.getId().hashCode();
+    }
+
+    public boolean equals(final Object object) {
+        return ElementHelper.areEqual(this, object);
+    }
+}
@@ -0,0 +1,497 @@
+package com.tinkerpop.blueprints.tinkergraph;
+
+import com.tinkerpop.blueprints.Annotations;
+import com.tinkerpop.blueprints.Direction;
+import com.tinkerpop.blueprints.Edge;
+import com.tinkerpop.blueprints.Graph;
+import com.tinkerpop.blueprints.Property;
+import com.tinkerpop.blueprints.Strategy;
+import com.tinkerpop.blueprints.Transaction;
+import com.tinkerpop.blueprints.Vertex;
+import com.tinkerpop.blueprints.computer.GraphComputer;
+import com.tinkerpop.blueprints.query.GraphQuery;
+import com.tinkerpop.blueprints.strategy.GraphStrategy;
+import com.tinkerpop.blueprints.util.StringFactory;
+import org.apache.commons.configuration.Configuration;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+/**
+ * A read-only graph that is backed by a binary image of a {@link TinkerGraph} (see {@link #write(TinkerGraph, Path)}).
+ * The image is memory mapped and nothing but the graph annotations is read when the graph is opened. Vertices and
+ * edges are light handles onto fixed size records, and their adjacency and properties are decoded from the mapped
+ * image as they are asked for. The data of the graph thus lives off-heap in the page cache of the operating system.
+ * <p/>
+ * The image holds a sorted table of the ids, labels and keys of the graph, then the vertex records, the edge records,
+ * the adjacency of every vertex and the properties of every element. Vertices and edges are sorted by id so that
+ * they are looked up by binary search. Each section of the image is mapped as its own buffer and can not exceed 2GB.
+ */
+public class TinkerMappedGraph implements Graph {
+
+    /**
+     * The configuration key of the image file to open the graph on.
+     */
+    public static final String CONFIG_IMAGE = "blueprints.tg.image";
+
+    private static final int MAGIC = 0x544B474D;
+    private static final int VERSION = 1;
+
+    private static final int STRING_OFFSETS = 0, STRING_DATA = 1, VERTICES = 2, EDGES = 3, ADJACENCY = 4,
+            PROPERTY_DATA = 5, PROPERTY_OFFSETS = 6, ANNOTATIONS = 7, SECTIONS = 8;
+    private static final int HEADER_SIZE = 5 * 4 + (SECTIONS + 1) * 8;
+
+    // id, label, out adjacency start, out degree, in adjacency start, in degree
+    static final int VERTEX_RECORD = 6 * 4;
+    // id, label, out vertex, in vertex
+    static final int EDGE_RECORD = 4 * 4;
+
+    protected final int stringCount;
+    protected final int vertexCount;
+    protected final int edgeCount;
+    protected final ByteBuffer[] sections = new ByteBuffer[SECTIONS];
+
+    private final Annotations annotations;
+    private final Strategy strategy = new Strategy.Simple();
+
+    private TinkerMappedGraph(final Path image) {
+        this.strategy.set(Optional.empty());
+        try (final FileChannel channel = FileChannel.open(image, StandardOpenOption.READ)) {
+            final ByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_SIZE);
+            if (header.getInt() != MAGIC)
+                throw new IOException("The file is not a TinkerGraph image: " + image);
+            final int version = header.getInt();
+            if (version != VERSION)
+                throw new IOException("The image version is not supported: " + version);
+            this.stringCount = header.getInt();
+            this.vertexCount = header.getInt();
+            this.edgeCount = header.getInt();
+            final long[] positions = new long[SECTIONS + 1];
+            for (int i = 0; i < positions.length; i++) {
+                positions[i] = header.getLong();
+            }
+            for (int i = 0; i < SECTIONS; i++) {
+                this.sections[i] = channel.map(FileChannel.MapMode.READ_ONLY, positions[i], positions[i + 1] - positions[i]);
+            }
+        } catch (final IOException e) {
+            throw new UncheckedIOException(e);
+        }
+
+        final TinkerAnnotations annotations = new TinkerAnnotations();
+        try {
+            final DataInputStream in = this.input(this.sections[ANNOTATIONS].duplicate());
+            final int size = in.readInt();
+            for (int i = 0; i < size; i++) {
+                annotations.set(TinkerStorage.readString(in), TinkerStorage.readValue(in));
+            }
+        } catch (final IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        this.annotations = annotations.readOnly();
+    }
+
+    /**
+     * Open the graph on an image file.
+     */
+    public static TinkerMappedGraph open(final Path image) {
+        return new TinkerMappedGraph(image);
+    }
+
+    /**
+     * Open the graph on the image file of the {@link #CONFIG_IMAGE} key of the configuration. The graph does not
+     * support strategies.
+     */
+    public static <G extends Graph> G open(final Optional<Configuration> configuration, final Optional<GraphStrategy> strategy) {
+        if (strategy.isPresent())
+            throw Graph.Exceptions.graphStrategyNotSupported();
+        final String image = configuration.map(c -> c.getString(CONFIG_IMAGE, null)).orElse(null);
+        if (null == image)
+            throw Graph.Exceptions.argumentCanNotBeNull(CONFIG_IMAGE);
+        return (G) new TinkerMappedGraph(Paths.get(image));
+    }
+
+    /**
+     * Write an image of the graph to the file. The image is written to a temporary file first and then moved over the
+     * file, so graphs that are open on the previous image keep reading it.
+     */
+    public static void write(final TinkerGraph graph, final Path image) {
+        final List<TinkerVertex> vertices = new ArrayList<>((Collection) graph.vertices.values());
+        final List<TinkerEdge> edges = new ArrayList<>((Collection) graph.edges.values());
+
+        final Set<String> strings = new HashSet<>();
+        for (final List<? extends TinkerElement> elements : Arrays.asList(vertices, edges)) {
+            for (final TinkerElement element : elements) {
+                strings.add(element.id);
+                strings.add(element.label);
+                strings.addAll(element.properties.keySet());
+            }
+        }
+        final byte[][] stringBytes = strings.stream().map(s -> s.getBytes(StandardCharsets.UTF_8)).sorted(TinkerMappedGraph::compare).toArray(byte[][]::new);
+        final Map<String, Integer> stringIndices = new HashMap<>();
+        for (int i = 0; i < stringBytes.length; i++) {
+            stringIndices.put(new String(stringBytes[i], StandardCharsets.UTF_8), i);
+        }
+        vertices.sort(Comparator.comparingInt(v -> stringIndices.get(v.id)));
+        edges.sort(Comparator.comparingInt(e -> stringIndices.get(e.id)));
+        final Map<String, Integer> vertexIndices = new HashMap<>();
+        for (int i = 0; i < vertices.size(); i++) {
+            vertexIndices.put(vertices.get(i).id, i);
+        }
+        final Map<String, Integer> edgeIndices = new HashMap<>();
+        for (int i = 0; i < edges.size(); i++) {
+            edgeIndices.put(edges.get(i).id, i);
+        }
+
+        try {
+            final Path temp = image.resolveSibling(image.getFileName() + ".tmp");
+            try (final FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                channel.position(HEADER_SIZE);
+                final DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(channel), 1 << 16));
+                final long[] positions = new long[SECTIONS + 1];
+
+                positions[STRING_OFFSETS] = position(out, channel);
+                int offset = 0;
+                for (final byte[] bytes : stringBytes) {
+                    out.writeInt(offset);
+                    offset = offset + bytes.length;
+                }
+                out.writeInt(offset);
+
+                positions[STRING_DATA] = position(out, channel);
+                for (final byte[] bytes : stringBytes) {
+                    out.write(bytes);
+                }
+
+                positions[VERTICES] = position(out, channel);
+                int adjacency = 0;
+                for (final TinkerVertex vertex : vertices) {
+                    out.writeInt(stringIndices.get(vertex.id));
+                    out.writeInt(stringIndices.get(vertex.label));
+                    out.writeInt(adjacency);
+                    out.writeInt(vertex.outEdges.size());
+                    out.writeInt(adjacency + vertex.outEdges.size());
+                    out.writeInt(vertex.inEdges.size());
+                    adjacency = adjacency + vertex.outEdges.size() + vertex.inEdges.size();
+                }
+
+                positions[EDGES] = position(out, channel);
+                for (final TinkerEdge edge : edges) {
+                    out.writeInt(stringIndices.get(edge.id));
+                    out.writeInt(stringIndices.get(edge.label));
+                    out.writeInt(vertexIndices.get(edge.getVertex(Direction.OUT).getId()));
+                    out.writeInt(vertexIndices.get(edge.getVertex(Direction.IN).getId()));
+                }
+
+                positions[ADJACENCY] = position(out, channel);
+                for (final TinkerVertex vertex : vertices) {
+                    for (final TinkerAdjacency adjacent : Arrays.asList(vertex.outEdges, vertex.inEdges)) {
+                        final Iterator<Edge> iterator = adjacent.iterator();
+                        while (iterator.hasNext()) {
+                            out.writeInt(edgeIndices.get(((TinkerEdge) iterator.next()).id));
+                        }
+                    }
+                }
+
+                positions[PROPERTY_DATA] = position(out, channel);
+                final int[] propertyOffsets = new int[vertices.size() + edges.size() + 1];
+                final ByteArrayOutputStream value = new ByteArrayOutputStream();
+                long size = 0;
+                int element = 0;
+                for (final List<? extends TinkerElement> elements : Arrays.asList(vertices, edges)) {
+                    for (final TinkerElement tinkerElement : elements) {
+                        propertyOffsets[element++] = (int) size;
+                        for (final Map.Entry<String, Property> entry : tinkerElement.properties.entrySet()) {
+                            value.reset();
+                            TinkerStorage.writeValue(new DataOutputStream(value), entry.getValue().get());
+                            out.writeInt(stringIndices.get(entry.getKey()));
+                            out.writeInt(value.size());
+                            value.writeTo(out);
+                            size = size + 8 + value.size();
+                        }
+                        if (size > Integer.MAX_VALUE)
+                            throw new IOException("The properties of the graph exceed the size of an image section");
+                    }
+                }
+                propertyOffsets[element] = (int) size;
+
+                positions[PROPERTY_OFFSETS] = position(out, channel);
+                for (final int propertyOffset : propertyOffsets) {
+                    out.writeInt(propertyOffset);
+                }
+
+                positions[ANNOTATIONS] = position(out, channel);
+                final Set<String> annotationKeys = graph.annotations().getKeys();
+                out.writeInt(annotationKeys.size());
+                for (final String key : annotationKeys) {
+                    TinkerStorage.writeString(out, key);
+                    TinkerStorage.writeValue(out, graph.annotations().get(key).get());
+                }
+                positions[SECTIONS] = position(out, channel);
+                for (int i = 0; i < SECTIONS; i++) {
+                    if (positions[i + 1] - positions[i] > Integer.MAX_VALUE)
+                        throw new IOException("A section of the image exceeds 2GB: " + i);
+                }
+
+                final ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+                header.putInt(MAGIC).putInt(VERSION).putInt(stringBytes.length).putInt(vertices.size()).putInt(edges.size());
+                for (final long position : positions) {
+                    header.putLong(position);
+                }
+                header.flip();
+                channel.write(header, 0);
+                channel.force(false);
+            }
+            Files.move(temp, image, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (final IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    ////////////// BLUEPRINTS API METHODS //////////////////
+
+    public Vertex addVertex(final Object... keyValues) {
+        throw readOnly();
+    }
+
+    public GraphQuery query() {
+        return new TinkerMappedGraphQuery(this);
+    }
+
+    public GraphComputer compute() {
+        throw Graph.Exceptions.graphComputerNotSupported();
+    }
+
+    public Transaction tx() {
+        throw Graph.Exceptions.transactionsNotSupported();
+    }
+
+    public Strategy strategy() {
+        return this.strategy;
+    }
+
+    public Annotations annotations() {
+        return this.annotations;
+    }
+
+    public void close() {
+    }
+
+    public String toString() {
+        return StringFactory.graphString(this, "vertices:" + this.vertexCount + " edges:" + this.edgeCount);
+    }
+
+    public Features getFeatures() {
+        return new Features() {
+            @Override
+            public GraphFeatures graph() {
+                return new GraphFeatures() {
+                    @Override
+                    public boolean supportsComputer() {
+                        return false;
+                    }
+
+                    @Override
+                    public boolean supportsStrategy() {
+                        return false;
+                    }
+
+                    @Override
+                    public boolean supportsTransactions() {
+                        return false;
+                    }
+                };
+            }
+        };
+    }
+
+    ///////////// IMAGE ACCESS ///////////////
+
+    protected static UnsupportedOperationException readOnly() {
+        return new UnsupportedOperationException("The graph is read-only");
+    }
+
+    protected String getString(final int index) {
+        final ByteBuffer offsets = this.sections[STRING_OFFSETS];
+        final int start = offsets.getInt(index * 4);
+        final byte[] bytes = new byte[offsets.getInt((index + 1) * 4) - start];
+        final ByteBuffer data = this.sections[STRING_DATA].duplicate();
+        data.position(start);
+        data.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Get the index of the string in the string table of the image or -1 if the image does not contain the string.
+     */
+    protected int getStringIndex(final String string) {
+        final byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+        final ByteBuffer offsets = this.sections[STRING_OFFSETS];
+        final ByteBuffer data = this.sections[STRING_DATA];
+        int low = 0;
+        int high = this.stringCount - 1;
+        while (low <= high) {
+            final int middle = (low + high) >>> 1;
+            final int start = offsets.getInt(middle * 4);
+            final int length = offsets.getInt((middle + 1) * 4) - start;
+            int comparison = 0;
+            for (int i = 0; i < Math.min(length, bytes.length) && 0 == comparison; i++) {
+                comparison = Integer.compare(data.get(start + i) & 0xFF, bytes[i] & 0xFF);
+            }
+            if (0 == comparison)
+                comparison = Integer.compare(length, bytes.length);
+            if (comparison < 0)
+                low = middle + 1;
+            else if (comparison > 0)
+                high = middle - 1;
+            else
+                return middle;
+        }
+        return -1;
+    }
+
+    protected int getInt(final int section, final int index) {
+        return this.sections[section].getInt(index * 4);
+    }
+
+    protected int getVertexInt(final int vertex, final int field) {
+        return this.sections[VERTICES].getInt(vertex * VERTEX_RECORD + field * 4);
+    }
+
+    protected int getEdgeInt(final int edge, final int field) {
+        return this.sections[EDGES].getInt(edge * EDGE_RECORD + field * 4);
+    }
+
+    protected int getAdjacentEdge(final int position) {
+        return this.getInt(ADJACENCY, position);
+    }
+
+    /**
+     * Get the vertex with the id or null if there is no such vertex.
+     */
+    protected TinkerMappedVertex getVertex(final Object id) {
+        final int index = this.search(VERTICES, VERTEX_RECORD, this.vertexCount, id);
+        return -1 == index ? null : new TinkerMappedVertex(this, index);
+    }
+
+    /**
+     * Get the edge with the id or null if there is no such edge.
+     */
+    protected TinkerMappedEdge getEdge(final Object id) {
+        final int index = this.search(EDGES, EDGE_RECORD, this.edgeCount, id);
+        return -1 == index ? null : new TinkerMappedEdge(this, index);
+    }
+
+    /**
+     * Get the properties of the element (vertices first, then edges) as a map of key index to the position of the
+     * encoded value in the property data.
+     */
+    protected Map<Integer, Integer> getPropertyPositions(final int element) {
+        final ByteBuffer data = this.sections[PROPERTY_DATA];
+        final int end = this.getInt(PROPERTY_OFFSETS, element + 1);
+        final Map<Integer, Integer> positions = new HashMap<>();
+        for (int position = this.getInt(PROPERTY_OFFSETS, element); position < end; position = position + 8 + data.getInt(position + 4)) {
+            positions.put(data.getInt(position), position + 8);
+        }
+        return positions;
+    }
+
+    /**
+     * Get the position of the encoded value of the property of the element or -1 if the element has no such property.
+     */
+    protected int getPropertyPosition(final int element, final int key) {
+        final ByteBuffer data = this.sections[PROPERTY_DATA];
+        final int end = this.getInt(PROPERTY_OFFSETS, element + 1);
+        for (int position = this.getInt(PROPERTY_OFFSETS, element); position < end; position = position + 8 + data.getInt(position + 4)) {
+            if (data.getInt(position) == key)
+                return position + 8;
+        }
+        return -1;
+    }
+
+    protected Object getValue(final int position) {
+        final ByteBuffer data = this.sections[PROPERTY_DATA].duplicate();
+        data.position(position);
+        try {
+            return TinkerStorage.readValue(this.input(data));
+        } catch (final IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    ////////////////
+
+    private int search(final int section, final int recordSize, final int count, final Object id) {
+        final int string = this.getStringIndex(id.toString());
+        if (-1 == string)
+            return -1;
+        final ByteBuffer records = this.sections[section];
+        int low = 0;
+        int high = count - 1;
+        while (low <= high) {
+            final int middle = (low + high) >>> 1;
+            final int value = records.getInt(middle * recordSize);
+            if (value < string)
+                low = middle + 1;
+            else if (value > string)
+                high = middle - 1;
+            else
+                return middle;
+        }
+        return -1;
+    }
+
+    private DataInputStream input(final ByteBuffer buffer) {
+        return new DataInputStream(new InputStream() {
+            public int read() {
+                return buffer.hasRemaining() ? buffer.get() & 0xFF : -1;
+            }
+
+            public int read(final byte[] bytes, final int offset, final int length) {
+                if (!buffer.hasRemaining())
+                    return -1;
+                final int count = Math.min(length, buffer.remaining());
+                buffer.get(bytes, offset, count);
+                return count;
+            }
+        });
+    }
+
+    private static long position(final DataOutputStream out, final FileChannel channel) throws IOException {
+        out.flush();
+        return channel.position();
+    }
+
+    private static int compare(final byte[] a, final byte[] b) {
+        for (int i = 0; i < Math.min(a.length, b.length); i++) {
+            final int comparison = Integer.compare(a[i] & 0xFF, b[i] & 0xFF);
+            if (0 != comparison)
+                return comparison;
+        }
+        return Integer.compare(a.length, b.length);
+    }
+}
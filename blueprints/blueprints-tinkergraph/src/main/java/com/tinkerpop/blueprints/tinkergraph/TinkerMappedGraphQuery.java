@@ -0,0 +1,69 @@
+package com.tinkerpop.blueprints.tinkergraph;
+
+import com.tinkerpop.blueprints.Compare;
+import com.tinkerpop.blueprints.Contains;
+import com.tinkerpop.blueprints.Edge;
+import com.tinkerpop.blueprints.Element;
+import com.tinkerpop.blueprints.Property;
+import com.tinkerpop.blueprints.Vertex;
+import com.tinkerpop.blueprints.query.util.DefaultGraphQuery;
+import com.tinkerpop.blueprints.query.util.HasContainer;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.function.Function;
+import java.util.function.IntFunction;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+/**
+ * Ids are looked up by binary search over the records of the image. Any other query scans the records lazily.
+ */
+public class TinkerMappedGraphQuery extends DefaultGraphQuery {
+
+    private final TinkerMappedGraph graph;
+
+    TinkerMappedGraphQuery(final TinkerMappedGraph graph) {
+        this.graph = graph;
+    }
+
+    public Iterable<Edge> edges() {
+        this.stringifyIds();
+        return () -> this.<Edge>getCandidates(this.graph::getEdge, i -> new TinkerMappedEdge(this.graph, i), this.graph.edgeCount)
+                .filter(e -> HasContainer.testAll(e, this.hasContainers))
+                .limit(this.limit)
+                .iterator();
+    }
+
+    public Iterable<Vertex> vertices() {
+        this.stringifyIds();
+        return () -> this.<Vertex>getCandidates(this.graph::getVertex, i -> new TinkerMappedVertex(this.graph, i), this.graph.vertexCount)
+                .filter(v -> HasContainer.testAll(v, this.hasContainers))
+                .limit(this.limit)
+                .iterator();
+    }
+
+    private <E extends Element> Stream<E> getCandidates(final Function<Object, ? extends E> lookup, final IntFunction<? extends E> record, final int count) {
+        for (final HasContainer hasContainer : this.hasContainers) {
+            if (hasContainer.key.equals(Property.Key.ID)) {
+                if (hasContainer.predicate.equals(Contains.IN) && hasContainer.value instanceof Collection)
+                    return ((Collection<?>) hasContainer.value).stream().distinct().<E>map(lookup).filter(e -> null != e);
+                else if (hasContainer.predicate.equals(Compare.EQUAL) && null != hasContainer.value)
+                    return Stream.<E>of(lookup.apply(hasContainer.value)).filter(e -> null != e);
+            }
+        }
+        return IntStream.range(0, count).mapToObj(record);
+    }
+
+    private void stringifyIds() {
+        this.hasContainers.stream().filter(h -> h.key.equals(Property.Key.ID)).forEach(h -> {
+            if (h.value instanceof Collection) {
+                final List<String> ids = new ArrayList<>();
+                ((Collection<Object>) h.value).forEach(v -> ids.add(v.toString()));
+                h.value = ids;
+            } else if (null != h.value)
+                h.value = h.value.toString();
+        });
+    }
+}
@@ -0,0 +1,51 @@
+package com.tinkerpop.blueprints.tinkergraph;
+
+import com.tinkerpop.blueprints.Element;
+import com.tinkerpop.blueprints.Property;
+import com.tinkerpop.blueprints.util.ElementHelper;
+import com.tinkerpop.blueprints.util.StringFactory;
+
+class TinkerMappedProperty<V> implements Property<V> {
+
+    private final Element element;
+    private final String key;
+    private final V value;
+
+    public TinkerMappedProperty(final Element element, final String key, final V value) {
+        this.element = element;
+        this.key = key;
+        this.value = value;
+    }
+
+    public <E extends Element> E getElement() {
+        return (E) this.element;
+    }
+
+    public String getKey() {
+        return this.key;
+    }
+
+    public V get() {
+        return this.value;
+    }
+
+    public boolean isPresent() {
+        return null != this.value;
+    }
+
+    public void remove() {
+        throw TinkerMappedGraph.readOnly();
+    }
+
+    public String toString() {
+        return StringFactory.propertyString(this);
+    }
+
+    public boolean equals(final Object object) {
+        return ElementHelper.areEqual(this, object);
+    }
+
+    public int hashCode() {
+        return this.key.hashCode() + this.value.hashCode() + this.element.hashCode();
+    }
+}
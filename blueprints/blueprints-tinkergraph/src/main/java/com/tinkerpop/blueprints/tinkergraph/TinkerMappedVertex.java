@@ -0,0 +1,35 @@
+package com.tinkerpop.blueprints.tinkergraph;
+
+import com.tinkerpop.blueprints.Edge;
+import com.tinkerpop.blueprints.Vertex;
+import com.tinkerpop.blueprints.query.VertexQuery;
+import com.tinkerpop.blueprints.util.StringFactory;
+
+class TinkerMappedVertex extends TinkerMappedElement implements Vertex {
+
+    protected static final int OUT_START = 2, OUT_DEGREE = 3, IN_START = 4, IN_DEGREE = 5;
+
+    protected TinkerMappedVertex(final TinkerMappedGraph graph, final int index) {
+        super(graph, index);
+    }
+
+    protected int getPropertyIndex() {
+        return this.index;
+    }
+
+    protected int getInt(final int field) {
+        return this.graph.getVertexInt(this.index, field);
+    }
+
+    public VertexQuery query() {
+        return new TinkerMappedVertexQuery(this);
+    }
+
+    public Edge addEdge(final String label, final Vertex inVertex, final Object... keyValues) {
+        throw TinkerMappedGraph.readOnly();
+    }
+
+    public String toString() {
+        return StringFactory.vertexString(this);
+    }
+}
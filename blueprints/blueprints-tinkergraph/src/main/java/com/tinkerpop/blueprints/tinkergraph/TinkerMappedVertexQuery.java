@@ -0,0 +1,80 @@
+package com.tinkerpop.blueprints.tinkergraph;
+
+import com.tinkerpop.blueprints.Direction;
+import com.tinkerpop.blueprints.Edge;
+import com.tinkerpop.blueprints.Vertex;
+import com.tinkerpop.blueprints.query.util.DefaultVertexQuery;
+import com.tinkerpop.blueprints.query.util.HasContainer;
+
+import java.util.Arrays;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+/**
+ * The query walks the adjacency of the vertex in the image. The labels of the query are resolved to the string table
+ * of the image once so that edges are filtered by label without being decoded.
+ */
+public class TinkerMappedVertexQuery extends DefaultVertexQuery {
+
+    private final TinkerMappedVertex vertex;
+
+    TinkerMappedVertexQuery(final TinkerMappedVertex vertex) {
+        this.vertex = vertex;
+    }
+
+    public Iterable<Edge> edges() {
+        return () -> Stream.concat(this.edges(Direction.OUT), this.edges(Direction.IN))
+                .limit(this.limit)
+                .<Edge>map(e -> e)
+                .iterator();
+    }
+
+    public Iterable<Vertex> vertices() {
+        return () -> Stream.concat(
+                this.edges(Direction.OUT).map(e -> e.getVertex(Direction.IN)),
+                this.edges(Direction.IN).map(e -> e.getVertex(Direction.OUT)))
+                .limit(this.limit)
+                .iterator();
+    }
+
+    public long count() {
+        if (this.hasContainers.isEmpty() && this.adjacents.isEmpty() && 0 == this.labels.length) {
+            long count = 0;
+            if (this.direction.equals(Direction.BOTH) || this.direction.equals(Direction.OUT))
+                count = count + this.vertex.getInt(TinkerMappedVertex.OUT_DEGREE);
+            if (this.direction.equals(Direction.BOTH) || this.direction.equals(Direction.IN))
+                count = count + this.vertex.getInt(TinkerMappedVertex.IN_DEGREE);
+            return Math.min(count, this.limit);
+        }
+        return Stream.concat(this.edges(Direction.OUT), this.edges(Direction.IN)).limit(this.limit).count();
+    }
+
+    /**
+     * The edges of the query in one direction of the adjacency. They are empty if the query is in the other direction.
+     */
+    private Stream<TinkerMappedEdge> edges(final Direction direction) {
+        if (!this.direction.equals(Direction.BOTH) && !this.direction.equals(direction))
+            return Stream.empty();
+        final TinkerMappedGraph graph = this.vertex.graph;
+        final int[] labels = Arrays.stream(this.labels).mapToInt(graph::getStringIndex).toArray();
+        final int start = this.vertex.getInt(direction.equals(Direction.OUT) ? TinkerMappedVertex.OUT_START : TinkerMappedVertex.IN_START);
+        final int degree = this.vertex.getInt(direction.equals(Direction.OUT) ? TinkerMappedVertex.OUT_DEGREE : TinkerMappedVertex.IN_DEGREE);
+        IntStream edges = IntStream.range(start, start + degree).map(graph::getAdjacentEdge);
+        if (labels.length > 0)
+            edges = edges.filter(e -> contains(labels, graph.getEdgeInt(e, 1)));
+        Stream<TinkerMappedEdge> stream = edges.mapToObj(e -> new TinkerMappedEdge(graph, e));
+        if (!this.hasContainers.isEmpty())
+            stream = stream.filter(e -> HasContainer.testAll(e, this.hasContainers));
+        if (!this.adjacents.isEmpty())
+            stream = stream.filter(e -> this.adjacents.contains(e.getVertex(direction.opposite())));
+        return stream;
+    }
+
+    private static boolean contains(final int[] labels, final int label) {
+        for (final int l : labels) {
+            if (l == label)
+                return true;
+        }
+        return false;
+    }
+}
@@ -1,81 +1,124 @@
 package com.tinkerpop.blueprints.tinkergraph;
 
+import com.tinkerpop.blueprints.Direction;
 import com.tinkerpop.blueprints.Edge;
 import com.tinkerpop.blueprints.Vertex;
 import com.tinkerpop.blueprints.computer.MessageType;
 import com.tinkerpop.blueprints.computer.Messenger;
-import com.tinkerpop.blueprints.util.StreamFactory;
+import com.tinkerpop.blueprints.computer.VertexProgram;
 
 import java.io.Serializable;
 import java.util.ArrayList;
-import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.Queue;
-import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BinaryOperator;
 
 /**
+ * The messages sent in an iteration are kept in an outbox per thread so that the threads executing the vertex
+ * program never write to the same map. The outboxes are merged into the inbox of the next iteration by
+ * {@link #completeIteration()}, which must only be called once all the threads are done sending.
+ * <p/>
+ * A local message is delivered to the adjacent vertices when it is sent, after applying the edge function of its
+ * {@link MessageType.Local} to each edge, so receiving messages is a lookup of the inbox of the vertex. The messages of
+ * a label with a combiner (see {@link VertexProgram#getMessageCombiners()}) are folded into a single message per
+ * vertex as they are sent.
+ *
  * @author Marko A. Rodriguez (http://markorodriguez.com)
  */
 public class TinkerMessenger<M extends Serializable> implements Messenger<M> {
 
-    // Map<VertexId, Map<MessageLabel, MessageQueue>>>
-    public Map<Object, Map<String, Queue<M>>> sendMessages = new HashMap<>();
-    public Map<Object, Map<String, Queue<M>>> receiveMessages = new HashMap<>();
+    // Map<Thread, Map<VertexId, Map<MessageLabel, MessageList>>>
+    private final Map<Thread, Map<Object, Map<String, List<M>>>> sendMessages = new ConcurrentHashMap<>();
+    // Map<VertexId, Map<MessageLabel, MessageList>>
+    private Map<Object, Map<String, List<M>>> receiveMessages = new HashMap<>();
+    private Map<String, BinaryOperator<M>> combiners = Collections.emptyMap();
 
-    public Iterable<M> receiveMessages(final Vertex vertex, final MessageType messageType) {
-        if (messageType instanceof MessageType.Local) {
-            final MessageType.Local<Object, M> localMessageType = (MessageType.Local) messageType;
-            final List<Edge> edge = new ArrayList<>(1); // simulates storage side-effects available in Gremlin, but not Java8 streams
-            return StreamFactory.iterable(StreamFactory.stream(localMessageType.getQuery().build().reverse().build(vertex).edges())
-                    .map(e -> {
-                        edge.clear();
-                        edge.add(e);
-                        return receiveMessages.get(e.getVertex(localMessageType.getQuery().direction).getId());
-                    })
-                    .filter(m -> null != m)
-                    .map(m -> m.get(messageType.getLabel()))
-                    .filter(l -> null != l)
-                    .flatMap(l -> l.stream())
-                    .map(message -> localMessageType.getEdgeFunction().apply(message, edge.get(0))));
+    public void setMessageCombiners(final Map<String, BinaryOperator<M>> combiners) {
+        this.combiners = combiners;
+    }
 
-        } else {
-            return StreamFactory.iterable(Arrays.asList(vertex).stream()
-                    .map(v -> this.receiveMessages.get(v.getId()))
-                    .filter(m -> null != m)
-                    .map(m -> m.get(messageType.getLabel()))
-                    .filter(l -> null != l)
-                    .flatMap(l -> l.stream()));
-        }
+    public Iterable<M> receiveMessages(final Vertex vertex, final MessageType messageType) {
+        final Map<String, List<M>> messages = this.receiveMessages.get(vertex.getId());
+        final List<M> messageList = null == messages ? null : messages.get(messageType.getLabel());
+        return null == messageList ? Collections.emptyList() : Collections.unmodifiableList(messageList);
     }
 
     public void sendMessage(final Vertex vertex, final MessageType messageType, final M message) {
+        final BinaryOperator<M> combiner = this.combiners.get(messageType.getLabel());
         if (messageType instanceof MessageType.Local) {
-            getMessageList(vertex.getId(), messageType).add(message);
+            final MessageType.Local<M, M> localMessageType = (MessageType.Local) messageType;
+            final Direction direction = localMessageType.getQuery().direction;
+            for (final Edge edge : localMessageType.edges(vertex)) {
+                this.addMessage(getAdjacentId(vertex, edge, direction), messageType, localMessageType.getEdgeFunction().apply(message, edge), combiner);
+            }
         } else {
-            ((MessageType.Global) messageType).vertices().forEach(v -> {
-                getMessageList(v.getId(), messageType).add(message);
-            });
+            ((MessageType.Global) messageType).vertices().forEach(v -> this.addMessage(v.getId(), messageType, message, combiner));
         }
     }
 
-    private Queue<M> getMessageList(final Object vertexId, final MessageType messageType) {
-        Map<String, Queue<M>> messages = this.sendMessages.get(vertexId);
+    private void addMessage(final Object vertexId, final MessageType messageType, final M message, final BinaryOperator<M> combiner) {
+        final List<M> messageList = getMessageList(vertexId, messageType);
+        if (null == combiner || messageList.isEmpty())
+            messageList.add(message);
+        else
+            messageList.set(0, combiner.apply(messageList.get(0), message));
+    }
+
+    private List<M> getMessageList(final Object vertexId, final MessageType messageType) {
+        Map<Object, Map<String, List<M>>> outbox = this.sendMessages.get(Thread.currentThread());
+        if (null == outbox) {
+            outbox = new HashMap<>();
+            this.sendMessages.put(Thread.currentThread(), outbox);
+        }
+        Map<String, List<M>> messages = outbox.get(vertexId);
         if (null == messages) {
             messages = new HashMap<>();
-            this.sendMessages.put(vertexId, messages);
+            outbox.put(vertexId, messages);
         }
-        Queue<M> messageList = messages.get(messageType.getLabel());
+        List<M> messageList = messages.get(messageType.getLabel());
         if (null == messageList) {
-            messageList = new ConcurrentLinkedQueue<>();
+            messageList = new ArrayList<>();
             messages.put(messageType.getLabel(), messageList);
         }
         return messageList;
     }
 
+    private static Object getAdjacentId(final Vertex vertex, final Edge edge, final Direction direction) {
+        if (Direction.OUT == direction)
+            return edge.getVertex(Direction.IN).getId();
+        else if (Direction.IN == direction)
+            return edge.getVertex(Direction.OUT).getId();
+        else {
+            final Object outId = edge.getVertex(Direction.OUT).getId();
+            return outId.equals(vertex.getId()) ? edge.getVertex(Direction.IN).getId() : outId;
+        }
+    }
+
     public void completeIteration() {
-        this.receiveMessages = this.sendMessages;
-        this.sendMessages = new HashMap<>();
+        // the largest outbox becomes the inbox so that only the messages of the other outboxes are moved
+        final List<Map<Object, Map<String, List<M>>>> outboxes = new ArrayList<>(this.sendMessages.values());
+        this.sendMessages.clear();
+        outboxes.sort((a, b) -> Integer.compare(b.size(), a.size()));
+        final Map<Object, Map<String, List<M>>> inbox = outboxes.isEmpty() ? new HashMap<>() : outboxes.get(0);
+        for (int i = 1; i < outboxes.size(); i++) {
+            outboxes.get(i).forEach((vertexId, messages) -> {
+                final Map<String, List<M>> inboxMessages = inbox.get(vertexId);
+                if (null == inboxMessages)
+                    inbox.put(vertexId, messages);
+                else
+                    messages.forEach((label, messageList) -> inboxMessages.merge(label, messageList, (a, b) -> {
+                        final BinaryOperator<M> combiner = this.combiners.get(label);
+                        if (null == combiner)
+                            a.addAll(b);
+                        else
+                            a.set(0, combiner.apply(a.get(0), b.get(0)));
+                        return a;
+                    }));
+            });
+        }
+        this.receiveMessages = inbox;
     }
 }
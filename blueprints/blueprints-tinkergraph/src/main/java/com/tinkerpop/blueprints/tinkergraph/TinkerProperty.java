@@ -19,7 +19,7 @@ public class TinkerProperty<V> implements Property<V> {
 
     public TinkerProperty(final Element element, final String key, final V value) {
         this.element = element;
-        this.key = key;
+        this.key = ((TinkerElement) element).graph.symbols.intern(key);
         this.value = value;
     }
 
@@ -66,10 +66,22 @@ public class TinkerProperty<V> implements Property<V> {
     }
 
     public void remove() {
-        ((TinkerElement) this.element).properties.remove(key);
-        if (this.element instanceof Vertex)
-            ((TinkerVertex) this.element).graph.vertexIndex.remove(key, value, (TinkerVertex) this.element);
-        else
-            ((TinkerEdge) this.element).graph.edgeIndex.remove(key, value, (TinkerEdge) this.element);
+        final TinkerElement element = (TinkerElement) this.element;
+        final TinkerLog log = TinkerLog.begin(element.graph);
+        try {
+            synchronized (element) {
+                element.properties.remove(key);
+                if (null != log)
+                    log.removeProperty(element, key);
+                if (this.element instanceof Vertex)
+                    ((TinkerVertex) this.element).graph.vertexIndex.remove(key, value, (TinkerVertex) this.element);
+                else {
+                    ((TinkerEdge) this.element).graph.edgeIndex.remove(key, value, (TinkerEdge) this.element);
+                    ((TinkerEdge) this.element).graph.vertexCentricIndex.autoUpdate(key, (TinkerEdge) this.element);
+                }
+            }
+        } finally {
+            TinkerLog.end(log);
+        }
     }
 }
@@ -0,0 +1,136 @@
+package com.tinkerpop.blueprints.tinkergraph;
+
+import com.tinkerpop.blueprints.Compare;
+import com.tinkerpop.blueprints.query.util.HasContainer;
+
+import java.io.Serializable;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.NavigableMap;
+
+/**
+ * The bounds on the values of a key that are implied by the {@link Compare} has-containers of a query. Sorted
+ * indices (see {@link TinkerIndex} and {@link TinkerVertexCentricIndex}) use it to only visit the values within the
+ * bounds. A null bound is unbounded.
+ * <p/>
+ * A range answers a query as a scan of the elements would: an equality skips the values of other classes, while an
+ * inequality fails with a {@link ClassCastException} if the key has values of another class than its bounds (see
+ * {@link #checkComparable(Object, Object)}).
+ */
+class TinkerRange {
+
+    /**
+     * Orders the values of a sorted index. Values of different classes are not comparable with each other so they
+     * are grouped by class name.
+     */
+    protected static final Comparator<Object> ORDER = new ValueComparator();
+
+    protected final String key;
+    protected Object low = null;
+    protected Object high = null;
+    protected boolean lowInclusive = true;
+    protected boolean highInclusive = true;
+    // whether an inequality bounds the range, which compares the values rather than testing their equality
+    protected boolean ordered = false;
+
+    private TinkerRange(final String key) {
+        this.key = key;
+    }
+
+    /**
+     * Creates the range of the key from all the range predicates on the key.
+     */
+    public static TinkerRange of(final String key, final List<HasContainer> hasContainers) {
+        final TinkerRange range = new TinkerRange(key);
+        for (final HasContainer hasContainer : hasContainers) {
+            if (!hasContainer.key.equals(key) || !isRangePredicate(hasContainer))
+                continue;
+            final Compare compare = (Compare) hasContainer.predicate;
+            range.ordered = range.ordered || compare != Compare.EQUAL;
+            if (compare == Compare.EQUAL || compare == Compare.GREATER_THAN || compare == Compare.GREATER_THAN_EQUAL)
+                range.low(hasContainer.value, compare != Compare.GREATER_THAN);
+            if (compare == Compare.EQUAL || compare == Compare.LESS_THAN || compare == Compare.LESS_THAN_EQUAL)
+                range.high(hasContainer.value, compare != Compare.LESS_THAN);
+        }
+        return range;
+    }
+
+    /**
+     * Whether the has-container restricts its key to a range of values.
+     */
+    public static boolean isRangePredicate(final HasContainer hasContainer) {
+        return hasContainer.predicate instanceof Compare &&
+                hasContainer.predicate != Compare.NOT_EQUAL &&
+                hasContainer.value instanceof Comparable;
+    }
+
+    /**
+     * Whether no value can be within the bounds.
+     */
+    public boolean isEmpty() {
+        if (null == this.low || null == this.high)
+            return false;
+        final int c = ORDER.compare(this.low, this.high);
+        return c > 0 || (c == 0 && !(this.lowInclusive && this.highInclusive));
+    }
+
+    /**
+     * Whether the value is of the same class as the bounds. Values of other classes are not equal to the bounds.
+     */
+    public boolean isComparable(final Object value) {
+        return value.getClass().equals((null == this.low ? this.high : this.low).getClass());
+    }
+
+    /**
+     * Fails like the {@link Compare} predicates of the range would if the smallest and the largest value of the key
+     * in the order of {@link #ORDER} can not both be compared with the bounds. As the values are grouped by class, all
+     * of them can be compared if those two can. Null values are absent and do not fail.
+     */
+    public void checkComparable(final Object first, final Object last) {
+        if (!this.ordered)
+            return;
+        for (final Object value : new Object[]{this.low, this.high, first, last}) {
+            if (null != value && !this.isComparable(value))
+                throw new ClassCastException(String.format("The values of %s can not be compared with %s", this.key, null == this.low ? this.high : this.low));
+        }
+    }
+
+    /**
+     * The view of a map sorted by {@link #ORDER} that is within the bounds. It may still contain values of other
+     * classes (see {@link #isComparable(Object)}).
+     */
+    public <V> NavigableMap<Object, V> subMap(NavigableMap<Object, V> map) {
+        if (this.isEmpty())
+            return Collections.emptyNavigableMap();
+        if (null != this.low)
+            map = map.tailMap(this.low, this.lowInclusive);
+        if (null != this.high)
+            map = map.headMap(this.high, this.highInclusive);
+        return map;
+    }
+
+    private void low(final Object value, final boolean inclusive) {
+        final int c = null == this.low ? 1 : ORDER.compare(value, this.low);
+        if (c > 0 || (c == 0 && !inclusive)) {
+            this.low = value;
+            this.lowInclusive = inclusive;
+        }
+    }
+
+    private void high(final Object value, final boolean inclusive) {
+        final int c = null == this.high ? -1 : ORDER.compare(value, this.high);
+        if (c < 0 || (c == 0 && !inclusive)) {
+            this.high = value;
+            this.highInclusive = inclusive;
+        }
+    }
+
+    private static class ValueComparator implements Comparator<Object>, Serializable {
+        public int compare(final Object a, final Object b) {
+            return a.getClass().equals(b.getClass()) ?
+                    ((Comparable) a).compareTo(b) :
+                    a.getClass().getName().compareTo(b.getClass().getName());
+        }
+    }
+}
@@ -0,0 +1,96 @@
+package com.tinkerpop.blueprints.tinkergraph;
+
+import com.tinkerpop.blueprints.Vertex;
+
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.ObjIntConsumer;
+
+/**
+ * Runs an action on every vertex of a {@link TinkerGraphComputer} iteration in a {@link ForkJoinPool}. Each vertex is
+ * weighted by its degree and the vertices are split into partitions of about the same total weight, so a vertex with
+ * many edges is a partition of its own and the idle workers steal the other partitions meanwhile.
+ */
+class TinkerScheduler {
+
+    // the number of partitions per worker, which leaves partitions to steal when the work is uneven
+    private static final int PARTITIONS_PER_WORKER = 8;
+
+    private final TinkerVertex[] vertices;
+    private final long[] weights;
+    private final long grain;
+
+    public TinkerScheduler(final List<Vertex> vertices, final int workers) {
+        this.vertices = vertices.toArray(new TinkerVertex[vertices.size()]);
+        // weights[i] is the total weight of the vertices before i
+        this.weights = new long[this.vertices.length + 1];
+        for (int i = 0; i < this.vertices.length; i++) {
+            this.weights[i + 1] = this.weights[i] + 1 + this.vertices[i].outEdges.size() + this.vertices[i].inEdges.size();
+        }
+        this.grain = Math.max(1, this.weights[this.vertices.length] / ((long) workers * PARTITIONS_PER_WORKER));
+    }
+
+    /**
+     * Run the action on every vertex along with its position in the list of vertices. An exception of the action is rethrown as it was thrown rather than as the copy
+     * that the pool makes of exceptions thrown by its workers.
+     */
+    public void forEach(final ForkJoinPool pool, final ObjIntConsumer<TinkerVertex> action) {
+        final AtomicReference<RuntimeException> failure = new AtomicReference<>();
+        try {
+            pool.invoke(new Partition(0, this.vertices.length, (vertex, i) -> {
+                try {
+                    action.accept(vertex, i);
+                } catch (final RuntimeException e) {
+                    failure.compareAndSet(null, e);
+                    throw e;
+                }
+            }));
+        } catch (final RuntimeException e) {
+            throw null == failure.get() ? e : failure.get();
+        }
+    }
+
+    /**
+     * The index that splits the vertices from low to high in two partitions of about the same weight, neither of
+     * which is empty.
+     */
+    private int split(final int low, final int high) {
+        final long half = this.weights[low] + (this.weights[high] - this.weights[low]) / 2;
+        int l = low + 1;
+        int h = high - 1;
+        while (l < h) {
+            final int middle = (l + h) >>> 1;
+            if (this.weights[middle] < half)
+                l = middle + 1;
+            else
+                h = middle;
+        }
+        return l;
+    }
+
+    private class Partition extends RecursiveAction {
+
+        private final int low;
+        private final int high;
+        private final ObjIntConsumer<TinkerVertex> action;
+
+        private Partition(final int low, final int high, final ObjIntConsumer<TinkerVertex> action) {
+            this.low = low;
+            this.high = high;
+            this.action = action;
+        }
+
+        protected void compute() {
+            if (this.high - this.low > 1 && weights[this.high] - weights[this.low] > grain) {
+                final int middle = split(this.low, this.high);
+                invokeAll(new Partition(this.low, middle, this.action), new Partition(middle, this.high, this.action));
+            } else {
+                for (int i = this.low; i < this.high; i++) {
+                    this.action.accept(vertices[i], i);
+                }
+            }
+        }
+    }
+}
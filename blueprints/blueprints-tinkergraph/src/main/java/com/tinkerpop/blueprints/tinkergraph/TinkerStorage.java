@@ -0,0 +1,835 @@
+package com.tinkerpop.blueprints.tinkergraph;
+
+import com.tinkerpop.blueprints.AnnotatedList;
+import com.tinkerpop.blueprints.AnnotatedValue;
+import com.tinkerpop.blueprints.Annotations;
+import com.tinkerpop.blueprints.Direction;
+import com.tinkerpop.blueprints.Edge;
+import com.tinkerpop.blueprints.Element;
+import com.tinkerpop.blueprints.Property;
+import com.tinkerpop.blueprints.Vertex;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Writes a {@link TinkerGraph} to a binary snapshot file and reads it back. The snapshot holds the graph annotations,
+ * the index definitions and then the vertices and the edges in blocks. A block is laid out by column (all ids, then
+ * all labels, then all properties) with the labels and keys of the block in a dictionary. Blocks are independent of
+ * each other so they are encoded and decoded in parallel. Only adding the decoded elements to the graph is
+ * sequential.
+ * <p/>
+ * A snapshot may be followed by deltas (see {@link #delta(TinkerGraph, Collection, Collection)}), each of which takes
+ * the graph from one generation to the next. A delta holds the annotations and the index definitions of the graph,
+ * the ids of the elements removed since the previous generation and the elements added or changed since then, in the
+ * blocks of a snapshot. Once the deltas grow as large as the snapshot, they are merged into a new snapshot (see
+ * {@link #merge(Path)}) one block at a time, so a merge needs memory for the deltas rather than for the graph.
+ * <p/>
+ * Property values of the common primitive types, strings and annotated lists are written natively. Any other value
+ * must be {@link java.io.Serializable} and is written with Java serialization.
+ */
+class TinkerStorage {
+
+    public static final String SNAPSHOT_FILE = "tinkergraph.bin";
+
+    private static final int MAGIC = 0x544B4752;
+    private static final int VERSION = 1;
+    private static final int BLOCK_SIZE = 10000;
+    // the deltas are merged into the snapshot once there are this many, even if they are small
+    private static final int MAX_DELTAS = 16;
+
+    private static final byte STRING = 0, INTEGER = 1, LONG = 2, FLOAT = 3, DOUBLE = 4, BOOLEAN = 5, SHORT = 6,
+            BYTE = 7, ANNOTATED_LIST = 8, SERIALIZED = 9;
+
+    public static boolean exists(final Path directory) {
+        return Files.exists(directory.resolve(SNAPSHOT_FILE)) || !deltas(directory).isEmpty();
+    }
+
+    /**
+     * The generation of the snapshot and the deltas in the directory or 0 if there are none. A {@link TinkerLog} only
+     * applies to the snapshot of its generation.
+     */
+    public static long generation(final Path directory) {
+        final List<Path> deltas = deltas(directory);
+        return Math.max(snapshotGeneration(directory), deltas.isEmpty() ? 0 : deltaGeneration(deltas.get(deltas.size() - 1)));
+    }
+
+    /**
+     * Write the graph to the snapshot file in the directory. The snapshot is written to a temporary file first and
+     * then moved over the previous snapshot so that a failed write never leaves a corrupt snapshot behind. The deltas
+     * that the snapshot is ahead of are deleted.
+     */
+    public static void save(final TinkerGraph graph, final Path directory, final long generation) {
+        try {
+            Files.createDirectories(directory);
+            final Path temp = directory.resolve(SNAPSHOT_FILE + ".tmp");
+            try (final DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp), 1 << 16))) {
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                out.writeLong(generation);
+                writeSchema(out, graph);
+                writeBlocks(out, encode(graph.vertices.values(), Record::of, false));
+                writeBlocks(out, encode(graph.edges.values(), Record::of, true));
+            }
+            Files.move(temp, directory.resolve(SNAPSHOT_FILE), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            deleteDeltas(directory, generation);
+        } catch (final IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Encode the delta of the graph from the previous generation, in which the vertices and the edges with the
+     * provided ids were added, changed or removed. Only those elements are encoded, which is all that needs the graph
+     * to be quiet, and the delta is written with {@link #saveDelta(byte[], Path, long)} afterwards.
+     */
+    public static byte[] delta(final TinkerGraph graph, final Collection<String> vertexIds, final Collection<String> edgeIds) {
+        try {
+            final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            final DataOutputStream out = new DataOutputStream(bytes);
+            writeSchema(out, graph);
+            final List<Element> vertices = new ArrayList<>();
+            final List<Element> edges = new ArrayList<>();
+            writeIds(out, present(graph.vertices, vertexIds, vertices));
+            writeIds(out, present(graph.edges, edgeIds, edges));
+            writeBlocks(out, encode(vertices, Record::of, false));
+            writeBlocks(out, encode(edges, Record::of, true));
+            out.flush();
+            return bytes.toByteArray();
+        } catch (final IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Write a delta encoded by {@link #delta(TinkerGraph, Collection, Collection)} as the delta of the generation.
+     */
+    public static void saveDelta(final byte[] delta, final Path directory, final long generation) {
+        try {
+            Files.createDirectories(directory);
+            final Path temp = directory.resolve(SNAPSHOT_FILE + ".tmp");
+            try (final DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp), 1 << 16))) {
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                out.writeLong(generation);
+                out.write(delta);
+            }
+            Files.move(temp, directory.resolve(SNAPSHOT_FILE + "." + generation), StandardCopyOption.ATOMIC_MOVE);
+        } catch (final IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Whether the deltas in the directory are as large as the snapshot they follow, or too many.
+     */
+    public static boolean needsMerge(final Path directory) {
+        try {
+            final List<Path> deltas = followingDeltas(directory, snapshotGeneration(directory));
+            long size = 0;
+            for (final Path delta : deltas) {
+                size = size + Files.size(delta);
+            }
+            final Path snapshot = directory.resolve(SNAPSHOT_FILE);
+            return !deltas.isEmpty() && (deltas.size() >= MAX_DELTAS || size >= (Files.exists(snapshot) ? Files.size(snapshot) : 0));
+        } catch (final IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Merge the deltas in the directory into a new snapshot of their latest generation. The elements of the deltas
+     * are kept in memory while the snapshot is rewritten one block at a time without reading it into a graph.
+     */
+    public static void merge(final Path directory) {
+        final Path snapshot = directory.resolve(SNAPSHOT_FILE);
+        long generation = snapshotGeneration(directory);
+        final Map<String, Record> vertices = new HashMap<>();
+        final Map<String, Record> edges = new HashMap<>();
+        final Set<String> removedVertices = new HashSet<>();
+        final Set<String> removedEdges = new HashSet<>();
+        final ByteArrayOutputStream schema = new ByteArrayOutputStream();
+        try {
+            final List<Path> deltas = followingDeltas(directory, generation);
+            if (deltas.isEmpty())
+                return;
+            for (final Path delta : deltas) {
+                try (final DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(delta), 1 << 16))) {
+                    readHeader(in, delta);
+                    generation = in.readLong();
+                    // the latest delta has the annotations and the index definitions of the graph
+                    schema.reset();
+                    copySchema(in, new DataOutputStream(schema));
+                    readRemoved(in, vertices, removedVertices);
+                    readRemoved(in, edges, removedEdges);
+                    readRecords(in, vertices, removedVertices, false);
+                    readRecords(in, edges, removedEdges, true);
+                }
+            }
+
+            final Path temp = directory.resolve(SNAPSHOT_FILE + ".tmp");
+            try (final DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp), 1 << 16));
+                 final DataInputStream in = Files.exists(snapshot) ? new DataInputStream(new BufferedInputStream(Files.newInputStream(snapshot), 1 << 16)) : null) {
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                out.writeLong(generation);
+                schema.writeTo(out);
+                if (null != in) {
+                    readHeader(in, snapshot);
+                    in.readLong();
+                    copySchema(in, new DataOutputStream(new ByteArrayOutputStream()));
+                }
+                mergeBlocks(in, out, vertices, removedVertices, false);
+                mergeBlocks(in, out, edges, removedEdges, true);
+            }
+            Files.move(temp, snapshot, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            deleteDeltas(directory, generation);
+        } catch (final IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Read the snapshot file and the deltas that follow it in the directory into the provided graph which is expected
+     * to be empty.
+     */
+    public static void load(final TinkerGraph graph, final Path directory) {
+        long generation = 0;
+        final Path snapshot = directory.resolve(SNAPSHOT_FILE);
+        if (Files.exists(snapshot)) {
+            try (final DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(snapshot), 1 << 16))) {
+                readHeader(in, snapshot);
+                generation = in.readLong();
+                readSchema(in, graph);
+
+                final List<List<TinkerElement>> vertexBlocks = readBlocks(in).parallelStream().map(b -> elements(graph, decode(b, false, graph.symbols), false)).collect(Collectors.toList());
+                for (final List<TinkerElement> block : vertexBlocks) {
+                    for (final TinkerElement vertex : block) {
+                        TinkerHelper.putElement(graph.vertices, vertex);
+                        graph.idGenerator.observe(vertex.id);
+                        vertex.properties.forEach((key, property) -> graph.vertexIndex.autoUpdate(key, property.get(), null, (TinkerVertex) vertex));
+                    }
+                }
+
+                // edges are decoded once all the vertices are in the graph as they reference them
+                final List<List<TinkerElement>> edgeBlocks = readBlocks(in).parallelStream().map(b -> elements(graph, decode(b, true, graph.symbols), true)).collect(Collectors.toList());
+                for (final List<TinkerElement> block : edgeBlocks) {
+                    for (final TinkerElement element : block) {
+                        final TinkerEdge edge = (TinkerEdge) element;
+                        TinkerHelper.putElement(graph.edges, edge);
+                        graph.idGenerator.observe(edge.id);
+                        graph.edgeIndex.autoUpdate(Property.Key.LABEL, edge.label, null, edge);
+                        edge.properties.forEach((key, property) -> graph.edgeIndex.autoUpdate(key, property.get(), null, edge));
+                        TinkerHelper.addOutEdge((TinkerVertex) edge.getVertex(Direction.OUT), edge.label, edge);
+                        TinkerHelper.addInEdge((TinkerVertex) edge.getVertex(Direction.IN), edge.label, edge);
+                    }
+                }
+            } catch (final IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+        for (final Path delta : followingDeltas(directory, generation)) {
+            applyDelta(graph, delta);
+        }
+    }
+
+    ////////////////
+
+    private static void readHeader(final DataInputStream in, final Path file) throws IOException {
+        if (in.readInt() != MAGIC)
+            throw new IOException("The file is not a TinkerGraph snapshot: " + file);
+        final int version = in.readInt();
+        if (version != VERSION)
+            throw new IOException("The snapshot version is not supported: " + version);
+    }
+
+    private static long snapshotGeneration(final Path directory) {
+        final Path snapshot = directory.resolve(SNAPSHOT_FILE);
+        if (!Files.exists(snapshot))
+            return 0;
+        try (final DataInputStream in = new DataInputStream(Files.newInputStream(snapshot))) {
+            readHeader(in, snapshot);
+            return in.readLong();
+        } catch (final IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * The deltas in the directory ordered by generation, including those that a snapshot is already ahead of.
+     */
+    private static List<Path> deltas(final Path directory) {
+        if (!Files.isDirectory(directory))
+            return Collections.emptyList();
+        final String prefix = SNAPSHOT_FILE + ".";
+        try (final Stream<Path> files = Files.list(directory)) {
+            return files.filter(f -> f.getFileName().toString().startsWith(prefix) && f.getFileName().toString().substring(prefix.length()).matches("[0-9]+"))
+                    .sorted(Comparator.comparingLong(TinkerStorage::deltaGeneration))
+                    .collect(Collectors.toList());
+        } catch (final IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * The deltas that follow the snapshot of the generation, which must have every generation after it.
+     */
+    private static List<Path> followingDeltas(final Path directory, final long generation) {
+        final List<Path> deltas = deltas(directory).stream().filter(d -> deltaGeneration(d) > generation).collect(Collectors.toList());
+        for (int i = 0; i < deltas.size(); i++) {
+            if (deltaGeneration(deltas.get(i)) != generation + i + 1)
+                throw new IllegalStateException(String.format("The delta %s does not follow the snapshot of generation %s", deltas.get(i), generation + i));
+        }
+        return deltas;
+    }
+
+    private static long deltaGeneration(final Path delta) {
+        final String name = delta.getFileName().toString();
+        return Long.parseLong(name.substring(name.lastIndexOf('.') + 1));
+    }
+
+    private static void deleteDeltas(final Path directory, final long generation) throws IOException {
+        for (final Path delta : deltas(directory)) {
+            if (deltaGeneration(delta) <= generation)
+                Files.delete(delta);
+        }
+    }
+
+    private static void applyDelta(final TinkerGraph graph, final Path delta) {
+        try (final DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(delta), 1 << 16))) {
+            readHeader(in, delta);
+            in.readLong();
+            readSchema(in, graph);
+            for (final String id : readIds(in)) {
+                final Vertex vertex = graph.vertices.get(id);
+                if (null != vertex)
+                    vertex.remove();
+            }
+            for (final String id : readIds(in)) {
+                final Edge edge = graph.edges.get(id);
+                if (null != edge)
+                    edge.remove();
+            }
+            for (final byte[] block : readBlocks(in)) {
+                for (final Record record : decode(block, false, graph.symbols)) {
+                    TinkerVertex vertex = (TinkerVertex) graph.vertices.get(record.id);
+                    // a vertex that was removed and added again may have another label
+                    if (null != vertex && !vertex.label.equals(record.label)) {
+                        vertex.remove();
+                        vertex = null;
+                    }
+                    if (null == vertex)
+                        vertex = (TinkerVertex) TinkerHelper.addVertex(graph, Property.Key.ID, record.id, Property.Key.LABEL, record.label);
+                    setProperties(vertex, record);
+                }
+            }
+            for (final byte[] block : readBlocks(in)) {
+                for (final Record record : decode(block, true, graph.symbols)) {
+                    TinkerEdge edge = (TinkerEdge) graph.edges.get(record.id);
+                    if (null != edge && !(edge.label.equals(record.label) && edge.getVertex(Direction.OUT).getId().equals(record.outId) && edge.getVertex(Direction.IN).getId().equals(record.inId))) {
+                        edge.remove();
+                        edge = null;
+                    }
+                    if (null == edge) {
+                        final Vertex outVertex = graph.vertices.get(record.outId);
+                        final Vertex inVertex = graph.vertices.get(record.inId);
+                        if (null == outVertex || null == inVertex)
+                            throw new IllegalStateException(String.format("The delta %s adds the edge %s between vertices that are not in the graph: %s, %s", delta, record.id, record.outId, record.inId));
+                        edge = (TinkerEdge) TinkerHelper.addEdge(graph, (TinkerVertex) outVertex, (TinkerVertex) inVertex, record.label, Property.Key.ID, record.id);
+                    }
+                    setProperties(edge, record);
+                }
+            }
+        } catch (final IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static void setProperties(final TinkerElement element, final Record record) {
+        final Set<String> keys = new HashSet<>(Arrays.asList(record.keys));
+        for (final Property property : new ArrayList<>(element.properties.values())) {
+            if (!keys.contains(property.getKey()))
+                property.remove();
+        }
+        for (int i = 0; i < record.keys.length; i++) {
+            element.setProperty(record.keys[i], record.values[i]);
+        }
+    }
+
+    private static void writeSchema(final DataOutputStream out, final TinkerGraph graph) throws IOException {
+        final Set<String> annotationKeys = graph.annotations().getKeys();
+        out.writeInt(annotationKeys.size());
+        for (final String key : annotationKeys) {
+            writeString(out, key);
+            writeValue(out, graph.annotations().get(key).get());
+        }
+
+        writeIndex(out, graph.vertexIndex);
+        writeIndex(out, graph.edgeIndex);
+        final Map<String, Set<String>> centricKeys = graph.vertexCentricIndex.getIndexedKeys();
+        out.writeInt(centricKeys.values().stream().mapToInt(Set::size).sum());
+        for (final Map.Entry<String, Set<String>> entry : centricKeys.entrySet()) {
+            for (final String key : entry.getValue()) {
+                writeString(out, entry.getKey());
+                writeString(out, key);
+            }
+        }
+    }
+
+    /**
+     * Read the annotations and the index definitions into the graph. The indices that are not defined are dropped.
+     */
+    private static void readSchema(final DataInputStream in, final TinkerGraph graph) throws IOException {
+        final int annotations = in.readInt();
+        for (int i = 0; i < annotations; i++) {
+            graph.annotations().set(readString(in), readValue(in));
+        }
+
+        readIndex(in, graph.vertexIndex);
+        readIndex(in, graph.edgeIndex);
+        final Map<String, Set<String>> centricKeys = new HashMap<>();
+        final int count = in.readInt();
+        for (int i = 0; i < count; i++) {
+            final String label = readString(in);
+            final String key = readString(in);
+            graph.vertexCentricIndex.createKeyIndex(label, key);
+            centricKeys.computeIfAbsent(label, l -> new HashSet<>()).add(key);
+        }
+        graph.vertexCentricIndex.getIndexedKeys().forEach((label, keys) -> new ArrayList<>(keys).stream()
+                .filter(key -> !centricKeys.getOrDefault(label, Collections.emptySet()).contains(key))
+                .forEach(key -> graph.vertexCentricIndex.dropKeyIndex(label, key)));
+    }
+
+    private static void copySchema(final DataInputStream in, final DataOutputStream out) throws IOException {
+        final int annotations = in.readInt();
+        out.writeInt(annotations);
+        for (int i = 0; i < annotations; i++) {
+            writeString(out, readString(in));
+            writeValue(out, readValue(in));
+        }
+        for (int index = 0; index < 2; index++) {
+            final int keys = in.readInt();
+            out.writeInt(keys);
+            for (int i = 0; i < keys; i++) {
+                writeString(out, readString(in));
+                out.writeBoolean(in.readBoolean());
+            }
+        }
+        final int centricKeys = in.readInt();
+        out.writeInt(centricKeys);
+        for (int i = 0; i < centricKeys * 2; i++) {
+            writeString(out, readString(in));
+        }
+    }
+
+    private static void writeIndex(final DataOutputStream out, final TinkerIndex<?> index) throws IOException {
+        out.writeInt(index.getIndexedKeys().size());
+        for (final String key : index.getIndexedKeys()) {
+            writeString(out, key);
+            out.writeBoolean(index.isSorted(key));
+        }
+    }
+
+    private static void readIndex(final DataInputStream in, final TinkerIndex<?> index) throws IOException {
+        final Set<String> keys = new HashSet<>();
+        final int count = in.readInt();
+        for (int i = 0; i < count; i++) {
+            final String key = readString(in);
+            index.createKeyIndex(key, in.readBoolean());
+            keys.add(key);
+        }
+        new ArrayList<>(index.getIndexedKeys()).stream().filter(key -> !keys.contains(key)).forEach(index::dropKeyIndex);
+    }
+
+    /**
+     * Collects the elements with the provided ids that are in the graph and returns the ids of those that are not.
+     */
+    private static List<String> present(final Map<String, ? extends Element> elements, final Collection<String> ids, final List<Element> present) {
+        final List<String> removed = new ArrayList<>();
+        for (final String id : ids) {
+            final Element element = elements.get(id);
+            if (null == element)
+                removed.add(id);
+            else
+                present.add(element);
+        }
+        return removed;
+    }
+
+    private static void writeIds(final DataOutputStream out, final List<String> ids) throws IOException {
+        out.writeInt(ids.size());
+        for (final String id : ids) {
+            writeString(out, id);
+        }
+    }
+
+    private static List<String> readIds(final DataInputStream in) throws IOException {
+        final int size = in.readInt();
+        final List<String> ids = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            ids.add(readString(in));
+        }
+        return ids;
+    }
+
+    private static void readRemoved(final DataInputStream in, final Map<String, Record> records, final Set<String> removed) throws IOException {
+        for (final String id : readIds(in)) {
+            records.remove(id);
+            removed.add(id);
+        }
+    }
+
+    private static void readRecords(final DataInputStream in, final Map<String, Record> records, final Set<String> removed, final boolean edges) throws IOException {
+        for (final byte[] block : readBlocks(in)) {
+            for (final Record record : decode(block, edges, null)) {
+                records.put(record.id, record);
+                removed.remove(record.id);
+            }
+        }
+    }
+
+    /**
+     * Copy the blocks of the snapshot, if there is one, without the removed elements and the elements of the
+     * records, and then write the records in blocks of their own.
+     */
+    private static void mergeBlocks(final DataInputStream in, final DataOutputStream out, final Map<String, Record> records, final Set<String> removed, final boolean edges) throws IOException {
+        final List<byte[]> added = encode(records.values(), r -> r, edges);
+        final int count = null == in ? 0 : in.readInt();
+        out.writeInt(count + added.size());
+        for (int i = 0; i < count; i++) {
+            final byte[] bytes = new byte[in.readInt()];
+            in.readFully(bytes);
+            final List<Record> block = decode(bytes, edges, null).stream()
+                    .filter(r -> !records.containsKey(r.id) && !removed.contains(r.id))
+                    .collect(Collectors.toList());
+            final byte[] encoded = encode(block, edges);
+            out.writeInt(encoded.length);
+            out.write(encoded);
+        }
+        for (final byte[] bytes : added) {
+            out.writeInt(bytes.length);
+            out.write(bytes);
+        }
+    }
+
+    /**
+     * Encode the items as the records of independent blocks in parallel.
+     */
+    private static <T> List<byte[]> encode(final Collection<? extends T> items, final Function<T, Record> record, final boolean edges) {
+        final List<List<T>> blocks = new ArrayList<>();
+        final Iterator<? extends T> iterator = items.iterator();
+        while (iterator.hasNext()) {
+            final List<T> block = new ArrayList<>(BLOCK_SIZE);
+            while (iterator.hasNext() && block.size() < BLOCK_SIZE) {
+                block.add(iterator.next());
+            }
+            blocks.add(block);
+        }
+        return blocks.parallelStream().map(b -> encode(b.stream().map(record).collect(Collectors.toList()), edges)).collect(Collectors.toList());
+    }
+
+    private static void writeBlocks(final DataOutputStream out, final List<byte[]> blocks) throws IOException {
+        out.writeInt(blocks.size());
+        for (final byte[] bytes : blocks) {
+            out.writeInt(bytes.length);
+            out.write(bytes);
+        }
+    }
+
+    private static List<byte[]> readBlocks(final DataInputStream in) throws IOException {
+        final int count = in.readInt();
+        final List<byte[]> blocks = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            final byte[] bytes = new byte[in.readInt()];
+            in.readFully(bytes);
+            blocks.add(bytes);
+        }
+        return blocks;
+    }
+
+    private static byte[] encode(final List<Record> records, final boolean edges) {
+        try {
+            final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            final DataOutputStream out = new DataOutputStream(bytes);
+
+            final Map<String, Integer> dictionary = new HashMap<>();
+            for (final Record record : records) {
+                dictionary.putIfAbsent(record.label, dictionary.size());
+                for (final String key : record.keys) {
+                    dictionary.putIfAbsent(key, dictionary.size());
+                }
+            }
+            final String[] strings = new String[dictionary.size()];
+            dictionary.forEach((string, index) -> strings[index] = string);
+
+            out.writeInt(records.size());
+            out.writeInt(strings.length);
+            for (final String string : strings) {
+                writeString(out, string);
+            }
+            for (final Record record : records) {
+                writeString(out, record.id);
+            }
+            for (final Record record : records) {
+                out.writeInt(dictionary.get(record.label));
+            }
+            if (edges) {
+                for (final Record record : records) {
+                    writeString(out, record.outId);
+                }
+                for (final Record record : records) {
+                    writeString(out, record.inId);
+                }
+            }
+            for (final Record record : records) {
+                out.writeInt(record.keys.length);
+            }
+            for (final Record record : records) {
+                for (int i = 0; i < record.keys.length; i++) {
+                    out.writeInt(dictionary.get(record.keys[i]));
+                    writeValue(out, record.values[i]);
+                }
+            }
+            out.flush();
+            return bytes.toByteArray();
+        } catch (final IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Decode the records of a block, interning their labels and keys if symbols are provided.
+     */
+    private static List<Record> decode(final byte[] bytes, final boolean edges, final TinkerSymbols symbols) {
+        try {
+            final DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes));
+            final int size = in.readInt();
+            final String[] strings = new String[in.readInt()];
+            for (int i = 0; i < strings.length; i++) {
+                strings[i] = null == symbols ? readString(in) : symbols.intern(readString(in));
+            }
+            final Record[] records = new Record[size];
+            for (int i = 0; i < size; i++) {
+                records[i] = new Record(readString(in));
+            }
+            for (int i = 0; i < size; i++) {
+                records[i].label = strings[in.readInt()];
+            }
+            if (edges) {
+                for (int i = 0; i < size; i++) {
+                    records[i].outId = readString(in);
+                }
+                for (int i = 0; i < size; i++) {
+                    records[i].inId = readString(in);
+                }
+            }
+            for (int i = 0; i < size; i++) {
+                final int count = in.readInt();
+                records[i].keys = new String[count];
+                records[i].values = new Object[count];
+            }
+            for (int i = 0; i < size; i++) {
+                for (int j = 0; j < records[i].keys.length; j++) {
+                    records[i].keys[j] = strings[in.readInt()];
+                    records[i].values[j] = readValue(in);
+                }
+            }
+            return Arrays.asList(records);
+        } catch (final IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static List<TinkerElement> elements(final TinkerGraph graph, final List<Record> records, final boolean edges) {
+        final List<TinkerElement> elements = new ArrayList<>(records.size());
+        for (final Record record : records) {
+            final TinkerElement element = edges ?
+                    new TinkerEdge(record.id, graph.vertices.get(record.outId), record.label, graph.vertices.get(record.inId), graph) :
+                    new TinkerVertex(record.id, record.label, graph);
+            for (int i = 0; i < record.keys.length; i++) {
+                element.putProperty(new TinkerProperty<>(element, record.keys[i], record.values[i]));
+            }
+            elements.add(element);
+        }
+        return elements;
+    }
+
+    /**
+     * An element as it is written to a block: its id, its label, the ids of its vertices if it is an edge and its
+     * properties.
+     */
+    private static class Record {
+
+        private final String id;
+        private String label;
+        private String outId;
+        private String inId;
+        private String[] keys;
+        private Object[] values;
+
+        private Record(final String id) {
+            this.id = id;
+        }
+
+        private static Record of(final Element element) {
+            final TinkerElement e = (TinkerElement) element;
+            final Record record = new Record(e.id);
+            record.label = e.label;
+            if (e instanceof Edge) {
+                record.outId = (String) ((Edge) e).getVertex(Direction.OUT).getId();
+                record.inId = (String) ((Edge) e).getVertex(Direction.IN).getId();
+            }
+            final List<String> keys = new ArrayList<>();
+            final List<Object> values = new ArrayList<>();
+            for (final Map.Entry<String, Property> entry : e.properties.entrySet()) {
+                keys.add(entry.getKey());
+                values.add(entry.getValue().get());
+            }
+            record.keys = keys.toArray(new String[keys.size()]);
+            record.values = values.toArray();
+            return record;
+        }
+    }
+
+    static void writeValue(final DataOutputStream out, final Object value) throws IOException {
+        if (value instanceof String) {
+            out.writeByte(STRING);
+            writeString(out, (String) value);
+        } else if (value instanceof Integer) {
+            out.writeByte(INTEGER);
+            out.writeInt((Integer) value);
+        } else if (value instanceof Long) {
+            out.writeByte(LONG);
+            out.writeLong((Long) value);
+        } else if (value instanceof Float) {
+            out.writeByte(FLOAT);
+            out.writeFloat((Float) value);
+        } else if (value instanceof Double) {
+            out.writeByte(DOUBLE);
+            out.writeDouble((Double) value);
+        } else if (value instanceof Boolean) {
+            out.writeByte(BOOLEAN);
+            out.writeBoolean((Boolean) value);
+        } else if (value instanceof Short) {
+            out.writeByte(SHORT);
+            out.writeShort((Short) value);
+        } else if (value instanceof Byte) {
+            out.writeByte(BYTE);
+            out.writeByte((Byte) value);
+        } else if (value instanceof TinkerAnnotatedList) {
+            out.writeByte(ANNOTATED_LIST);
+            final TinkerAnnotatedList<?> annotatedList = (TinkerAnnotatedList) value;
+            out.writeInt(annotatedList.size());
+            for (final Iterator<? extends AnnotatedValue> annotatedValues = annotatedList.iterator(); annotatedValues.hasNext(); ) {
+                final AnnotatedValue annotatedValue = annotatedValues.next();
+                writeValue(out, annotatedValue.getValue());
+                writeAnnotations(out, annotatedValue.getAnnotations());
+            }
+        } else {
+            out.writeByte(SERIALIZED);
+            final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            try (final ObjectOutputStream objects = new ObjectOutputStream(bytes)) {
+                objects.writeObject(value);
+            }
+            out.writeInt(bytes.size());
+            bytes.writeTo(out);
+        }
+    }
+
+    static void writeAnnotations(final DataOutputStream out, final Annotations annotations) throws IOException {
+        out.writeInt(annotations.getKeys().size());
+        for (final String key : annotations.getKeys()) {
+            writeString(out, key);
+            writeValue(out, annotations.get(key).get());
+        }
+    }
+
+    /**
+     * Read the annotations written by {@link #writeAnnotations} as key/values.
+     */
+    static Object[] readAnnotations(final DataInputStream in) throws IOException {
+        final Object[] keyValues = new Object[in.readInt() * 2];
+        for (int i = 0; i < keyValues.length; i = i + 2) {
+            keyValues[i] = readString(in);
+            keyValues[i + 1] = readValue(in);
+        }
+        return keyValues;
+    }
+
+    static Object readValue(final DataInputStream in) throws IOException {
+        final byte type = in.readByte();
+        switch (type) {
+            case STRING:
+                return readString(in);
+            case INTEGER:
+                return in.readInt();
+            case LONG:
+                return in.readLong();
+            case FLOAT:
+                return in.readFloat();
+            case DOUBLE:
+                return in.readDouble();
+            case BOOLEAN:
+                return in.readBoolean();
+            case SHORT:
+                return in.readShort();
+            case BYTE:
+                return in.readByte();
+            case ANNOTATED_LIST:
+                final AnnotatedList<Object> annotatedList = new TinkerAnnotatedList<>();
+                final int size = in.readInt();
+                for (int i = 0; i < size; i++) {
+                    annotatedList.addValue(readValue(in), readAnnotations(in));
+                }
+                return annotatedList;
+            case SERIALIZED:
+                final byte[] bytes = new byte[in.readInt()];
+                in.readFully(bytes);
+                try (final ObjectInputStream objects = new ObjectInputStream(new ByteArrayInputStream(bytes))) {
+                    return objects.readObject();
+                } catch (final ClassNotFoundException e) {
+                    throw new IOException(e);
+                }
+            default:
+                throw new IOException("The value type of the snapshot is not supported: " + type);
+        }
+    }
+
+    static void writeString(final DataOutputStream out, final String string) throws IOException {
+        final byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    static String readString(final DataInputStream in) throws IOException {
+        final byte[] bytes = new byte[in.readInt()];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
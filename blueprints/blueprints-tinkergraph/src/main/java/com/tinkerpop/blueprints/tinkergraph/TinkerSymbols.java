@@ -0,0 +1,76 @@
+package com.tinkerpop.blueprints.tinkergraph;
+
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The labels and property keys of a {@link TinkerGraph}. Each distinct string is kept once and numbered by a small
+ * id in the order it is first seen, so that the elements of the graph share a single instance of every label and key
+ * and the adjacency of a vertex compares labels by id. Symbols are never removed. Many threads may add symbols at
+ * once.
+ */
+class TinkerSymbols implements Serializable {
+
+    private static final int[] NONE = new int[0];
+
+    private final Map<String, Integer> ids = new ConcurrentHashMap<>();
+    private volatile String[] symbols = new String[16];
+    private int size = 0;
+
+    /**
+     * Get the id of the symbol, adding the symbol if it is new.
+     */
+    public int getId(final String symbol) {
+        final Integer id = this.ids.get(symbol);
+        return null == id ? this.add(symbol) : id;
+    }
+
+    /**
+     * Get the id of the symbol or -1 if the symbol has never been added.
+     */
+    public int lookup(final String symbol) {
+        return this.ids.getOrDefault(symbol, -1);
+    }
+
+    /**
+     * Get the ids of the symbols, with -1 for those that have never been added.
+     */
+    public int[] lookup(final String... symbols) {
+        if (symbols.length == 0)
+            return NONE;
+        final int[] ids = new int[symbols.length];
+        for (int i = 0; i < symbols.length; i++) {
+            ids[i] = this.lookup(symbols[i]);
+        }
+        return ids;
+    }
+
+    public String get(final int id) {
+        return this.symbols[id];
+    }
+
+    /**
+     * Get the instance of the symbol that is shared by the graph.
+     */
+    public String intern(final String symbol) {
+        return this.symbols[this.getId(symbol)];
+    }
+
+    public int size() {
+        return this.ids.size();
+    }
+
+    private synchronized int add(final String symbol) {
+        final Integer id = this.ids.get(symbol);
+        if (null != id)
+            return id;
+        if (this.size == this.symbols.length)
+            this.symbols = Arrays.copyOf(this.symbols, this.size << 1);
+        // the symbol is in the array before its id is published to the readers of the map
+        this.symbols[this.size] = symbol;
+        this.ids.put(symbol, this.size);
+        return this.size++;
+    }
+}
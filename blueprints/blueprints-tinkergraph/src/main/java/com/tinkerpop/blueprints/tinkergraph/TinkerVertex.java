@@ -12,17 +12,16 @@ import com.tinkerpop.blueprints.query.VertexQuery;
 import com.tinkerpop.blueprints.util.ElementHelper;
 import com.tinkerpop.blueprints.util.StringFactory;
 
-import java.util.HashMap;
-import java.util.Map;
-import java.util.Set;
+import java.util.ArrayList;
+import java.util.List;
 
 /**
  * @author Marko A. Rodriguez (http://markorodriguez.com)
  */
 class TinkerVertex extends TinkerElement implements Vertex {
 
-    protected Map<String, Set<Edge>> outEdges = new HashMap<>();
-    protected Map<String, Set<Edge>> inEdges = new HashMap<>();
+    protected TinkerAdjacency outEdges = this.graph.concurrent ? new TinkerAdjacency.Concurrent(Direction.OUT, this.graph.symbols) : new TinkerAdjacency(Direction.OUT, this.graph.symbols);
+    protected TinkerAdjacency inEdges = this.graph.concurrent ? new TinkerAdjacency.Concurrent(Direction.IN, this.graph.symbols) : new TinkerAdjacency(Direction.IN, this.graph.symbols);
 
     private final Strategy.Context<Vertex> strategyContext = new Strategy.Context<Vertex>(this.graph, this);
 
@@ -30,14 +29,15 @@ class TinkerVertex extends TinkerElement implements Vertex {
         super(id, label, graph);
         this.state = TinkerGraphComputer.State.STANDARD;
         this.centricId = id;
+        if (!graph.vertexColumns.isEmpty())
+            this.properties = new TinkerColumnProperties(this, graph.vertexColumns, this.properties);
     }
 
     private TinkerVertex(final TinkerVertex vertex, final TinkerGraphComputer.State state, final String centricId, final TinkerVertexMemory annotationMemory) {
-        super(vertex.id, vertex.label, vertex.graph);
+        super(vertex);
         this.state = state;
         this.outEdges = vertex.outEdges;
         this.inEdges = vertex.inEdges;
-        this.properties = vertex.properties;
         this.vertexMemory = annotationMemory;
         this.centricId = centricId;
     }
@@ -45,13 +45,23 @@ class TinkerVertex extends TinkerElement implements Vertex {
     public <V> void setProperty(final String key, final V value) {
         ElementHelper.validateProperty(key, value);
         if (TinkerGraphComputer.State.STANDARD == this.state) {
-            final Property oldProperty = super.getProperty(key);
-            if (value == AnnotatedList.make()) {
-                if (!this.properties.containsKey(key) || !(this.properties.get(key) instanceof AnnotatedList))
-                    this.properties.put(key, new TinkerProperty<>(this, key, new TinkerAnnotatedList<>()));
-            } else
-                this.properties.put(key, new TinkerProperty<>(this, key, value));
-            this.graph.vertexIndex.autoUpdate(key, value, oldProperty.isPresent() ? oldProperty.get() : null, this);
+            final TinkerLog log = TinkerLog.begin(this.graph);
+            try {
+                // the old value, the new value and the index are updated together so that the index has no stale values
+                synchronized (this) {
+                    final Property oldProperty = super.getProperty(key);
+                    if (value == AnnotatedList.make()) {
+                        if (!this.properties.containsKey(key) || !(this.properties.get(key) instanceof AnnotatedList))
+                            this.putProperty(new TinkerProperty<>(this, key, new TinkerAnnotatedList<>()));
+                    } else
+                        this.putProperty(new TinkerProperty<>(this, key, value));
+                    if (null != log)
+                        log.setProperty(this, key, this.properties.get(key).get());
+                    this.graph.vertexIndex.autoUpdate(key, this.properties.get(key).get(), oldProperty.isPresent() ? oldProperty.get() : null, this);
+                }
+            } finally {
+                TinkerLog.end(log);
+            }
         } else if (TinkerGraphComputer.State.CENTRIC == this.state) {
             if (this.vertexMemory.getComputeKeys().containsKey(key))
                 this.vertexMemory.setProperty(this, key, value);
@@ -91,14 +101,25 @@ class TinkerVertex extends TinkerElement implements Vertex {
         this.graph.strategy().compose(
                 s -> s.getRemoveVertexStrategy(strategyContext),
                 () -> {
-                    if (!graph.vertices.containsKey(this.id))
-                        throw Element.Exceptions.elementHasAlreadyBeenRemovedOrDoesNotExist(Vertex.class, this.id);
+                    final TinkerLog log = TinkerLog.begin(graph);
+                    try {
+                        // removing the vertex from the graph first ensures that only one of many concurrent removals proceeds
+                        if (!TinkerHelper.removeElement(log, graph.vertices, this))
+                            throw Element.Exceptions.elementHasAlreadyBeenRemovedOrDoesNotExist(Vertex.class, this.id);
 
-                    this.query().direction(Direction.BOTH).edges().forEach(Edge::remove);
-                    this.getProperties().clear();
-                    graph.vertexIndex.removeElement(this);
-                    graph.vertices.remove(this.id);
-                    return null;
+                        final List<Edge> edges = new ArrayList<>();
+                        this.query().direction(Direction.BOTH).edges().forEach(edges::add);
+                        edges.forEach(Edge::remove);
+                        // the index is updated by the values of the properties so they are cleared afterwards
+                        synchronized (this) {
+                            graph.vertexIndex.removeElement(this);
+                            graph.vertexColumns.unregister(this);
+                            this.properties.clear();
+                        }
+                        return null;
+                    } finally {
+                        TinkerLog.end(log);
+                    }
                 }).get();
     }
 
@@ -0,0 +1,126 @@
+package com.tinkerpop.blueprints.tinkergraph;
+
+import com.tinkerpop.blueprints.Direction;
+import com.tinkerpop.blueprints.Graph;
+import com.tinkerpop.blueprints.query.util.HasContainer;
+
+import java.io.Serializable;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A vertex-centric index sorts the incident edges of every vertex that have a particular label by the value of a
+ * particular property key. The edges are sorted in place in the {@link TinkerAdjacency} of each vertex. This class
+ * keeps track of the indexed label/key pairs and maintains the adjacencies as edge properties change. A
+ * {@link TinkerVertexQuery} with a range has-container (see {@link TinkerRange}) on an indexed key is answered with a
+ * range scan.
+ * <p/>
+ * The edges of a label can only be sorted by one key, the first key indexed for the label. Range queries on any
+ * other indexed key of the label are answered by a scan until the sort key is dropped.
+ */
+class TinkerVertexCentricIndex implements Serializable {
+
+    private final Map<String, Set<String>> indexedKeys = new ConcurrentHashMap<>();
+    private final Map<String, String> sortKeys = new ConcurrentHashMap<>();
+    private final TinkerGraph graph;
+
+    public TinkerVertexCentricIndex(final TinkerGraph graph) {
+        this.graph = graph;
+    }
+
+    public boolean isIndexed(final String label, final String key) {
+        final Set<String> keys = this.indexedKeys.get(label);
+        return null != keys && keys.contains(key);
+    }
+
+    /**
+     * The key the edges of the label are sorted by or null if the label is not indexed.
+     */
+    public String getSortKey(final String label) {
+        return this.sortKeys.get(label);
+    }
+
+    public Set<String> getIndexedKeys(final String label) {
+        final Set<String> keys = this.indexedKeys.get(label);
+        return null == keys ? Collections.emptySet() : Collections.unmodifiableSet(keys);
+    }
+
+    public Map<String, Set<String>> getIndexedKeys() {
+        return Collections.unmodifiableMap(this.indexedKeys);
+    }
+
+    public void createKeyIndex(final String label, final String key) {
+        if (null == label)
+            throw Graph.Exceptions.argumentCanNotBeNull("label");
+        if (null == key)
+            throw Graph.Exceptions.argumentCanNotBeNull("key");
+        if (key.isEmpty())
+            throw new IllegalArgumentException("The key for the index cannot be an empty string");
+
+        if (this.isIndexed(label, key))
+            return;
+        this.indexedKeys.computeIfAbsent(label, l -> ConcurrentHashMap.newKeySet()).add(key);
+        if (null == this.sortKeys.putIfAbsent(label, key))
+            this.sort(label, key);
+    }
+
+    public void dropKeyIndex(final String label, final String key) {
+        if (!this.isIndexed(label, key))
+            return;
+        final Set<String> keys = this.indexedKeys.get(label);
+        keys.remove(key);
+        if (keys.isEmpty())
+            this.indexedKeys.remove(label);
+        if (key.equals(this.sortKeys.get(label))) {
+            // the edges are sorted by the next indexed key of the label, if any
+            final String sortKey = keys.stream().findFirst().orElse(null);
+            if (null == sortKey)
+                this.sortKeys.remove(label);
+            else {
+                this.sortKeys.put(label, sortKey);
+                this.sort(label, sortKey);
+            }
+        }
+    }
+
+    /**
+     * Moves the edge within the adjacencies of its vertices after the value of the key was set or removed.
+     */
+    public void autoUpdate(final String key, final TinkerEdge edge) {
+        if (key.equals(this.sortKeys.get(edge.label))) {
+            // edges are sorted once they are added to the adjacency of their vertices
+            ((TinkerVertex) edge.getVertex(Direction.OUT)).outEdges.update(edge);
+            ((TinkerVertex) edge.getVertex(Direction.IN)).inEdges.update(edge);
+        }
+    }
+
+    private void sort(final String label, final String key) {
+        this.graph.vertices.values().forEach(v -> {
+            ((TinkerVertex) v).outEdges.sort(label, key);
+            ((TinkerVertex) v).inEdges.sort(label, key);
+        });
+    }
+
+    /**
+     * Determines the range of values to scan for a query over the provided labels. A range can only be used if the
+     * edges of every label are sorted by the key. Returns null if no has-container can be answered by the index.
+     */
+    public TinkerRange getRange(final String[] labels, final List<HasContainer> hasContainers) {
+        if (labels.length == 0 || hasContainers.isEmpty() || this.indexedKeys.isEmpty())
+            return null;
+        for (final HasContainer hasContainer : hasContainers) {
+            if (!TinkerRange.isRangePredicate(hasContainer))
+                continue;
+            boolean indexed = true;
+            for (final String label : labels) {
+                indexed = indexed && hasContainer.key.equals(this.sortKeys.get(label));
+            }
+            if (indexed)
+                return TinkerRange.of(hasContainer.key, hasContainers);
+        }
+        return null;
+    }
+}
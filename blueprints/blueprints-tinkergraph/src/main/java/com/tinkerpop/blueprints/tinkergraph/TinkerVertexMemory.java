@@ -7,88 +7,170 @@ import com.tinkerpop.blueprints.computer.VertexProgram;
 import com.tinkerpop.blueprints.computer.VertexSystemMemory;
 import com.tinkerpop.blueprints.computer.util.VertexMemoryHelper;
 
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
+ * The values of the compute keys are kept in a column per key, indexed by an ordinal of the element. The vertices of
+ * the graph are numbered when the computation is submitted (see {@link #setVertices(List)}) and any other element is
+ * numbered the first time one of its compute keys is set. The clone of a vertex that is executed carries its ordinal,
+ * so that only the other elements and the vertices that are read from the result are looked up by id. Under {@link GraphComputer.Isolation#BSP} the
+ * variable keys have two sets of columns, the ones read in an iteration and the ones written, which are swapped and
+ * cleared by {@link #completeIteration()}.
+ *
  * @author Marko A. Rodriguez (http://markorodriguez.com)
  */
 public class TinkerVertexMemory implements VertexSystemMemory {
 
     protected Map<String, VertexProgram.KeyType> computeKeys;
     protected final GraphComputer.Isolation isolation;
-    private Map<Object, Map<String, Object>> getMap;
-    private Map<Object, Map<String, Object>> setMap;
-    private Map<Object, Map<String, Object>> constantMap;
+    private final Map<Object, Integer> ordinals = new ConcurrentHashMap<>();
+    private final AtomicInteger size = new AtomicInteger(0);
+    private final Map<String, Integer> slots = new HashMap<>();
+    private Column[] getColumns = new Column[0];
+    private Column[] setColumns = new Column[0];
+    private Column[] constantColumns = new Column[0];
 
     public TinkerVertexMemory(final GraphComputer.Isolation isolation) {
         this.isolation = isolation;
-        this.constantMap = new HashMap<>();
-        if (this.isolation.equals(GraphComputer.Isolation.BSP)) {
-            this.getMap = new HashMap<>();
-            this.setMap = new HashMap<>();
-        } else {
-            this.getMap = this.setMap = new HashMap<>();
-        }
     }
 
     public void setComputeKeys(final Map<String, VertexProgram.KeyType> computeKeys) {
         this.computeKeys = computeKeys;
+        this.slots.clear();
+        computeKeys.keySet().forEach(key -> this.slots.put(key, this.slots.size()));
+        this.getColumns = columns(this.slots.size());
+        this.setColumns = this.isolation.equals(GraphComputer.Isolation.BSP) ? columns(this.slots.size()) : this.getColumns;
+        this.constantColumns = columns(this.slots.size());
     }
 
     public Map<String, VertexProgram.KeyType> getComputeKeys() {
         return this.computeKeys;
     }
 
+    /**
+     * Number the vertices in the order provided so that their values are laid out in that order, and return their
+     * ordinals in that order.
+     */
+    protected int[] setVertices(final List<? extends Element> vertices) {
+        final int[] ordinals = new int[vertices.size()];
+        for (int i = 0; i < ordinals.length; i++) {
+            ordinals[i] = this.getOrdinal(vertices.get(i));
+        }
+        return ordinals;
+    }
+
     public void completeIteration() {
-        this.getMap = this.setMap;
-        this.setMap = new HashMap<>();
+        if (this.getColumns == this.setColumns)
+            return;
+        final Column[] columns = this.getColumns;
+        this.getColumns = this.setColumns;
+        this.setColumns = columns;
+        for (final Column column : this.setColumns) {
+            column.clear();
+        }
     }
 
     public <V> void setProperty(final Element element, final String key, final V value) {
         VertexMemoryHelper.validateComputeKeyValue(this, key, value);
+        final int ordinal = this.getOrdinal(element);
+        final int slot = this.slots.get(key);
+        if (isConstantKey(key)) {
+            if (null != this.constantColumns[slot].get(ordinal))
+                throw GraphComputer.Exceptions.constantComputeKeyHasAlreadyBeenSet(key, element.getId().toString());
+            this.constantColumns[slot].set(ordinal, value);
+        } else
+            this.setColumns[slot].set(ordinal, value);
+    }
+
+    public <V> Property<V> getProperty(final Element element, final String key) {
+        final Integer ordinal = this.findOrdinal(element);
+        final Integer slot = this.slots.get(key);
+        if (null == ordinal || null == slot)
+            return Property.empty();
+        final V value = (V) (isConstantKey(key) ? this.constantColumns[slot] : this.getColumns[slot]).get(ordinal);
+        if (null == value)
+            return Property.empty();
         final TinkerProperty<V> property = new TinkerProperty<V>(element, key, value) {
             public void remove() {
                 removeProperty(element, key);
             }
         };
         property.state = ((TinkerElement) element).state;
-        this.setValue(element.getId().toString(), key, property);
-    }
-
-
-    public <V> Property<V> getProperty(final Element element, final String key) {
-        return this.getProperty(element.getId().toString(), key);
+        return property;
     }
 
-
     private void removeProperty(final Element element, final String key) {
-        this.removeValue(element.getId().toString(), key);
+        final Integer ordinal = this.findOrdinal(element);
+        if (null != ordinal)
+            this.setColumns[this.slots.get(key)].set(ordinal, null);
     }
 
-    private void setValue(final String id, final String key, final Object value) {
-        final Map<Object, Map<String, Object>> map = isConstantKey(key) ? this.constantMap : this.setMap;
-        final Map<String, Object> nextMap = map.getOrDefault(id, new HashMap<>());
-        map.put(id, nextMap);
-        if (isConstantKey(key) && nextMap.containsKey(key))
-            throw GraphComputer.Exceptions.constantComputeKeyHasAlreadyBeenSet(key, id);
-        nextMap.put(key, value);
+    private Integer findOrdinal(final Element element) {
+        final TinkerElement tinkerElement = (TinkerElement) element;
+        if (-1 != tinkerElement.memoryOrdinal && this == tinkerElement.vertexMemory)
+            return tinkerElement.memoryOrdinal;
+        return this.ordinals.get(element.getId());
     }
 
-    private void removeValue(final String id, final String key) {
-        final Map<String, Object> map = this.setMap.get(id);
-        if (null != map)
-            map.remove(key);
+    private int getOrdinal(final Element element) {
+        final Integer ordinal = this.findOrdinal(element);
+        return null == ordinal ? this.ordinals.computeIfAbsent(element.getId(), id -> this.size.getAndIncrement()) : ordinal;
     }
 
-    private <V> Property<V> getProperty(final String id, final String key) {
-        final Map<String, Object> map = this.isConstantKey(key) ? this.constantMap.get(id) : this.getMap.get(id);
-        if (null == map)
-            return Property.empty();
-        else {
-            final Property<V> property = (Property<V>) map.get(key);
-            return null == property ? Property.empty() : property;
+    private static Column[] columns(final int size) {
+        final Column[] columns = new Column[size];
+        for (int i = 0; i < size; i++) {
+            columns[i] = new Column();
         }
+        return columns;
     }
 
+    /**
+     * The values of one compute key by ordinal. The values are kept in pages so that the column grows without moving
+     * the values that other threads may be writing at the same time.
+     */
+    private static class Column {
+
+        private static final int PAGE_BITS = 10;
+        private static final int PAGE_MASK = (1 << PAGE_BITS) - 1;
+
+        private volatile Object[][] pages = new Object[0][];
+
+        public Object get(final int ordinal) {
+            final Object[][] pages = this.pages;
+            final int page = ordinal >>> PAGE_BITS;
+            return page < pages.length && null != pages[page] ? pages[page][ordinal & PAGE_MASK] : null;
+        }
+
+        public void set(final int ordinal, final Object value) {
+            final Object[][] pages = this.pages;
+            final int page = ordinal >>> PAGE_BITS;
+            if (page < pages.length && null != pages[page])
+                pages[page][ordinal & PAGE_MASK] = value;
+            else
+                this.getPage(page)[ordinal & PAGE_MASK] = value;
+        }
+
+        public void clear() {
+            for (final Object[] page : this.pages) {
+                if (null != page)
+                    Arrays.fill(page, null);
+            }
+        }
+
+        private synchronized Object[] getPage(final int page) {
+            Object[][] pages = this.pages;
+            if (page >= pages.length)
+                pages = Arrays.copyOf(pages, Math.max(page + 1, pages.length << 1));
+            if (null == pages[page])
+                pages[page] = new Object[1 << PAGE_BITS];
+            this.pages = pages;
+            return pages[page];
+        }
+    }
 }
@@ -6,16 +6,16 @@ import com.tinkerpop.blueprints.Vertex;
 import com.tinkerpop.blueprints.computer.GraphComputer;
 import com.tinkerpop.blueprints.query.util.DefaultVertexQuery;
 import com.tinkerpop.blueprints.query.util.HasContainer;
-import com.tinkerpop.blueprints.util.StreamFactory;
 
-import java.util.ArrayList;
-import java.util.Collection;
-import java.util.Collections;
-import java.util.List;
-import java.util.Set;
-import java.util.stream.Stream;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
 
 /**
+ * The query walks the adjacency arrays of the vertex directly. No intermediate collections or streams are created
+ * and the has-containers, adjacent vertices and limit are all evaluated inside of a single iterator. If the labels of
+ * the query have a vertex-centric index on a key with a {@link com.tinkerpop.blueprints.Compare} has-container, only
+ * the edges within the range of the has-containers are walked.
+ *
  * @author Marko A. Rodriguez (http://markorodriguez.com)
  */
 public class TinkerVertexQuery extends DefaultVertexQuery {
@@ -28,94 +28,115 @@ public class TinkerVertexQuery extends DefaultVertexQuery {
         this.vertexMemory = vertexMemory;
     }
 
-    private Stream<TinkerEdge> makeStream() {
-        Stream<TinkerEdge> edges = Stream.empty();
-
-        if (this.direction.equals(Direction.BOTH) || this.direction.equals(Direction.IN)) {
-            edges = (Stream) this.getInEdges(this.labels).stream();
-            if (!this.adjacents.isEmpty())
-                edges = edges.filter(e -> this.adjacents.contains(e.getVertex(Direction.OUT)));
-        }
-        if (this.direction.equals(Direction.BOTH) || this.direction.equals(Direction.OUT)) {
-            edges = (Stream) Stream.concat(edges, this.getOutEdges(this.labels).stream());
-            if (!this.adjacents.isEmpty())
-                edges = edges.filter(e -> this.adjacents.contains(e.getVertex(Direction.IN)));
-        }
-        edges = edges.filter(e -> HasContainer.testAll(e, this.hasContainers));
-        if (this.limit != Integer.MAX_VALUE)
-            edges = edges.limit(this.limit);
-
-        // GENERATE COMPUTE SHELLED EDGES DURING GRAPH COMPUTING
-        if (TinkerGraphComputer.State.CENTRIC == this.vertex.state)
-            edges = edges.map(e -> e.createClone(TinkerGraphComputer.State.CENTRIC, this.vertex.getId(), this.vertexMemory));
-        return edges;
-    }
-
     public Iterable<Edge> edges() {
-        return (Iterable) StreamFactory.iterable(this.makeStream());
+        return () -> new AdjacencyIterator<Edge>() {
+            public Edge next() {
+                final TinkerEdge edge = this.nextEdge();
+                // GENERATE COMPUTE SHELLED EDGES DURING GRAPH COMPUTING
+                return TinkerGraphComputer.State.CENTRIC == vertex.state ?
+                        edge.createClone(TinkerGraphComputer.State.CENTRIC, vertex.getId(), vertexMemory) :
+                        edge;
+            }
+        };
     }
 
     public Iterable<Vertex> vertices() {
         if (this.vertex.state.equals(TinkerGraphComputer.State.ADJACENT))
             throw GraphComputer.Exceptions.adjacentVerticesCanNotBeQueried();
 
-        Stream<TinkerVertex> vertices = Stream.empty();
-        if (this.direction.equals(Direction.BOTH) || this.direction.equals(Direction.IN))
-            vertices = (Stream) Stream.concat(vertices, this.getInEdges(this.labels).stream().filter(e -> HasContainer.testAll(e, this.hasContainers)).map(e -> e.getVertex(Direction.OUT)));
-        if (this.direction.equals(Direction.BOTH) || this.direction.equals(Direction.OUT))
-            vertices = (Stream) Stream.concat(vertices, this.getOutEdges(this.labels).stream().filter(e -> HasContainer.testAll(e, this.hasContainers)).map(e -> e.getVertex(Direction.IN)));
-        if (!this.adjacents.isEmpty())
-            vertices = vertices.filter(this.adjacents::contains);
-        vertices = vertices.limit(this.limit);
-
-        // GENERATE COMPUTE SHELLED ADJACENT VERTICES DURING GRAPH COMPUTING
-        if (TinkerGraphComputer.State.CENTRIC == this.vertex.state)
-            vertices = vertices.map(v -> v.createClone(TinkerGraphComputer.State.ADJACENT, this.vertex.getId(), this.vertexMemory));
-
-        return (Iterable) StreamFactory.iterable(vertices);
+        return () -> new AdjacencyIterator<Vertex>() {
+            public Vertex next() {
+                final TinkerVertex adjacent = (TinkerVertex) this.nextEdge().getVertex(this.direction.opposite());
+                // GENERATE COMPUTE SHELLED ADJACENT VERTICES DURING GRAPH COMPUTING
+                return TinkerGraphComputer.State.CENTRIC == vertex.state ?
+                        adjacent.createClone(TinkerGraphComputer.State.ADJACENT, vertex.getId(), vertexMemory) :
+                        adjacent;
+            }
+        };
     }
 
     public long count() {
-        return this.makeStream().count();
-    }
+        if (this.hasContainers.isEmpty() && this.adjacents.isEmpty()) {
+            long count = 0;
+            if (this.direction.equals(Direction.BOTH) || this.direction.equals(Direction.IN))
+                count = count + this.vertex.inEdges.size(this.labels);
+            if (this.direction.equals(Direction.BOTH) || this.direction.equals(Direction.OUT))
+                count = count + this.vertex.outEdges.size(this.labels);
+            return Math.min(count, this.limit);
+        }
 
-    private List<Edge> getInEdges(final String... labels) {
-        if (labels.length == 0) {
-            final List<Edge> totalEdges = new ArrayList<>();
-            for (final Collection<Edge> edges : this.vertex.inEdges.values())
-                totalEdges.addAll(edges);
-            return totalEdges;
-        } else if (labels.length == 1) {
-            final Set<Edge> edges = this.vertex.inEdges.get(labels[0]);
-            return null == edges ? Collections.emptyList() : new ArrayList<>(edges);
-        } else {
-            final List<Edge> totalEdges = new ArrayList<>();
-            for (final String label : labels) {
-                final Set<Edge> edges = this.vertex.inEdges.get(label);
-                if (null != edges)
-                    totalEdges.addAll(edges);
+        long count = 0;
+        final AdjacencyIterator<Edge> edges = new AdjacencyIterator<Edge>() {
+            public Edge next() {
+                return this.nextEdge();
             }
-            return totalEdges;
+        };
+        while (edges.hasNext()) {
+            edges.next();
+            count++;
         }
+        return count;
     }
 
-    private List<Edge> getOutEdges(final String... labels) {
-        if (labels.length == 0) {
-            final List<Edge> totalEdges = new ArrayList<>();
-            for (final Collection<Edge> edges : this.vertex.outEdges.values())
-                totalEdges.addAll(edges);
-            return totalEdges;
-        } else if (labels.length == 1) {
-            final Set<Edge> edges = this.vertex.outEdges.get(labels[0]);
-            return null == edges ? Collections.emptyList() : new ArrayList<>(edges);
-        } else {
-            final List<Edge> totalEdges = new ArrayList<>();
-            for (final String label : labels) {
-                final Set<Edge> edges = this.vertex.outEdges.get(label);
-                if (null != edges)
-                    totalEdges.addAll(edges);
+    /**
+     * Iterates the in-edges and then the out-edges of the vertex (as dictated by the query direction) and only
+     * yields those that satisfy the query.
+     */
+    private abstract class AdjacencyIterator<T> implements Iterator<T> {
+
+        protected Direction direction;
+        private final TinkerRange range;
+        private Iterator<Edge> edges;
+        private TinkerEdge next = null;
+        private int count = 0;
+
+        public AdjacencyIterator() {
+            this.direction = TinkerVertexQuery.this.direction.equals(Direction.OUT) ? Direction.OUT : Direction.IN;
+            // compute keys are not indexed so vertex-centric indices are only used outside of graph computing
+            this.range = TinkerGraphComputer.State.STANDARD == vertex.state ?
+                    vertex.graph.vertexCentricIndex.getRange(labels, hasContainers) :
+                    null;
+            this.edges = this.edges(this.direction);
+        }
+
+        public boolean hasNext() {
+            if (null != this.next)
+                return true;
+            if (this.count >= limit)
+                return false;
+            while (true) {
+                while (this.edges.hasNext()) {
+                    final TinkerEdge edge = (TinkerEdge) this.edges.next();
+                    if (this.test(edge)) {
+                        this.next = edge;
+                        return true;
+                    }
+                }
+                if (this.direction.equals(Direction.IN) && TinkerVertexQuery.this.direction.equals(Direction.BOTH)) {
+                    this.direction = Direction.OUT;
+                    this.edges = this.edges(Direction.OUT);
+                } else
+                    return false;
             }
-            return totalEdges;
+        }
+
+        protected TinkerEdge nextEdge() {
+            if (!this.hasNext())
+                throw new NoSuchElementException();
+            final TinkerEdge edge = this.next;
+            this.next = null;
+            this.count++;
+            return edge;
+        }
+
+        private Iterator<Edge> edges(final Direction direction) {
+            final TinkerAdjacency adjacency = direction.equals(Direction.OUT) ? vertex.outEdges : vertex.inEdges;
+            return null == this.range ? adjacency.iterator(labels) : adjacency.iterator(this.range, labels);
+        }
+
+        private boolean test(final TinkerEdge edge) {
+            return (adjacents.isEmpty() || adjacents.contains(edge.getVertex(this.direction.opposite()))) &&
+                    HasContainer.testAll(edge, hasContainers);
         }
     }
 }
@@ -0,0 +1,30 @@
+package com.tinkerpop.blueprints.tinkergraph;
+
+import com.tinkerpop.blueprints.BlueprintsStandardSuite;
+import com.tinkerpop.blueprints.Graph;
+import org.apache.commons.configuration.Configuration;
+import org.junit.runner.RunWith;
+
+import java.util.HashMap;
+import java.util.Map;
+
+
+/**
+ * Executes the Simple Blueprints Test Suite using TinkerGraph with concurrent writers enabled.
+ */
+@RunWith(BlueprintsStandardSuite.class)
+@BlueprintsStandardSuite.GraphProviderClass(TinkerGraphConcurrentBlueprintsStandardTest.class)
+public class TinkerGraphConcurrentBlueprintsStandardTest extends BlueprintsStandardSuite.AbstractGraphProvider {
+    @Override
+    public Map<String, Object> getBaseConfiguration() {
+        return new HashMap<String, Object>() {{
+            put("blueprints.graph", TinkerGraph.class.getName());
+            put(TinkerGraph.CONFIG_CONCURRENT, true);
+        }};
+    }
+
+    @Override
+    public void clear(final Graph g, final Configuration configuration) throws Exception {
+        g.close();
+    }
+}
@@ -0,0 +1,41 @@
+package com.tinkerpop.blueprints.tinkergraph;
+
+import com.tinkerpop.blueprints.BlueprintsStandardSuite;
+import com.tinkerpop.blueprints.Graph;
+import org.apache.commons.configuration.Configuration;
+import org.junit.runner.RunWith;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Map;
+
+
+/**
+ * Executes the Simple Blueprints Test Suite using TinkerGraph persisted to a directory.
+ */
+@RunWith(BlueprintsStandardSuite.class)
+@BlueprintsStandardSuite.GraphProviderClass(TinkerGraphPersistenceBlueprintsStandardTest.class)
+public class TinkerGraphPersistenceBlueprintsStandardTest extends BlueprintsStandardSuite.AbstractGraphProvider {
+
+    private static final String DIRECTORY = "target" + File.separator + "tinkergraph-persistence";
+
+    @Override
+    public Map<String, Object> getBaseConfiguration() {
+        return new HashMap<String, Object>() {{
+            put("blueprints.graph", TinkerGraph.class.getName());
+            put(TinkerGraph.CONFIG_DIRECTORY, DIRECTORY);
+        }};
+    }
+
+    @Override
+    public void clear(final Graph g, final Configuration configuration) throws Exception {
+        g.close();
+        final Path directory = Paths.get(configuration.getString(TinkerGraph.CONFIG_DIRECTORY));
+        if (Files.exists(directory))
+            Files.walk(directory).sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+    }
+}
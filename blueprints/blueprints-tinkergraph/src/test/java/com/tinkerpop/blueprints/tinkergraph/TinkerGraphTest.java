@@ -2,19 +2,58 @@ package com.tinkerpop.blueprints.tinkergraph;
 
 import com.tinkerpop.blueprints.AnnotatedList;
 import com.tinkerpop.blueprints.Compare;
+import com.tinkerpop.blueprints.Contains;
 import com.tinkerpop.blueprints.Direction;
 import com.tinkerpop.blueprints.Edge;
+import com.tinkerpop.blueprints.Graph;
 import com.tinkerpop.blueprints.Property;
 import com.tinkerpop.blueprints.Vertex;
+import com.tinkerpop.blueprints.computer.ComputeResult;
+import com.tinkerpop.blueprints.computer.GraphMemory;
+import com.tinkerpop.blueprints.computer.MessageType;
+import com.tinkerpop.blueprints.computer.Messenger;
+import com.tinkerpop.blueprints.computer.VertexProgram;
+import com.tinkerpop.blueprints.query.util.GraphQueryBuilder;
+import com.tinkerpop.blueprints.query.util.VertexQueryBuilder;
+import com.tinkerpop.blueprints.strategy.IdGraphStrategy;
+import com.tinkerpop.blueprints.strategy.PartitionGraphStrategy;
 import com.tinkerpop.blueprints.util.StreamFactory;
+import org.apache.commons.configuration.BaseConfiguration;
+import org.apache.commons.configuration.Configuration;
 import org.junit.Test;
 
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
 import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.BinaryOperator;
+import java.util.function.Consumer;
 import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 import java.util.stream.Stream;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
 /**
  * @author Marko A. Rodriguez (http://markorodriguez.com)
@@ -281,4 +320,1626 @@ public class TinkerGraphTest {
             return true;
         }, 0.5).has("oid", "1").edges()).count());
     }
+
+    @Test
+    public void shouldAnswerRangesOfMixedValuesLikeAScan() {
+        final TinkerGraph g = TinkerGraph.open();
+        g.addVertex("age", 30);
+        g.addVertex("age", 30l);
+        g.addVertex("age", "30");
+        final Vertex a = g.addVertex(Property.Key.LABEL, "a");
+        a.addEdge("knows", a, "weight", 1);
+        a.addEdge("knows", a, "weight", 1.0d);
+        for (final boolean indexed : Arrays.asList(false, true)) {
+            if (indexed) {
+                g.createIndex("age", Vertex.class, TinkerGraph.IndexType.SORTED);
+                g.createVertexCentricIndex("knows", "weight");
+            }
+            assertEquals(1, StreamFactory.stream(g.query().has("age", 30).vertices()).count());
+            assertEquals(1, StreamFactory.stream(a.query().direction(Direction.OUT).labels("knows").has("weight", 1).edges()).count());
+            for (final Runnable query : Arrays.<Runnable>asList(
+                    () -> StreamFactory.stream(g.query().has("age", Compare.GREATER_THAN, 20).vertices()).count(),
+                    () -> StreamFactory.stream(a.query().direction(Direction.OUT).labels("knows").has("weight", Compare.LESS_THAN, 2).edges()).count())) {
+                try {
+                    query.run();
+                    fail("A range over values of different classes should fail whether or not the key is indexed");
+                } catch (ClassCastException e) {
+                }
+            }
+        }
+    }
+
+    @Test
+    public void shouldSupportConcurrentWriters() throws Exception {
+        final Configuration configuration = new BaseConfiguration();
+        configuration.setProperty(TinkerGraph.CONFIG_CONCURRENT, true);
+        final TinkerGraph g = TinkerGraph.open(Optional.of(configuration));
+        g.createIndex("name", Vertex.class);
+        g.createIndex("age", Vertex.class, TinkerGraph.IndexType.SORTED);
+        final Vertex hub = g.addVertex();
+
+        final ExecutorService executor = Executors.newFixedThreadPool(8);
+        final List<Future<?>> futures = new ArrayList<>();
+        final AtomicBoolean writing = new AtomicBoolean(true);
+        final Future<?> reader = executor.submit(() -> {
+            while (writing.get()) {
+                StreamFactory.stream(hub.query().direction(Direction.BOTH).vertices()).count();
+            }
+        });
+        for (int t = 0; t < 7; t++) {
+            final String name = "t" + t;
+            futures.add(executor.submit(() -> {
+                for (int i = 0; i < 1000; i++) {
+                    final Vertex v = g.addVertex("name", name, "age", i);
+                    hub.addEdge("knows", v);
+                    v.addEdge("knows", hub).setProperty("weight", i);
+                    if (i % 10 == 0)
+                        v.remove();
+                }
+            }));
+        }
+        for (final Future<?> future : futures) {
+            future.get();
+        }
+        writing.set(false);
+        reader.get();
+        executor.shutdown();
+
+        assertEquals(6301, g.vertices.size());
+        assertEquals(12600, g.edges.size());
+        assertEquals(6300, hub.query().direction(Direction.OUT).count());
+        assertEquals(6300, hub.query().direction(Direction.IN).count());
+        assertEquals(900, StreamFactory.stream(g.query().has("name", "t3").vertices()).count());
+        assertEquals(63, StreamFactory.stream(g.query().interval("age", 100, 110).vertices()).count());
+        assertEquals(6300, g.getIndexStatistics("name", Vertex.class).get().getElementCount());
+    }
+
+    @Test
+    public void shouldKeepIndicesAndAdjacenciesConsistentUnderConcurrentWriters() throws Exception {
+        final Configuration configuration = new BaseConfiguration();
+        configuration.setProperty(TinkerGraph.CONFIG_CONCURRENT, true);
+        final TinkerGraph g = TinkerGraph.open(Optional.of(configuration));
+        g.createIndex("name", Vertex.class);
+        final Vertex shared = g.addVertex();
+
+        final ExecutorService executor = Executors.newFixedThreadPool(8);
+        final List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < 4; t++) {
+            final String name = "t" + t;
+            futures.add(executor.submit(() -> {
+                for (int i = 0; i < 1000; i++) {
+                    shared.setProperty("name", name);
+                }
+            }));
+        }
+        for (int t = 0; t < 4; t++) {
+            futures.add(executor.submit(() -> {
+                for (int i = 0; i < 1000; i++) {
+                    final Vertex v = g.addVertex();
+                    final Future<?> remover = executor.submit(v::remove);
+                    try {
+                        shared.addEdge("knows", v);
+                    } catch (final IllegalStateException e) {
+                        // the vertex was removed first
+                    }
+                    remover.get();
+                }
+                return null;
+            }));
+        }
+        for (final Future<?> future : futures) {
+            future.get();
+        }
+        executor.shutdown();
+
+        assertEquals(shared, g.query().has("name", shared.getValue("name")).vertices().iterator().next());
+        assertEquals(1, g.getIndexStatistics("name", Vertex.class).get().getElementCount());
+        assertEquals(1, g.vertices.size());
+        assertEquals(0, g.edges.size());
+        assertEquals(0, shared.query().direction(Direction.BOTH).count());
+    }
+
+    @Test
+    public void shouldWalkConcurrentAdjacencyWhileItIsWritten() throws Exception {
+        final Configuration configuration = new BaseConfiguration();
+        configuration.setProperty(TinkerGraph.CONFIG_CONCURRENT, true);
+        final TinkerGraph g = TinkerGraph.open(Optional.of(configuration));
+        g.createVertexCentricIndex("rated", "stars");
+        final Vertex v = g.addVertex();
+        final List<Edge> knows = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            knows.add(v.addEdge("knows", g.addVertex()));
+            v.addEdge("rated", g.addVertex(), "stars", i);
+        }
+
+        // a walk sees none of the edges added since it reached the segment and skips those removed in place
+        final Iterator<Edge> edges = v.query().direction(Direction.OUT).labels("knows").edges().iterator();
+        final Iterator<Edge> rated = v.query().direction(Direction.OUT).labels("rated").interval("stars", 2, 8).edges().iterator();
+        assertTrue(edges.hasNext());
+        assertTrue(rated.hasNext());
+        for (int i = 0; i < 4; i++) {
+            knows.get(i).remove();
+        }
+        for (int i = 0; i < 10; i++) {
+            v.addEdge("knows", g.addVertex());
+            v.addEdge("rated", g.addVertex(), "stars", 5);
+        }
+        assertEquals(6, StreamFactory.stream(edges).count());
+        assertEquals(6, StreamFactory.stream(rated).count());
+        assertEquals(16, v.query().direction(Direction.OUT).labels("knows").count());
+        assertEquals(16, v.query().direction(Direction.OUT).labels("rated").interval("stars", 2, 8).count());
+
+        final ExecutorService executor = Executors.newFixedThreadPool(4);
+        final AtomicBoolean writing = new AtomicBoolean(true);
+        final List<Future<?>> readers = new ArrayList<>();
+        for (int t = 0; t < 3; t++) {
+            readers.add(executor.submit(() -> {
+                while (writing.get()) {
+                    StreamFactory.stream(v.query().direction(Direction.OUT).labels("rated").interval("stars", 0, 100).edges()).forEach(e -> assertTrue(e.getProperty("stars").isPresent()));
+                    StreamFactory.stream(v.query().direction(Direction.OUT).labels("knows").vertices()).count();
+                }
+            }));
+        }
+        for (int i = 0; i < 2000; i++) {
+            v.addEdge("rated", g.addVertex(), "stars", i % 100).remove();
+            final Edge e = v.addEdge("knows", g.addVertex());
+            if (i % 2 == 0)
+                e.remove();
+        }
+        writing.set(false);
+        for (final Future<?> reader : readers) {
+            reader.get();
+        }
+        executor.shutdown();
+        assertEquals(1016, v.query().direction(Direction.OUT).labels("knows").count());
+        assertEquals(20, v.query().direction(Direction.OUT).labels("rated").count());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldNotSupportConcurrentWritersWithLongStorage() {
+        final Configuration configuration = new BaseConfiguration();
+        configuration.setProperty(TinkerGraph.CONFIG_CONCURRENT, true);
+        configuration.setProperty(TinkerGraph.CONFIG_STORAGE, TinkerGraph.STORAGE_LONG);
+        TinkerGraph.open(Optional.of(configuration));
+    }
+
+    @Test
+    public void shouldGenerateIds() {
+        TinkerGraph g = TinkerGraph.open();
+        assertEquals("0", g.addVertex().getId());
+        g.addVertex(Property.Key.ID, 10);
+        g.addVertex(Property.Key.ID, "x");
+        assertEquals("11", g.addVertex().getId());
+        final long reserved = ((TinkerIdGenerator.Sequential) g.getIdGenerator()).reserve(100);
+        assertEquals(12, reserved);
+        final Vertex v = g.addVertex();
+        assertEquals("112", v.getId());
+        assertEquals("113", v.addEdge("self", v).getId());
+        g.clear();
+        assertEquals("0", g.addVertex().getId());
+
+        final Configuration configuration = new BaseConfiguration();
+        configuration.setProperty(TinkerGraph.CONFIG_ID_GENERATOR, TinkerGraph.ID_GENERATOR_UUID);
+        g = TinkerGraph.open(Optional.of(configuration));
+        assertEquals(36, g.addVertex().getId().toString().length());
+
+        configuration.setProperty(TinkerGraph.CONFIG_ID_GENERATOR, ConstantIdGenerator.class.getName());
+        g = TinkerGraph.open(Optional.of(configuration));
+        assertEquals("c", g.addVertex().getId());
+        try {
+            g.addVertex();
+            fail("A generator that keeps generating a taken id should not be retried forever");
+        } catch (final IllegalArgumentException e) {
+            assertEquals(Graph.Exceptions.vertexWithIdAlreadyExists("c").getMessage(), e.getMessage());
+        }
+
+        final AtomicInteger counter = new AtomicInteger(0);
+        configuration.setProperty(TinkerGraph.CONFIG_ID_GENERATOR, (TinkerIdGenerator) () -> "v" + counter.getAndIncrement());
+        g = TinkerGraph.open(Optional.of(configuration));
+        g.addVertex(Property.Key.ID, "v0");
+        assertEquals("v1", g.addVertex().getId());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldNotOpenWithUnknownIdGenerator() {
+        final Configuration configuration = new BaseConfiguration();
+        configuration.setProperty(TinkerGraph.CONFIG_ID_GENERATOR, "no.such.Generator");
+        TinkerGraph.open(Optional.of(configuration));
+    }
+
+    public static class ConstantIdGenerator implements TinkerIdGenerator {
+        public String next() {
+            return "c";
+        }
+    }
+
+    @Test
+    public void shouldPersistToAndLoadFromDirectory() throws Exception {
+        final Path directory = Files.createTempDirectory("tinkergraph");
+        final Configuration configuration = new BaseConfiguration();
+        configuration.setProperty(TinkerGraph.CONFIG_DIRECTORY, directory.toString());
+        TinkerGraph g = TinkerGraph.open(Optional.of(configuration));
+        assertTrue(g.getFeatures().graph().supportsPersistence());
+        g.createIndex("name", Vertex.class);
+        g.createIndex("age", Vertex.class, TinkerGraph.IndexType.SORTED);
+        g.createVertexCentricIndex("knows", "weight");
+        g.annotations().set("source", "test");
+        final Vertex hub = g.addVertex(Property.Key.ID, "hub", Property.Key.LABEL, "person", "name", "hub", "big", 1l << 40, "flag", true);
+        hub.setProperty("aliases", AnnotatedList.make());
+        final AnnotatedList<String> aliases = hub.getValue("aliases");
+        aliases.addValue("h", "since", 2010);
+        for (int i = 0; i < 25000; i++) {
+            final Vertex v = g.addVertex("name", "v" + i, "age", i, "height", 1.5d, "tags", Arrays.asList("a", "b"));
+            hub.addEdge("knows", v, "weight", (float) i / 10);
+        }
+        g.close();
+
+        g = TinkerGraph.open(Optional.of(configuration));
+        assertEquals(25001, g.vertices.size());
+        assertEquals(25000, g.edges.size());
+        assertEquals("test", g.annotations().get("source").get());
+        final Vertex h = g.query().ids("hub").vertices().iterator().next();
+        assertEquals("person", h.getLabel());
+        assertEquals(1l << 40, (long) h.getValue("big"));
+        assertTrue(h.getValue("flag"));
+        assertEquals(2010, ((AnnotatedList<String>) h.getValue("aliases")).query().annotatedValues().iterator().next().getAnnotations().get("since").get());
+        final Vertex v = g.query().has("name", "v7").vertices().iterator().next();
+        assertEquals(7, (int) v.getValue("age"));
+        assertEquals(1.5d, v.getValue("height"), 0.0d);
+        assertEquals(Arrays.asList("a", "b"), v.getValue("tags"));
+        assertEquals(h, v.query().direction(Direction.IN).vertices().iterator().next());
+        assertEquals(10, StreamFactory.stream(g.query().interval("age", 10, 20).vertices()).count());
+        assertEquals(10, h.query().direction(Direction.OUT).labels("knows").interval("weight", 1.0f, 2.0f).count());
+        assertEquals(new HashSet<>(Arrays.asList("name", "age")), g.getIndexedKeys(Vertex.class));
+        assertTrue(g.getIndexStatistics("age", Vertex.class).isPresent());
+        assertEquals(Collections.singleton("weight"), g.getVertexCentricIndexedKeys("knows"));
+        assertEquals("50000", g.addVertex().getId());
+
+        g.close();
+        Files.walk(directory).sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+        assertFalse(TinkerGraph.open().getFeatures().graph().supportsPersistence());
+    }
+
+    @Test
+    public void shouldReplayLogWhenOpened() throws Exception {
+        final Path directory = Files.createTempDirectory("tinkergraph");
+        final Configuration configuration = new BaseConfiguration();
+        configuration.setProperty(TinkerGraph.CONFIG_DIRECTORY, directory.toString());
+        configuration.setProperty(TinkerGraph.CONFIG_LOG, true);
+        configuration.setProperty(TinkerGraph.CONFIG_LOG_SYNC, true);
+        configuration.setProperty(TinkerGraph.CONFIG_CHECKPOINT_INTERVAL, 0);
+        final TinkerGraph g = TinkerGraph.open(Optional.of(configuration));
+        g.createIndex("name", Vertex.class);
+        final Vertex a = g.addVertex(Property.Key.ID, "a", "name", "marko");
+        final Vertex b = g.addVertex(Property.Key.LABEL, "person", "name", "josh");
+        a.addEdge("knows", b, "weight", 0.5f);
+        b.setProperty("age", 32);
+        a.getProperty("name").remove();
+        g.addVertex().remove();
+        a.addEdge("created", b).remove();
+        assertFalse(TinkerStorage.exists(directory));
+
+        // the graph is not closed, as if it had crashed
+        final TinkerGraph g1 = TinkerGraph.open(Optional.of(configuration));
+        assertEquals(2, g1.vertices.size());
+        assertEquals(1, g1.edges.size());
+        assertFalse(g1.vertices.get("a").getProperty("name").isPresent());
+        final Vertex josh = g1.query().has("name", "josh").vertices().iterator().next();
+        assertEquals("person", josh.getLabel());
+        assertEquals(32, (int) josh.getValue("age"));
+        assertEquals(0.5f, josh.query().direction(Direction.IN).labels("knows").edges().iterator().next().getValue("weight"), 0.0f);
+        assertEquals(Collections.singleton("name"), g1.getIndexedKeys(Vertex.class));
+
+        g1.close();
+        assertTrue(TinkerStorage.exists(directory));
+        assertEquals(0, Files.size(directory.resolve(TinkerLog.LOG_FILE)));
+        g.close();
+        Files.walk(directory).sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+    }
+
+    @Test
+    public void shouldDiscardTornLogRecord() throws Exception {
+        final Path directory = Files.createTempDirectory("tinkergraph");
+        final Configuration configuration = new BaseConfiguration();
+        configuration.setProperty(TinkerGraph.CONFIG_DIRECTORY, directory.toString());
+        configuration.setProperty(TinkerGraph.CONFIG_LOG, true);
+        configuration.setProperty(TinkerGraph.CONFIG_LOG_SYNC, true);
+        configuration.setProperty(TinkerGraph.CONFIG_CHECKPOINT_INTERVAL, 0);
+        final TinkerGraph g = TinkerGraph.open(Optional.of(configuration));
+        g.addVertex(Property.Key.ID, "a");
+        final Path log = directory.resolve(TinkerLog.LOG_FILE);
+        final long size = Files.size(log);
+        Files.write(log, new byte[]{0, 0, 0, 42, 1, 2, 3}, StandardOpenOption.APPEND);
+
+        final TinkerGraph g1 = TinkerGraph.open(Optional.of(configuration));
+        assertEquals(1, g1.vertices.size());
+        assertEquals(size, Files.size(log));
+
+        g1.close();
+        g.close();
+        Files.walk(directory).sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+    }
+
+    @Test
+    public void shouldNotReplayLogThatIsAlreadyInTheSnapshot() throws Exception {
+        final Path directory = Files.createTempDirectory("tinkergraph");
+        final Configuration configuration = new BaseConfiguration();
+        configuration.setProperty(TinkerGraph.CONFIG_DIRECTORY, directory.toString());
+        configuration.setProperty(TinkerGraph.CONFIG_LOG, true);
+        configuration.setProperty(TinkerGraph.CONFIG_LOG_SYNC, true);
+        configuration.setProperty(TinkerGraph.CONFIG_CHECKPOINT_INTERVAL, 0);
+        final TinkerGraph g = TinkerGraph.open(Optional.of(configuration));
+        final Vertex a = g.addVertex(Property.Key.ID, "a");
+        a.addEdge("self", a, Property.Key.ID, "e");
+        final Path log = directory.resolve(TinkerLog.LOG_FILE);
+        final byte[] records = Files.readAllBytes(log);
+        g.close();
+
+        // as if the graph crashed after writing the snapshot but before truncating the log
+        Files.write(log, records);
+        final TinkerGraph g1 = TinkerGraph.open(Optional.of(configuration));
+        assertEquals(1, g1.vertices.size());
+        assertEquals(1, g1.edges.size());
+        assertEquals(0, Files.size(log));
+        g1.close();
+        Files.walk(directory).sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+    }
+
+    @Test
+    public void shouldReplayRotatedLogOfInterruptedCheckpoint() throws Exception {
+        final Path directory = Files.createTempDirectory("tinkergraph");
+        final Configuration configuration = new BaseConfiguration();
+        configuration.setProperty(TinkerGraph.CONFIG_DIRECTORY, directory.toString());
+        configuration.setProperty(TinkerGraph.CONFIG_LOG, true);
+        configuration.setProperty(TinkerGraph.CONFIG_LOG_SYNC, true);
+        configuration.setProperty(TinkerGraph.CONFIG_CHECKPOINT_INTERVAL, 0);
+        final TinkerGraph g = TinkerGraph.open(Optional.of(configuration));
+        g.addVertex(Property.Key.ID, "a");
+        final Path log = directory.resolve(TinkerLog.LOG_FILE);
+
+        // as if the graph crashed after rotating the log but before writing the snapshot
+        final Path rotated = directory.resolve(TinkerLog.LOG_FILE + ".0");
+        Files.copy(log, rotated);
+        Files.delete(log);
+        final TinkerGraph g1 = TinkerGraph.open(Optional.of(configuration));
+        assertEquals(1, g1.vertices.size());
+        assertFalse(Files.exists(rotated));
+        assertEquals(1, TinkerStorage.generation(directory));
+        g1.addVertex(Property.Key.ID, "b");
+
+        // the graph is not closed, as if it had crashed
+        final TinkerGraph g2 = TinkerGraph.open(Optional.of(configuration));
+        assertEquals(2, g2.vertices.size());
+        g2.close();
+        g1.close();
+        g.close();
+        Files.walk(directory).sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+    }
+
+    @Test
+    public void shouldFailReplayOfEdgeWhoseVerticesAreNotInTheGraph() throws Exception {
+        final Path directory = Files.createTempDirectory("tinkergraph");
+        final Configuration configuration = new BaseConfiguration();
+        configuration.setProperty(TinkerGraph.CONFIG_DIRECTORY, directory.toString());
+        configuration.setProperty(TinkerGraph.CONFIG_LOG, true);
+        configuration.setProperty(TinkerGraph.CONFIG_LOG_SYNC, true);
+        configuration.setProperty(TinkerGraph.CONFIG_CHECKPOINT_INTERVAL, 0);
+        final TinkerGraph g = TinkerGraph.open(Optional.of(configuration));
+        final Vertex a = g.addVertex(Property.Key.ID, "a");
+        final Path log = directory.resolve(TinkerLog.LOG_FILE);
+        final int vertexRecord = (int) Files.size(log);
+        a.addEdge("self", a, Property.Key.ID, "e");
+        final byte[] records = Files.readAllBytes(log);
+
+        // the generation followed by the record of the edge but not the record of its vertex
+        final byte[] broken = new byte[8 + records.length - vertexRecord];
+        System.arraycopy(records, 0, broken, 0, 8);
+        System.arraycopy(records, vertexRecord, broken, 8, records.length - vertexRecord);
+        final Path other = Files.createTempDirectory("tinkergraph");
+        Files.write(other.resolve(TinkerLog.LOG_FILE), broken);
+        configuration.setProperty(TinkerGraph.CONFIG_DIRECTORY, other.toString());
+        try {
+            TinkerGraph.open(Optional.of(configuration));
+            fail("An edge whose vertices are not in the graph should fail the replay");
+        } catch (final IllegalStateException e) {
+            assertTrue(e.getMessage().contains("e"));
+        }
+
+        g.close();
+        Files.walk(directory).sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+        Files.walk(other).sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+    }
+
+    @Test
+    public void shouldReplayLogOfConcurrentWriters() throws Exception {
+        final Path directory = Files.createTempDirectory("tinkergraph");
+        final Configuration configuration = new BaseConfiguration();
+        configuration.setProperty(TinkerGraph.CONFIG_DIRECTORY, directory.toString());
+        configuration.setProperty(TinkerGraph.CONFIG_CONCURRENT, true);
+        configuration.setProperty(TinkerGraph.CONFIG_LOG, true);
+        configuration.setProperty(TinkerGraph.CONFIG_LOG_SYNC, true);
+        configuration.setProperty(TinkerGraph.CONFIG_CHECKPOINT_INTERVAL, 0);
+        final TinkerGraph g = TinkerGraph.open(Optional.of(configuration));
+        final AtomicReference<Vertex> latest = new AtomicReference<>(g.addVertex());
+
+        final ExecutorService executor = Executors.newFixedThreadPool(4);
+        final List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < 4; t++) {
+            futures.add(executor.submit(() -> {
+                for (int i = 0; i < 500; i++) {
+                    // the vertex of another writer is linked as soon as it is seen
+                    final Vertex v = g.addVertex();
+                    latest.getAndSet(v).addEdge("next", v);
+                }
+            }));
+        }
+        for (final Future<?> future : futures) {
+            future.get();
+        }
+        executor.shutdown();
+
+        // the graph is not closed, as if it had crashed
+        final TinkerGraph g1 = TinkerGraph.open(Optional.of(configuration));
+        assertEquals(2001, g1.vertices.size());
+        assertEquals(2000, g1.edges.size());
+        g1.close();
+        g.close();
+        Files.walk(directory).sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+    }
+
+    @Test
+    public void shouldReplayLogOfConcurrentRemovals() throws Exception {
+        final Path directory = Files.createTempDirectory("tinkergraph");
+        final Configuration configuration = new BaseConfiguration();
+        configuration.setProperty(TinkerGraph.CONFIG_DIRECTORY, directory.toString());
+        configuration.setProperty(TinkerGraph.CONFIG_CONCURRENT, true);
+        configuration.setProperty(TinkerGraph.CONFIG_LOG, true);
+        configuration.setProperty(TinkerGraph.CONFIG_CHECKPOINT_INTERVAL, 0);
+        final TinkerGraph g = TinkerGraph.open(Optional.of(configuration));
+        final Vertex root = g.addVertex();
+
+        final ExecutorService executor = Executors.newFixedThreadPool(4);
+        final List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < 4; t++) {
+            final int writer = t;
+            futures.add(executor.submit(() -> {
+                for (int i = 0; i < 500; i++) {
+                    // the id of a removed vertex is taken again right away
+                    final Vertex v = g.addVertex(Property.Key.ID, writer + ":" + (i / 2));
+                    root.addEdge("child", v);
+                    if (0 == i % 2)
+                        v.remove();
+                }
+            }));
+        }
+        for (final Future<?> future : futures) {
+            future.get();
+        }
+        executor.shutdown();
+        g.close();
+
+        final TinkerGraph g1 = TinkerGraph.open(Optional.of(configuration));
+        assertEquals(1001, g1.vertices.size());
+        assertEquals(1000, g1.edges.size());
+        g1.close();
+        Files.walk(directory).sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+    }
+
+    @Test
+    public void shouldCheckpointLogPeriodically() throws Exception {
+        final Path directory = Files.createTempDirectory("tinkergraph");
+        final Configuration configuration = new BaseConfiguration();
+        configuration.setProperty(TinkerGraph.CONFIG_DIRECTORY, directory.toString());
+        configuration.setProperty(TinkerGraph.CONFIG_LOG, true);
+        configuration.setProperty(TinkerGraph.CONFIG_LOG_SYNC_INTERVAL, 10);
+        configuration.setProperty(TinkerGraph.CONFIG_CHECKPOINT_INTERVAL, 50);
+        final TinkerGraph g = TinkerGraph.open(Optional.of(configuration));
+        g.addVertex(Property.Key.ID, "a");
+        final Path log = directory.resolve(TinkerLog.LOG_FILE);
+        final long start = System.currentTimeMillis();
+        while ((!TinkerStorage.exists(directory) || Files.size(log) > 0) && System.currentTimeMillis() - start < 10000) {
+            Thread.sleep(10);
+        }
+        assertTrue(TinkerStorage.exists(directory));
+        assertEquals(0, Files.size(log));
+        assertEquals(1, TinkerGraph.open(Optional.of(new BaseConfiguration() {{
+            setProperty(TinkerGraph.CONFIG_DIRECTORY, directory.toString());
+        }})).vertices.size());
+
+        g.close();
+        Files.walk(directory).sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+    }
+
+    @Test
+    public void shouldCheckpointIncrementally() throws Exception {
+        final Path directory = Files.createTempDirectory("tinkergraph");
+        final Configuration configuration = new BaseConfiguration();
+        configuration.setProperty(TinkerGraph.CONFIG_DIRECTORY, directory.toString());
+        configuration.setProperty(TinkerGraph.CONFIG_LOG, true);
+        configuration.setProperty(TinkerGraph.CONFIG_LOG_SYNC, true);
+        configuration.setProperty(TinkerGraph.CONFIG_CHECKPOINT_INTERVAL, 0);
+        final TinkerGraph g = TinkerGraph.open(Optional.of(configuration));
+        g.createIndex("name", Vertex.class);
+        for (int i = 0; i < 1000; i++) {
+            g.addVertex(Property.Key.ID, i, "name", "v" + i);
+        }
+        final Vertex a = g.addVertex(Property.Key.ID, "a", Property.Key.LABEL, "person", "name", "marko");
+        final Vertex b = g.addVertex(Property.Key.ID, "b", "name", "josh");
+        a.addEdge("knows", b, Property.Key.ID, "ab", "weight", 0.5f);
+        b.addEdge("knows", g.vertices.get("0"), Property.Key.ID, "b0");
+        // the first delta is merged into a snapshot as there is none yet
+        g.log.checkpoint();
+        assertTrue(Files.exists(directory.resolve(TinkerStorage.SNAPSHOT_FILE)));
+        assertFalse(Files.exists(directory.resolve(TinkerStorage.SNAPSHOT_FILE + ".1")));
+
+        a.setProperty("name", "okram");
+        g.vertices.get("0").remove();
+        g.addVertex(Property.Key.ID, "c").addEdge("knows", a, Property.Key.ID, "ca");
+        g.dropIndex("name", Vertex.class);
+        g.createIndex("weight", Edge.class);
+        g.annotations().set("year", 2014);
+        g.log.checkpoint();
+        assertTrue(Files.exists(directory.resolve(TinkerStorage.SNAPSHOT_FILE + ".2")));
+        // nothing changed since the last checkpoint
+        g.log.checkpoint();
+        assertEquals(2, TinkerStorage.generation(directory));
+
+        b.remove();
+        g.addVertex(Property.Key.ID, "b", Property.Key.LABEL, "robot").addEdge("knows", a, Property.Key.ID, "ab", "weight", 1.0f);
+        g.log.checkpoint();
+        assertTrue(Files.exists(directory.resolve(TinkerStorage.SNAPSHOT_FILE + ".3")));
+        g.vertices.get("1").setProperty("name", "logged");
+
+        final Consumer<TinkerGraph> check = g1 -> {
+            assertEquals(1002, g1.vertices.size());
+            assertEquals(2, g1.edges.size());
+            assertEquals("okram", g1.vertices.get("a").getValue("name"));
+            assertEquals("robot", g1.vertices.get("b").getLabel());
+            assertFalse(g1.vertices.containsKey("0"));
+            assertEquals(1.0f, g1.edges.get("ab").getValue("weight"), 0.0f);
+            assertEquals("c", g1.edges.get("ca").getVertex(Direction.OUT).getId());
+            assertEquals(2, g1.vertices.get("a").query().direction(Direction.BOTH).count());
+            assertEquals(Collections.singleton("weight"), g1.getIndexedKeys(Edge.class));
+            assertEquals(0, g1.getIndexedKeys(Vertex.class).size());
+            assertEquals(2014, (int) g1.annotations().get("year").get());
+        };
+        final Configuration snapshot = new BaseConfiguration();
+        snapshot.setProperty(TinkerGraph.CONFIG_DIRECTORY, directory.toString());
+        check.accept(TinkerGraph.open(Optional.of(snapshot)));
+
+        // the deltas are merged into the snapshot without the graph
+        TinkerStorage.merge(directory);
+        assertFalse(Files.exists(directory.resolve(TinkerStorage.SNAPSHOT_FILE + ".3")));
+        assertEquals(3, TinkerStorage.generation(directory));
+        check.accept(TinkerGraph.open(Optional.of(snapshot)));
+
+        // the graph is not closed, as if it had crashed
+        final TinkerGraph g1 = TinkerGraph.open(Optional.of(configuration));
+        check.accept(g1);
+        assertEquals("logged", g1.vertices.get("1").getValue("name"));
+        g1.close();
+        g.close();
+        Files.walk(directory).sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldNotLogWithoutDirectory() {
+        final Configuration configuration = new BaseConfiguration();
+        configuration.setProperty(TinkerGraph.CONFIG_LOG, true);
+        TinkerGraph.open(Optional.of(configuration));
+    }
+
+    @Test
+    public void shouldReadMappedImage() throws Exception {
+        final Path image = Files.createTempFile("tinkergraph", ".img");
+        final TinkerGraph g = TinkerGraph.open();
+        g.annotations().set("source", "test");
+        final Vertex a = g.addVertex(Property.Key.ID, 1, Property.Key.LABEL, "person", "name", "marko", "age", 29);
+        final Vertex b = g.addVertex(Property.Key.ID, 2, "name", "vadas", "tags", Arrays.asList("x", "y"));
+        final Vertex c = g.addVertex(Property.Key.ID, "lop", "name", "lop");
+        a.addEdge("knows", b, Property.Key.ID, 7, "weight", 0.5f);
+        a.addEdge("created", c, "weight", 0.4f);
+        c.addEdge("self", c);
+        TinkerMappedGraph.write(g, image);
+
+        final TinkerMappedGraph m = TinkerMappedGraph.open(image);
+        assertEquals("test", m.annotations().get("source").get());
+        final Vertex marko = m.query().ids(1).vertices().iterator().next();
+        assertEquals("1", marko.getId());
+        assertEquals("person", marko.getLabel());
+        assertEquals(29, (int) marko.getValue("age"));
+        assertFalse(marko.getProperty("tags").isPresent());
+        assertEquals(new HashSet<>(Arrays.asList("name", "age")), marko.getPropertyKeys());
+        assertEquals(a, marko);
+        assertEquals(2, marko.query().direction(Direction.OUT).count());
+        assertEquals("vadas", marko.query().direction(Direction.OUT).labels("knows").vertices().iterator().next().getValue("name"));
+        assertEquals(0, marko.query().direction(Direction.IN).count());
+        assertEquals(0, marko.query().labels("missing").count());
+        assertEquals(1, marko.query().has("weight", Compare.LESS_THAN, 0.45f).count());
+        final Edge knows = m.query().ids(7).edges().iterator().next();
+        assertEquals(marko, knows.getVertex(Direction.OUT));
+        assertEquals(0.5f, knows.getValue("weight"), 0.0f);
+        assertEquals(Arrays.asList("x", "y"), knows.getVertex(Direction.IN).getValue("tags"));
+        final Vertex lop = m.query().has("name", "lop").vertices().iterator().next();
+        assertEquals(3, lop.query().count());
+        assertEquals(2, StreamFactory.stream(lop.query().direction(Direction.OUT).vertices()).count() + StreamFactory.stream(lop.query().labels("created").vertices()).count());
+        assertEquals(3, StreamFactory.stream(m.query().vertices()).count());
+        assertEquals(3, StreamFactory.stream(m.query().edges()).count());
+        assertFalse(m.query().ids("missing").vertices().iterator().hasNext());
+
+        try {
+            marko.setProperty("age", 30);
+            fail("The mapped graph is read-only");
+        } catch (final UnsupportedOperationException e) {
+        }
+        Files.delete(image);
+    }
+
+    @Test
+    public void shouldStorePropertiesInColumns() {
+        final TinkerGraph g = TinkerGraph.open();
+        final Vertex marko = g.addVertex(Property.Key.ID, 1, "name", "marko", "age", 29, "lang", "java");
+        g.createColumn("age", Vertex.class, Integer.class);
+        g.createColumn("lang", Vertex.class, String.class);
+        g.createColumn("weight", Edge.class, Float.class);
+        assertEquals(new HashSet<>(Arrays.asList("age", "lang")), g.getColumnKeys(Vertex.class));
+        assertEquals(29, (int) marko.getValue("age"));
+        for (int i = 0; i < 100; i++) {
+            final Vertex v = g.addVertex("name", "v" + i, "age", i, "lang", i % 2 == 0 ? "java" : "scala");
+            marko.addEdge("knows", v, "weight", (float) i / 100);
+        }
+        marko.setProperty("age", 30);
+        assertEquals(30, (int) marko.getValue("age"));
+        assertEquals(new HashSet<>(Arrays.asList("name", "age", "lang")), marko.getPropertyKeys());
+        assertEquals(69, StreamFactory.stream(g.query().has("age", Compare.GREATER_THAN, 30).vertices()).count());
+        assertEquals(51, StreamFactory.stream(g.query().has("lang", "java").vertices()).count());
+        assertEquals(25, StreamFactory.stream(g.query().has("lang", "java").has("age", Compare.GREATER_THAN_EQUAL, 50).vertices()).count());
+        assertEquals(10, StreamFactory.stream(g.query().has("weight", Compare.LESS_THAN, 0.1f).edges()).count());
+        assertEquals(10, marko.query().direction(Direction.OUT).has("weight", Compare.LESS_THAN, 0.1f).count());
+
+        final Map<String, Property> view = marko.getPropertiesView();
+        final Set<Integer> freed = StreamFactory.stream(g.query().has("age", Compare.LESS_THAN, 10).vertices())
+                .map(v -> ((TinkerElement) v).ordinal).collect(Collectors.toSet());
+        g.query().has("age", Compare.LESS_THAN, 10).vertices().forEach(Vertex::remove);
+        marko.getProperty("lang").remove();
+        assertFalse(marko.getProperty("lang").isPresent());
+        assertEquals(new HashSet<>(Arrays.asList("name", "age")), view.keySet());
+        assertEquals(2, view.size());
+
+        // the ordinals of the removed vertices are given to the new ones
+        for (int i = 0; i < 10; i++) {
+            assertTrue(freed.contains(((TinkerElement) g.addVertex("age", 1000 + i)).ordinal));
+        }
+        assertEquals(10, StreamFactory.stream(g.query().has("age", Compare.GREATER_THAN_EQUAL, 1000).vertices()).count());
+        g.query().has("age", Compare.GREATER_THAN_EQUAL, 1000).vertices().forEach(Vertex::remove);
+        assertEquals(0, StreamFactory.stream(g.query().has("age", Compare.LESS_THAN, 10).vertices()).count());
+        assertEquals(45, StreamFactory.stream(g.query().has("lang", "java").vertices()).count());
+        assertEquals(90, StreamFactory.stream(g.query().has("weight", Compare.GREATER_THAN_EQUAL, 0.0f).edges()).count());
+
+        try {
+            marko.setProperty("age", "thirty");
+            fail("Only integers can be set on an integer column");
+        } catch (final UnsupportedOperationException e) {
+        }
+        assertEquals(30, (int) marko.getValue("age"));
+
+        g.dropColumn("age", Vertex.class);
+        g.dropColumn("lang", Vertex.class);
+        assertTrue(g.getColumnKeys(Vertex.class).isEmpty());
+        assertEquals(30, (int) marko.getValue("age"));
+        assertEquals(69, StreamFactory.stream(g.query().has("age", Compare.GREATER_THAN, 30).vertices()).count());
+        marko.setProperty("age", "thirty");
+        assertEquals("thirty", marko.getValue("age"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldNotCreateColumnOfOtherTypedValues() {
+        final TinkerGraph g = TinkerGraph.open();
+        g.addVertex("age", 29);
+        g.addVertex("age", "old");
+        g.createColumn("age", Vertex.class, Integer.class);
+    }
+
+    @Test
+    public void shouldTraverseAndMutateCompactedAdjacency() {
+        final TinkerGraph g = TinkerGraph.open();
+        final Vertex a = g.addVertex();
+        final Vertex b = g.addVertex();
+        final Vertex c = g.addVertex();
+        a.addEdge("knows", b);
+        a.addEdge("knows", c);
+        a.addEdge("created", c);
+        final Edge loop = a.addEdge("self", a);
+        b.addEdge("knows", c);
+        loop.remove();
+        g.compact();
+
+        assertEquals(3, StreamFactory.stream(a.query().direction(Direction.OUT).edges()).count());
+        assertEquals(2, StreamFactory.stream(a.query().direction(Direction.OUT).labels("knows").vertices()).count());
+        assertEquals(1, StreamFactory.stream(a.query().direction(Direction.OUT).labels("created", "self").edges()).count());
+        assertEquals(3, StreamFactory.stream(c.query().direction(Direction.IN).edges()).count());
+        assertEquals(1, StreamFactory.stream(b.query().direction(Direction.BOTH).labels("knows").adjacents(c).edges()).count());
+
+        final Edge e = a.addEdge("knows", a);
+        assertEquals(3, StreamFactory.stream(a.query().direction(Direction.OUT).labels("knows").edges()).count());
+        assertEquals(1, StreamFactory.stream(a.query().direction(Direction.IN).edges()).count());
+        assertEquals(1, StreamFactory.stream(b.query().direction(Direction.OUT).edges()).count());
+        e.remove();
+        c.remove();
+        assertEquals(1, StreamFactory.stream(a.query().direction(Direction.BOTH).edges()).count());
+        assertEquals(1, StreamFactory.stream(b.query().direction(Direction.BOTH).edges()).count());
+        assertEquals(1, g.edges.size());
+    }
+
+    @Test
+    public void shouldRemoveEdgesWhileIteratingAdjacency() {
+        final TinkerGraph g = TinkerGraph.open();
+        final Vertex v = g.addVertex();
+        for (int i = 0; i < 100; i++) {
+            v.addEdge(i % 2 == 0 ? "even" : "odd", g.addVertex());
+        }
+        g.compact();
+        v.query().direction(Direction.OUT).labels("even").edges().forEach(Edge::remove);
+        assertEquals(50, StreamFactory.stream(v.query().direction(Direction.OUT).edges()).count());
+        v.remove();
+        assertEquals(0, g.edges.size());
+        assertEquals(100, g.vertices.size());
+    }
+
+    @Test
+    public void shouldApplyAdjacentsAndLimitWhileWalkingAdjacency() {
+        final TinkerGraph g = TinkerGraph.open();
+        final Vertex a = g.addVertex();
+        final Vertex b = g.addVertex();
+        final Vertex c = g.addVertex();
+        a.addEdge("knows", b);
+        b.addEdge("knows", a);
+        a.addEdge("knows", c);
+        c.addEdge("created", a);
+
+        assertEquals(2, StreamFactory.stream(a.query().direction(Direction.BOTH).adjacents(b).edges()).count());
+        assertEquals(2, a.query().direction(Direction.BOTH).adjacents(b).count());
+        assertEquals(1, StreamFactory.stream(a.query().direction(Direction.OUT).adjacents(c).vertices()).count());
+        assertEquals(0, a.query().direction(Direction.IN).labels("knows").adjacents(c).count());
+        assertEquals(3, StreamFactory.stream(a.query().direction(Direction.BOTH).limit(3).vertices()).count());
+        assertEquals(3, a.query().direction(Direction.BOTH).limit(3).count());
+        assertEquals(4, a.query().direction(Direction.BOTH).count());
+        assertEquals(1, a.query().direction(Direction.IN).labels("created").count());
+
+        final Iterable<Vertex> vertices = a.query().direction(Direction.OUT).vertices();
+        assertEquals(2, StreamFactory.stream(vertices).count());
+        assertEquals(2, StreamFactory.stream(vertices).count());
+    }
+
+    @Test
+    public void shouldUseVertexCentricIndices() {
+        final TinkerGraph g = TinkerGraph.open();
+        final Vertex v = g.addVertex();
+        for (int i = 0; i < 100; i++) {
+            v.addEdge("rated", g.addVertex(), "stars", i % 10);
+            v.addEdge("knows", g.addVertex(), "stars", i % 10);
+        }
+        g.createVertexCentricIndex("rated", "stars");
+        assertTrue(g.getVertexCentricIndexedKeys("rated").contains("stars"));
+        assertEquals(0, g.getVertexCentricIndexedKeys("knows").size());
+
+        // a spy into the has-containers shows that only the edges in the range are evaluated
+        assertEquals(30, StreamFactory.stream(v.query().direction(Direction.OUT).labels("rated").has("stars", Compare.GREATER_THAN, 6).has("stars", (t, u) -> {
+            assertTrue((int) t > 6);
+            return true;
+        }, 0).edges()).count());
+        assertEquals(20, StreamFactory.stream(v.query().direction(Direction.OUT).labels("rated").interval("stars", 3, 5).has("stars", (t, u) -> {
+            assertTrue((int) t >= 3 && (int) t < 5);
+            return true;
+        }, 0).vertices()).count());
+        assertEquals(10, v.query().direction(Direction.OUT).labels("rated").has("stars", 9).count());
+        assertEquals(10, v.query().direction(Direction.BOTH).labels("rated").has("stars", Compare.LESS_THAN_EQUAL, 0).count());
+        assertEquals(0, v.query().direction(Direction.OUT).labels("rated").has("stars", Compare.GREATER_THAN, 9).count());
+        assertEquals(0, v.query().direction(Direction.OUT).labels("rated").interval("stars", 5, 3).count());
+        assertEquals(30, v.query().direction(Direction.OUT).labels("knows").has("stars", Compare.GREATER_THAN_EQUAL, 7).count());
+        assertEquals(60, v.query().direction(Direction.OUT).labels("rated", "knows").has("stars", Compare.GREATER_THAN_EQUAL, 7).count());
+
+        // the index is maintained as edges and their properties change
+        final Edge e = v.addEdge("rated", g.addVertex(), "stars", 100);
+        assertEquals(1, v.query().direction(Direction.OUT).labels("rated").has("stars", Compare.GREATER_THAN, 9).count());
+        e.setProperty("stars", 5);
+        assertEquals(0, v.query().direction(Direction.OUT).labels("rated").has("stars", Compare.GREATER_THAN, 9).count());
+        assertEquals(11, v.query().direction(Direction.OUT).labels("rated").has("stars", 5).count());
+        e.getProperty("stars").remove();
+        assertEquals(10, v.query().direction(Direction.OUT).labels("rated").has("stars", 5).count());
+        e.setProperty("stars", 5);
+        e.remove();
+        assertEquals(10, v.query().direction(Direction.OUT).labels("rated").has("stars", 5).count());
+        v.query().direction(Direction.OUT).labels("rated").has("stars", Compare.GREATER_THAN_EQUAL, 5).edges().forEach(Edge::remove);
+        assertEquals(0, v.query().direction(Direction.OUT).labels("rated").has("stars", Compare.GREATER_THAN_EQUAL, 5).count());
+        assertEquals(50, v.query().direction(Direction.OUT).labels("rated").count());
+
+        g.dropVertexCentricIndex("rated", "stars");
+        assertEquals(0, g.getVertexCentricIndexedKeys("rated").size());
+        assertEquals(10, v.query().direction(Direction.OUT).labels("rated").has("stars", 4).count());
+    }
+
+    @Test
+    public void shouldSortVertexCentricIndicesByTheNextKeyWhenTheSortKeyIsDropped() {
+        final TinkerGraph g = TinkerGraph.open();
+        final Vertex v = g.addVertex();
+        for (int i = 0; i < 100; i++) {
+            v.addEdge("rated", g.addVertex(), "stars", i % 10, "since", i);
+        }
+        g.createVertexCentricIndex("rated", "stars");
+        g.createVertexCentricIndex("rated", "since");
+        assertEquals(30, v.query().direction(Direction.OUT).labels("rated").has("stars", Compare.GREATER_THAN, 6).count());
+        assertEquals(10, v.query().direction(Direction.OUT).labels("rated").interval("since", 40, 50).count());
+
+        g.dropVertexCentricIndex("rated", "stars");
+        assertEquals(10, v.query().direction(Direction.OUT).labels("rated").interval("since", 40, 50).has("since", (t, u) -> {
+            assertTrue((int) t >= 40 && (int) t < 50);
+            return true;
+        }, 0).count());
+        v.addEdge("rated", g.addVertex(), "since", 45);
+        assertEquals(11, v.query().direction(Direction.OUT).labels("rated").interval("since", 40, 50).count());
+        v.addEdge("rated", g.addVertex(), "since", "unknown");
+        assertEquals(1, v.query().direction(Direction.OUT).labels("rated").has("since", "unknown").count());
+        assertEquals(102, v.query().direction(Direction.OUT).labels("rated").count());
+    }
+
+    @Test
+    public void shouldUseSortedIndicesForRanges() {
+        final TinkerGraph g = TinkerGraph.open();
+        for (int i = 0; i < 100; i++) {
+            g.addVertex("time", (long) i, "oid", i);
+        }
+        g.createIndex("time", Vertex.class, TinkerGraph.IndexType.SORTED);
+
+        // a spy into the pipeline for index check.  only the vertices in the range should pass through it.
+        assertEquals(10, StreamFactory.stream(g.query().has("oid", (t, u) -> {
+            assertTrue((int) t >= 90);
+            return true;
+        }, 0).has("time", Compare.GREATER_THAN_EQUAL, 90l).vertices()).count());
+        assertEquals(20, StreamFactory.stream(g.query().has("oid", (t, u) -> {
+            assertTrue((int) t >= 10 && (int) t < 30);
+            return true;
+        }, 0).interval("time", 10l, 30l).vertices()).count());
+        assertEquals(5, StreamFactory.stream(g.query().has("time", Compare.LESS_THAN, 5l).vertices()).count());
+        assertEquals(1, StreamFactory.stream(g.query().has("time", 50l).vertices()).count());
+        assertEquals(0, StreamFactory.stream(g.query().interval("time", 30l, 10l).vertices()).count());
+
+        // values of other classes are not equal to a value but can not be compared with it, as in a scan
+        final Vertex yesterday = g.addVertex("time", "yesterday");
+        assertEquals(1, StreamFactory.stream(g.query().has("time", "yesterday").vertices()).count());
+        assertEquals(1, StreamFactory.stream(g.query().has("time", 50l).vertices()).count());
+        try {
+            StreamFactory.stream(g.query().has("time", Compare.LESS_THAN, 5l).vertices()).count();
+            fail("A range over values of different classes should fail");
+        } catch (ClassCastException e) {
+        }
+        yesterday.remove();
+
+        // the index follows updates
+        final Vertex v = g.query().has("time", 50l).vertices().iterator().next();
+        v.setProperty("time", 1000l);
+        assertEquals(11, StreamFactory.stream(g.query().has("time", Compare.GREATER_THAN, 89l).vertices()).count());
+        v.remove();
+        assertEquals(10, StreamFactory.stream(g.query().has("time", Compare.GREATER_THAN, 89l).vertices()).count());
+
+        // a hash index does not answer ranges but the query still does
+        g.createIndex("time", Vertex.class);
+        assertEquals(10, StreamFactory.stream(g.query().has("time", Compare.GREATER_THAN, 89l).vertices()).count());
+        assertEquals(1, StreamFactory.stream(g.query().has("time", 49l).vertices()).count());
+    }
+
+    @Test
+    public void shouldUseTheMostSelectiveIndex() {
+        final TinkerGraph g = TinkerGraph.open();
+        g.createIndex("type", Vertex.class);
+        g.createIndex("name", Vertex.class);
+        g.createIndex("time", Vertex.class, TinkerGraph.IndexType.SORTED);
+        for (int i = 0; i < 1000; i++) {
+            g.addVertex("type", i % 100 == 0 ? "person" : "event", "name", "v" + (i % 500), "time", i);
+        }
+
+        final AtomicInteger evaluated = new AtomicInteger(0);
+        assertEquals(2, StreamFactory.stream(g.query().has("type", "event").has("name", "v1").has("time", (t, u) -> {
+            evaluated.incrementAndGet();
+            return true;
+        }, 0).vertices()).count());
+        assertEquals(2, evaluated.getAndSet(0));
+
+        // the range on time is narrower than the exact match on type
+        assertEquals(10, StreamFactory.stream(g.query().has("type", "event").interval("time", 10, 20).has("name", (t, u) -> {
+            evaluated.incrementAndGet();
+            return true;
+        }, 0).vertices()).count());
+        assertEquals(10, evaluated.getAndSet(0));
+
+        // the exact match on name is narrower than the range on time
+        assertEquals(1, StreamFactory.stream(g.query().has("time", Compare.GREATER_THAN, 100).has("name", "v1").has("type", (t, u) -> {
+            evaluated.incrementAndGet();
+            return true;
+        }, 0).vertices()).count());
+        assertEquals(1, evaluated.getAndSet(0));
+
+        // both exact matches are intersected
+        assertEquals(0, StreamFactory.stream(g.query().has("time", (t, u) -> {
+            evaluated.incrementAndGet();
+            return true;
+        }, 0).has("type", "event").has("name", "v0").vertices()).count());
+        assertEquals(0, evaluated.get());
+    }
+
+    @Test
+    public void shouldUseIndicesForContainsAndIds() {
+        final TinkerGraph g = TinkerGraph.open();
+        g.createIndex("type", Vertex.class);
+        for (int i = 0; i < 1000; i++) {
+            g.addVertex(Property.Key.ID, i, "type", "t" + (i % 100), "name", "v" + i);
+        }
+
+        final AtomicInteger evaluated = new AtomicInteger(0);
+        assertEquals(30, StreamFactory.stream(g.query().has("type", Contains.IN, Arrays.asList("t1", "t2", "t3", "t3", "x")).has("name", (t, u) -> {
+            evaluated.incrementAndGet();
+            return true;
+        }, 0).vertices()).count());
+        assertEquals(30, evaluated.getAndSet(0));
+
+        assertEquals(990, StreamFactory.stream(g.query().has("type", Contains.NOT_IN, Arrays.asList("t1", "x")).vertices()).count());
+
+        assertEquals(3, StreamFactory.stream(g.query().ids(1, 2, 2, 3, 5000).has("name", (t, u) -> {
+            evaluated.incrementAndGet();
+            return true;
+        }, 0).vertices()).count());
+        assertEquals(3, evaluated.getAndSet(0));
+        assertEquals("v7", g.query().has(Property.Key.ID, 7).vertices().iterator().next().getValue("name"));
+        assertFalse(g.query().has(Property.Key.ID, 5000).vertices().iterator().hasNext());
+
+        final PartitionGraphStrategy strategy = new PartitionGraphStrategy(Property.Key.hidden("partition"), "a");
+        g.strategy().set(Optional.of(strategy));
+        g.createIndex(Property.Key.hidden("partition"), Vertex.class);
+        g.addVertex("name", "a1");
+        strategy.setWritePartition("b");
+        g.addVertex("name", "b1");
+        g.addVertex("name", "b2");
+        strategy.addReadPartition("a");
+        strategy.addReadPartition("b");
+        assertEquals(3, StreamFactory.stream(g.query().has("name", (t, u) -> {
+            evaluated.incrementAndGet();
+            return true;
+        }, 0).vertices()).count());
+        assertEquals(3, evaluated.getAndSet(0));
+    }
+
+    @Test
+    public void shouldLookUpIdsDirectly() {
+        final TinkerGraph g = TinkerGraph.open();
+        final Object[] ids = new Object[5000];
+        for (int i = 0; i < 10000; i++) {
+            final Vertex v = g.addVertex(Property.Key.ID, i);
+            v.addEdge("self", v, Property.Key.ID, "e" + i);
+            if (i % 2 == 0)
+                ids[i / 2] = i;
+        }
+        assertEquals(5000, StreamFactory.stream(new GraphQueryBuilder().ids(ids).build(g).vertices()).count());
+        assertEquals(Arrays.asList("0", "2", "4"), StreamFactory.stream(g.query().ids(ids).limit(3).vertices()).map(Vertex::getId).collect(Collectors.toList()));
+        assertEquals(2, StreamFactory.stream(g.query().ids("e1", "e2", "x").edges()).count());
+
+        final TinkerGraph h = TinkerGraph.open();
+        h.createIndex(Property.Key.hidden("myId"), Vertex.class);
+        h.strategy().set(Optional.of(new IdGraphStrategy("myId")));
+        final Vertex v = h.addVertex(Property.Key.ID, "a");
+        h.addVertex(Property.Key.ID, "b");
+        assertEquals(v, new GraphQueryBuilder().ids("a").build(h).vertices().iterator().next());
+    }
+
+    @Test
+    public void shouldProvideIndexStatistics() {
+        final TinkerGraph g = TinkerGraph.open();
+        g.createIndex("type", Vertex.class);
+        for (int i = 0; i < 100; i++) {
+            g.addVertex("type", i % 10 == 0 ? "person" : "event");
+        }
+        final Vertex v = g.addVertex("type", "software");
+
+        TinkerIndexStatistics statistics = g.getIndexStatistics("type", Vertex.class).get();
+        assertEquals("type", statistics.getKey());
+        assertEquals(101, statistics.getElementCount());
+        assertEquals(3, statistics.getDistinctValues());
+        assertEquals(90, statistics.getMaxValueCount());
+
+        v.remove();
+        g.query().has("type", "person").vertices().forEach(p -> p.setProperty("type", "event"));
+        statistics = g.getIndexStatistics("type", Vertex.class).get();
+        assertEquals(100, statistics.getElementCount());
+        assertEquals(1, statistics.getDistinctValues());
+        assertEquals(100.0d, statistics.getAverageValueCount(), 0.0d);
+
+        assertFalse(g.getIndexStatistics("name", Vertex.class).isPresent());
+        assertFalse(g.getIndexStatistics("type", Edge.class).isPresent());
+    }
+
+    @Test
+    public void shouldRemoveAllFromIndices() {
+        final TinkerGraph g = TinkerGraph.open();
+        g.createIndex("type", Vertex.class);
+        g.createIndex("weight", Edge.class);
+        g.createIndex(Property.Key.LABEL, Edge.class);
+        final List<Vertex> vertices = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            vertices.add(g.addVertex("type", i % 2 == 0 ? "person" : "event"));
+        }
+        for (int i = 1; i < 100; i++) {
+            vertices.get(i - 1).addEdge("next", vertices.get(i), "weight", i % 3);
+        }
+        final Edge e = vertices.get(99).addEdge("last", vertices.get(0), "weight", 1);
+
+        // the edges of the removed vertices go too and the removed edge is skipped once its vertex is removed
+        g.removeAll(Arrays.asList(vertices.get(0), e, vertices.get(1)));
+        assertEquals(98, StreamFactory.stream(g.query().vertices()).count());
+        assertEquals(97, StreamFactory.stream(g.query().edges()).count());
+        assertEquals(98, g.getIndexStatistics("type", Vertex.class).get().getElementCount());
+        assertEquals(49, g.getIndexStatistics("type", Vertex.class).get().getMaxValueCount());
+        assertEquals(97, g.getIndexStatistics("weight", Edge.class).get().getElementCount());
+        assertEquals(97, g.getIndexStatistics(Property.Key.LABEL, Edge.class).get().getElementCount());
+        assertFalse(g.query().has(Property.Key.LABEL, "last").edges().iterator().hasNext());
+
+        g.removeAll(g.query().has("type", "person").vertices());
+        assertEquals(49, StreamFactory.stream(g.query().vertices()).count());
+        assertEquals(0, StreamFactory.stream(g.query().edges()).count());
+        assertEquals(49, g.getIndexStatistics("type", Vertex.class).get().getElementCount());
+        assertEquals(0, g.getIndexStatistics("weight", Edge.class).get().getElementCount());
+        assertFalse(g.query().has("type", "person").vertices().iterator().hasNext());
+
+        final Vertex v = vertices.get(3);
+        v.setProperty("type", "software");
+        v.remove();
+        assertEquals(48, g.getIndexStatistics("type", Vertex.class).get().getElementCount());
+        assertEquals(1, g.getIndexStatistics("type", Vertex.class).get().getDistinctValues());
+        assertEquals(0, v.getPropertyKeys().size());
+    }
+
+    @Test
+    public void shouldBulkLoad() {
+        final TinkerGraph g = TinkerGraph.open();
+        g.createIndex("type", Vertex.class);
+        g.createIndex(Property.Key.LABEL, Edge.class);
+        final TinkerBulkLoader loader = g.bulkLoader(1000, 2000);
+        loader.addVertices(IntStream.range(0, 1000).mapToObj(i -> new Object[]{Property.Key.ID, i, "type", i % 10 == 0 ? "hub" : "leaf"}));
+        loader.addEdges(IntStream.range(0, 1000).mapToObj(i -> new Object[]{i - i % 10, "hub", i, "weight", 1.0d}));
+        loader.addEdges(IntStream.range(0, 1000).mapToObj(i -> new Object[]{i, "next", (i + 1) % 1000}));
+        final Vertex v = loader.addVertex("type", "other");
+        loader.addEdge(v, "next", "0");
+
+        // nothing is indexed or adjacent until the load is finished
+        assertEquals(1001, StreamFactory.stream(g.query().vertices()).count());
+        assertFalse(g.query().has("type", "hub").vertices().iterator().hasNext());
+        loader.finish();
+
+        assertEquals(2001, StreamFactory.stream(g.query().edges()).count());
+        assertEquals(100, StreamFactory.stream(g.query().has("type", "hub").vertices()).count());
+        assertEquals(1001, StreamFactory.stream(g.query().has(Property.Key.LABEL, "next").edges()).count());
+        final Vertex hub = g.query().ids("10").vertices().iterator().next();
+        assertEquals(11, StreamFactory.stream(hub.query().direction(Direction.OUT).edges()).count());
+        final Vertex first = g.query().ids("0").vertices().iterator().next();
+        assertEquals(2, StreamFactory.stream(first.query().direction(Direction.IN).labels("next").edges()).count());
+        // vertices and edges share the id generator, which has observed the loaded ids
+        assertEquals("3000", v.getId());
+        assertEquals("3002", g.addVertex().getId());
+
+        try {
+            loader.addVertex();
+            fail("The loader should not be usable once the load is finished");
+        } catch (IllegalStateException e) {
+        }
+        try {
+            g.bulkLoader().addEdge(0, "next", 5000);
+            fail("The in vertex does not exist");
+        } catch (IllegalStateException e) {
+        }
+    }
+
+    @Test
+    public void shouldBulkLoadIntoLoggedGraph() throws Exception {
+        final Path directory = Files.createTempDirectory("tinkergraph");
+        final Configuration configuration = new BaseConfiguration();
+        configuration.setProperty(TinkerGraph.CONFIG_DIRECTORY, directory.toString());
+        configuration.setProperty(TinkerGraph.CONFIG_LOG, true);
+        configuration.setProperty(TinkerGraph.CONFIG_LOG_SYNC, true);
+        configuration.setProperty(TinkerGraph.CONFIG_CHECKPOINT_INTERVAL, 5);
+        final TinkerGraph g = TinkerGraph.open(Optional.of(configuration));
+        g.addVertex(Property.Key.ID, "a");
+
+        final TinkerBulkLoader loader = g.bulkLoader(10000, 10000);
+        final ExecutorService executor = Executors.newSingleThreadExecutor();
+        final Future<Vertex> writer = executor.submit(() -> g.addVertex(Property.Key.ID, "b"));
+        for (int i = 0; i < 10; i++) {
+            loader.addVertices(IntStream.range(i * 1000, (i + 1) * 1000).mapToObj(j -> new Object[]{Property.Key.ID, j, "name", "v" + j}));
+            Thread.sleep(5);
+        }
+        loader.addEdges(IntStream.range(0, 10000).mapToObj(i -> new Object[]{i, "next", (i + 1) % 10000}));
+        // other writers wait for the load to finish
+        assertFalse(writer.isDone());
+        loader.finish();
+        final Vertex b = writer.get();
+        executor.shutdown();
+
+        // the records of ordinary writers refer to loaded elements
+        g.vertices.get("0").addEdge("knows", b);
+        g.vertices.get("1").setProperty("name", "marko");
+
+        // the graph is not closed, as if it had crashed
+        final TinkerGraph g1 = TinkerGraph.open(Optional.of(configuration));
+        assertEquals(10002, g1.vertices.size());
+        assertEquals(10001, g1.edges.size());
+        assertEquals("marko", g1.vertices.get("1").getValue("name"));
+        assertEquals("v2", g1.vertices.get("2").getValue("name"));
+        assertEquals(1, g1.vertices.get("b").query().direction(Direction.IN).labels("knows").count());
+        assertEquals(1, g1.vertices.get("0").query().direction(Direction.IN).labels("next").count());
+
+        g1.close();
+        g.close();
+        Files.walk(directory).sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+    }
+
+    @Test
+    public void shouldReplayMutationsOfAnnotatedLists() throws Exception {
+        final Path directory = Files.createTempDirectory("tinkergraph");
+        final Configuration configuration = new BaseConfiguration();
+        configuration.setProperty(TinkerGraph.CONFIG_DIRECTORY, directory.toString());
+        configuration.setProperty(TinkerGraph.CONFIG_LOG, true);
+        configuration.setProperty(TinkerGraph.CONFIG_LOG_SYNC, true);
+        configuration.setProperty(TinkerGraph.CONFIG_CHECKPOINT_INTERVAL, 0);
+        final TinkerGraph g = TinkerGraph.open(Optional.of(configuration));
+        final Vertex a = g.addVertex(Property.Key.ID, "a");
+        a.setProperty("aliases", AnnotatedList.make());
+        final AnnotatedList<String> aliases = a.getValue("aliases");
+        aliases.addValue("x", "since", 2008);
+        aliases.addValue("y", "since", 2009);
+        aliases.addValue("z");
+        aliases.query().has("since", 2008).annotatedValues().iterator().next().remove();
+        aliases.query().annotatedValues().forEach(v -> {
+            if (v.getValue().equals("z"))
+                v.getAnnotations().set("since", 2010);
+        });
+
+        // the graph is not closed, as if it had crashed
+        final TinkerGraph g1 = TinkerGraph.open(Optional.of(configuration));
+        final AnnotatedList<String> replayed = g1.vertices.get("a").getValue("aliases");
+        assertEquals(Arrays.asList("y", "z"), StreamFactory.stream(replayed.query().values()).collect(Collectors.toList()));
+        assertEquals(Arrays.asList(2009, 2010), StreamFactory.stream(replayed.query().annotatedValues())
+                .map(v -> v.getAnnotations().get("since").get()).collect(Collectors.toList()));
+        g1.close();
+        g.close();
+        Files.walk(directory).sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+    }
+
+    @Test
+    public void shouldTakeImmutableSnapshot() throws Exception {
+        final TinkerGraph g = TinkerFactory.createClassic();
+        g.createIndex("name", Vertex.class);
+        g.createVertexCentricIndex("knows", "weight");
+        g.annotations().set("source", "classic");
+        final Vertex marko = g.query().has("name", "marko").vertices().iterator().next();
+        marko.setProperty("nicknames", AnnotatedList.make());
+        marko.<AnnotatedList<String>>getValue("nicknames").addValue("okram");
+
+        final TinkerGraph snapshot = g.snapshot();
+        g.addVertex("name", "stephen");
+        marko.remove();
+        assertEquals(6, StreamFactory.stream(snapshot.query().vertices()).count());
+        assertEquals(6, StreamFactory.stream(snapshot.query().edges()).count());
+        assertEquals(3, StreamFactory.stream(g.query().edges()).count());
+        assertEquals("classic", snapshot.annotations().get("source").get());
+        assertEquals(new HashSet<>(Arrays.asList("name")), snapshot.getIndexedKeys(Vertex.class));
+        assertEquals(new HashSet<>(Arrays.asList("weight")), snapshot.getVertexCentricIndexedKeys("knows"));
+
+        final Vertex copy = snapshot.query().has("name", "marko").vertices().iterator().next();
+        assertEquals(3, StreamFactory.stream(copy.query().direction(Direction.OUT).edges()).count());
+        assertEquals(1, StreamFactory.stream(copy.query().direction(Direction.OUT).labels("knows").has("weight", Compare.GREATER_THAN, 0.6f).edges()).count());
+        assertEquals(1, StreamFactory.stream(copy.<AnnotatedList<String>>getValue("nicknames").query().values()).count());
+        assertFalse(snapshot.query().has("name", "stephen").vertices().iterator().hasNext());
+
+        // the snapshot is read by many threads at once
+        final ExecutorService executor = Executors.newFixedThreadPool(4);
+        final List<Future<Long>> counts = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            counts.add(executor.submit(() -> StreamFactory.stream(snapshot.query().vertices())
+                    .mapToLong(v -> StreamFactory.stream(v.query().direction(Direction.BOTH).edges()).count()).sum()));
+        }
+        for (final Future<Long> count : counts) {
+            assertEquals(Long.valueOf(12), count.get());
+        }
+        executor.shutdown();
+
+        for (final Runnable mutation : Arrays.<Runnable>asList(
+                () -> snapshot.addVertex(),
+                () -> copy.setProperty("name", "okram"),
+                () -> copy.getProperty("name").remove(),
+                () -> copy.addEdge("knows", copy),
+                () -> copy.query().direction(Direction.OUT).edges().iterator().next().remove(),
+                () -> copy.remove(),
+                () -> snapshot.createIndex("age", Vertex.class),
+                () -> snapshot.annotations().set("source", "other"),
+                () -> snapshot.bulkLoader(),
+                () -> snapshot.clear(),
+                () -> copy.<AnnotatedList<String>>getValue("nicknames").addValue("marko"),
+                () -> copy.<AnnotatedList<String>>getValue("nicknames").query().annotatedValues().iterator().next().remove(),
+                () -> copy.<AnnotatedList<String>>getValue("nicknames").query().annotatedValues().iterator().next().getAnnotations().set("since", 2014))) {
+            try {
+                mutation.run();
+                fail("The snapshot should not be mutable");
+            } catch (UnsupportedOperationException e) {
+            }
+        }
+        assertEquals(6, StreamFactory.stream(snapshot.query().vertices()).count());
+        assertEquals("marko", copy.getValue("name"));
+    }
+
+    @Test
+    public void shouldTakeSnapshotsOfConcurrentGraphWhileItIsWritten() throws Exception {
+        final Configuration configuration = new BaseConfiguration();
+        configuration.setProperty(TinkerGraph.CONFIG_CONCURRENT, true);
+        final TinkerGraph g = TinkerGraph.open(Optional.of(configuration));
+        final Vertex hub = g.addVertex();
+        hub.setProperty("aliases", AnnotatedList.make());
+        final AnnotatedList<Integer> aliases = hub.getValue("aliases");
+
+        final ExecutorService executor = Executors.newFixedThreadPool(4);
+        final List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < 3; t++) {
+            futures.add(executor.submit(() -> {
+                for (int i = 0; i < 2000; i++) {
+                    final Vertex v = g.addVertex("count", i);
+                    v.addEdge("knows", hub, "count", i);
+                    hub.setProperty("count", i);
+                    aliases.addValue(i, "count", i);
+                    if (i % 2 == 0)
+                        v.remove();
+                }
+            }));
+        }
+        for (int i = 0; i < 20; i++) {
+            final TinkerGraph snapshot = g.snapshot();
+            for (final Edge edge : snapshot.query().edges()) {
+                assertTrue(snapshot.vertices.containsKey(edge.getVertex(Direction.OUT).getId()));
+                assertTrue(snapshot.vertices.containsKey(edge.getVertex(Direction.IN).getId()));
+            }
+            final TinkerAnnotatedList<Integer> copy = snapshot.vertices.get(hub.getId()).getValue("aliases");
+            assertEquals(StreamFactory.stream(copy.query().values()).count(), copy.size());
+        }
+        for (final Future<?> future : futures) {
+            future.get();
+        }
+        executor.shutdown();
+        assertEquals(6000, g.snapshot().vertices.get(hub.getId()).<TinkerAnnotatedList<Integer>>getValue("aliases").size());
+    }
+
+    @Test
+    public void shouldShareLabelsAndKeys() {
+        final TinkerGraph g = TinkerGraph.open();
+        final Vertex a = g.addVertex(Property.Key.LABEL, new String("person"), new String("name"), "marko");
+        final Vertex b = g.addVertex(Property.Key.LABEL, new String("person"), new String("name"), "stephen");
+        final Edge e = a.addEdge(new String("knows"), b);
+        final Edge f = b.addEdge(new String("knows"), a);
+        b.setProperty(new String("name"), "okram");
+
+        assertSame(a.getLabel(), b.getLabel());
+        assertSame(e.getLabel(), f.getLabel());
+        assertSame(a.getProperty("name").getKey(), b.getProperty("name").getKey());
+        assertSame(a.getPropertyKeys().iterator().next(), b.getPropertyKeys().iterator().next());
+
+        assertEquals(1, StreamFactory.stream(a.query().direction(Direction.OUT).labels("knows").edges()).count());
+        assertEquals(2, StreamFactory.stream(a.query().direction(Direction.BOTH).labels("knows", "likes").edges()).count());
+        assertEquals(0, StreamFactory.stream(a.query().direction(Direction.BOTH).labels("likes").edges()).count());
+        assertEquals(0, a.query().direction(Direction.BOTH).labels("unknown").count());
+    }
+
+    @Test
+    public void shouldQueryIndexedAnnotatedList() {
+        final TinkerGraph g = TinkerGraph.open();
+        final Vertex marko = g.addVertex();
+        marko.setProperty("locations", AnnotatedList.make());
+        final TinkerAnnotatedList<String> locations = marko.getValue("locations");
+        locations.addValue("san diego", "time", 1997);
+        locations.addValue("santa cruz", "time", 2001);
+        locations.addValue("brussels", "time", 2004);
+        locations.createKeyIndex("time");
+        locations.addValue("santa fe", "time", 2005);
+        locations.addValue("nowhere");
+
+        final Iterable<String> values = locations.query().values();
+        assertEquals(5, StreamFactory.stream(values).count());
+        assertEquals(Arrays.asList("santa cruz", "brussels"), StreamFactory.stream(locations.query().interval("time", 2000, 2005).values()).collect(Collectors.toList()));
+        assertEquals(Arrays.asList("santa fe"), StreamFactory.stream(locations.query().has("time", Compare.GREATER_THAN, 2004).values()).collect(Collectors.toList()));
+        assertEquals(0, StreamFactory.stream(locations.query().has("time", Compare.GREATER_THAN, 2005).values()).count());
+
+        locations.query().has("time", Compare.LESS_THAN, 2004).annotatedValues().iterator().next().getAnnotations().set("time", 2010);
+        assertEquals(Arrays.asList("santa fe", "san diego"), StreamFactory.stream(locations.query().has("time", Compare.GREATER_THAN, 2004).values()).collect(Collectors.toList()));
+
+        locations.query().annotatedValues().forEach(a -> {
+            if (!a.getAnnotations().get("time").isPresent() || a.getValue().startsWith("santa"))
+                a.remove();
+        });
+        assertEquals(2, locations.size());
+        assertEquals(Arrays.asList("san diego", "brussels"), StreamFactory.stream(values).collect(Collectors.toList()));
+        assertEquals(Arrays.asList("brussels", "san diego"), StreamFactory.stream(locations.query().has("time", Compare.GREATER_THAN, 0).values()).collect(Collectors.toList()));
+    }
+
+    @Test
+    public void shouldNotLoseMessagesSentInParallel() throws Exception {
+        final TinkerGraph g = TinkerGraph.open();
+        final Vertex hub = g.addVertex();
+        final Vertex spoke = g.addVertex();
+        spoke.addEdge("knows", hub);
+        for (int i = 1; i < 2000; i++) {
+            g.addVertex().addEdge("knows", hub);
+        }
+        final MessageType.Global global = MessageType.Global.of("global", hub);
+        final MessageType.Local local = MessageType.Local.of("local", new VertexQueryBuilder().direction(Direction.OUT));
+        final VertexProgram<Long> program = new VertexProgram<Long>() {
+            public void setup(final GraphMemory graphMemory) {
+            }
+
+            public void execute(final Vertex vertex, final Messenger<Long> messenger, final GraphMemory graphMemory) {
+                if (graphMemory.isInitialIteration()) {
+                    messenger.sendMessage(vertex, global, 1l);
+                    messenger.sendMessage(vertex, local, 1l);
+                } else {
+                    final long count = StreamFactory.stream(messenger.receiveMessages(vertex, global)).count() +
+                            StreamFactory.stream(messenger.receiveMessages(vertex, local)).count();
+                    vertex.setProperty("count", count);
+                }
+            }
+
+            public boolean terminate(final GraphMemory graphMemory) {
+                return graphMemory.getIteration() >= 2;
+            }
+
+            public Map<String, KeyType> getComputeKeys() {
+                return VertexProgram.ofComputeKeys("count", KeyType.VARIABLE);
+            }
+        };
+
+        for (int i = 0; i < 5; i++) {
+            final ComputeResult result = g.compute().program(program).submit().get();
+            assertEquals(4001l, (long) result.getVertexMemory().<Long>getProperty(hub, "count").get());
+            assertEquals(0l, (long) result.getVertexMemory().<Long>getProperty(spoke, "count").get());
+        }
+    }
+
+    @Test
+    public void shouldCombineMessagesSentToTheSameVertex() throws Exception {
+        final TinkerGraph g = TinkerGraph.open();
+        final Vertex hub = g.addVertex();
+        for (int i = 0; i < 1000; i++) {
+            g.addVertex();
+        }
+        final MessageType.Global global = MessageType.Global.of("global", hub);
+        final VertexProgram<Long> program = new VertexProgram<Long>() {
+            public void setup(final GraphMemory graphMemory) {
+            }
+
+            public void execute(final Vertex vertex, final Messenger<Long> messenger, final GraphMemory graphMemory) {
+                if (graphMemory.isInitialIteration())
+                    messenger.sendMessage(vertex, global, 2l);
+                else {
+                    final List<Long> messages = StreamFactory.stream(messenger.receiveMessages(vertex, global)).collect(Collectors.toList());
+                    vertex.setProperty("count", (long) messages.size());
+                    vertex.setProperty("sum", messages.stream().reduce(0l, Long::sum));
+                }
+            }
+
+            public boolean terminate(final GraphMemory graphMemory) {
+                return graphMemory.getIteration() >= 2;
+            }
+
+            public Map<String, KeyType> getComputeKeys() {
+                return VertexProgram.ofComputeKeys("count", KeyType.VARIABLE, "sum", KeyType.VARIABLE);
+            }
+
+            public Map<String, BinaryOperator<Long>> getMessageCombiners() {
+                return Collections.singletonMap("global", Long::sum);
+            }
+        };
+
+        final ComputeResult result = g.compute().program(program).submit().get();
+        assertEquals(1l, (long) result.getVertexMemory().<Long>getProperty(hub, "count").get());
+        assertEquals(2002l, (long) result.getVertexMemory().<Long>getProperty(hub, "sum").get());
+    }
+
+    @Test
+    public void shouldDeliverLocalMessagesThroughTheEdgeFunction() throws Exception {
+        final TinkerGraph g = TinkerGraph.open();
+        final Vertex a = g.addVertex();
+        final Vertex b = g.addVertex();
+        final Vertex c = g.addVertex();
+        a.addEdge("knows", b, "weight", 2.0d);
+        c.addEdge("knows", b, "weight", 4.0d);
+        final MessageType.Local local = MessageType.Local.of("local", new VertexQueryBuilder().direction(Direction.BOTH),
+                (Double m, Edge e) -> m / e.<Double>getValue("weight"));
+        final VertexProgram<Double> program = new VertexProgram<Double>() {
+            public void setup(final GraphMemory graphMemory) {
+            }
+
+            public void execute(final Vertex vertex, final Messenger<Double> messenger, final GraphMemory graphMemory) {
+                if (graphMemory.isInitialIteration())
+                    messenger.sendMessage(vertex, local, 8.0d);
+                else {
+                    final List<Double> messages = StreamFactory.stream(messenger.receiveMessages(vertex, local)).collect(Collectors.toList());
+                    vertex.setProperty("count", (long) messages.size());
+                    vertex.setProperty("sum", messages.stream().reduce(0.0d, Double::sum));
+                }
+            }
+
+            public boolean terminate(final GraphMemory graphMemory) {
+                return graphMemory.getIteration() >= 2;
+            }
+
+            public Map<String, KeyType> getComputeKeys() {
+                return VertexProgram.ofComputeKeys("count", KeyType.VARIABLE, "sum", KeyType.VARIABLE);
+            }
+
+            public Map<String, BinaryOperator<Double>> getMessageCombiners() {
+                return Collections.singletonMap("local", Double::sum);
+            }
+        };
+
+        final ComputeResult result = g.compute().program(program).submit().get();
+        assertEquals(1l, (long) result.getVertexMemory().<Long>getProperty(b, "count").get());
+        assertEquals(6.0d, result.getVertexMemory().<Double>getProperty(b, "sum").get(), 0.0d);
+        assertEquals(4.0d, result.getVertexMemory().<Double>getProperty(a, "sum").get(), 0.0d);
+        assertEquals(2.0d, result.getVertexMemory().<Double>getProperty(c, "sum").get(), 0.0d);
+    }
+
+    @Test
+    public void shouldOnlySeeComputeKeysOfThePreviousIteration() throws Exception {
+        final TinkerGraph g = TinkerGraph.open();
+        for (int i = 0; i < 3000; i++) {
+            g.addVertex();
+        }
+        final VertexProgram<Long> program = new VertexProgram<Long>() {
+            public void setup(final GraphMemory graphMemory) {
+            }
+
+            public void execute(final Vertex vertex, final Messenger<Long> messenger, final GraphMemory graphMemory) {
+                if (graphMemory.isInitialIteration()) {
+                    vertex.setProperty("start", (long) graphMemory.getIteration());
+                    try {
+                        vertex.setProperty("start", 1l);
+                        fail("A constant compute key can only be set once");
+                    } catch (IllegalStateException e) {
+                    }
+                } else
+                    assertEquals(graphMemory.getIteration() - 1, (long) vertex.<Long>getValue("count"));
+                assertFalse(graphMemory.isInitialIteration() && vertex.getProperty("count").isPresent());
+                vertex.setProperty("count", (long) graphMemory.getIteration());
+            }
+
+            public boolean terminate(final GraphMemory graphMemory) {
+                return graphMemory.getIteration() >= 3;
+            }
+
+            public Map<String, KeyType> getComputeKeys() {
+                return VertexProgram.ofComputeKeys("start", KeyType.CONSTANT, "count", KeyType.VARIABLE);
+            }
+        };
+
+        final ComputeResult result = g.compute().program(program).submit().get();
+        for (final Vertex vertex : g.query().vertices()) {
+            assertEquals(0l, (long) result.getVertexMemory().<Long>getProperty(vertex, "start").get());
+            assertEquals(2l, (long) result.getVertexMemory().<Long>getProperty(vertex, "count").get());
+        }
+    }
+
+    @Test
+    public void shouldOnlyExecuteTheVerticesOfThePartition() throws Exception {
+        final TinkerGraph g = TinkerGraph.open();
+        final PartitionGraphStrategy strategy = new PartitionGraphStrategy(Property.Key.hidden("partition"), "a");
+        g.strategy().set(Optional.of(strategy));
+        final Vertex a = g.addVertex("name", "a");
+        strategy.setWritePartition("b");
+        final Vertex b = g.addVertex("name", "b");
+        strategy.addReadPartition("a");
+        final VertexProgram<Long> program = new VertexProgram<Long>() {
+            public void setup(final GraphMemory graphMemory) {
+            }
+
+            public void execute(final Vertex vertex, final Messenger<Long> messenger, final GraphMemory graphMemory) {
+                vertex.setProperty("count", 1l);
+            }
+
+            public boolean terminate(final GraphMemory graphMemory) {
+                return true;
+            }
+
+            public Map<String, KeyType> getComputeKeys() {
+                return VertexProgram.ofComputeKeys("count", KeyType.VARIABLE);
+            }
+        };
+
+        final ComputeResult result = g.compute().program(program).submit().get();
+        assertEquals(1l, (long) result.getVertexMemory().<Long>getProperty(a, "count").get());
+        assertFalse(result.getVertexMemory().getProperty(b, "count").isPresent());
+    }
+
+    @Test
+    public void shouldViewThePropertiesOfTheStateOfTheVertex() throws Exception {
+        final TinkerGraph g = TinkerGraph.open();
+        final Vertex a = g.addVertex("name", "a");
+        final Vertex b = g.addVertex("name", "b");
+        a.addEdge("knows", b);
+        final VertexProgram<Long> program = new VertexProgram<Long>() {
+            public void setup(final GraphMemory graphMemory) {
+            }
+
+            public void execute(final Vertex vertex, final Messenger<Long> messenger, final GraphMemory graphMemory) {
+                if (graphMemory.isInitialIteration())
+                    vertex.setProperty("count", 1l);
+                else {
+                    final Map<String, Property> properties = vertex.getPropertiesView();
+                    assertEquals(new HashSet<>(Arrays.asList("name")), properties.keySet());
+                    assertEquals(vertex.getValue("name"), properties.get("name").get());
+                    try {
+                        properties.get("name").remove();
+                        fail("The properties of a vertex can not be removed during a computation");
+                    } catch (UnsupportedOperationException e) {
+                    }
+                    for (final Vertex adjacent : vertex.query().direction(Direction.BOTH).vertices()) {
+                        try {
+                            adjacent.getPropertiesView();
+                            fail("The properties of an adjacent vertex can not be read");
+                        } catch (IllegalStateException e) {
+                        }
+                    }
+                }
+            }
+
+            public boolean terminate(final GraphMemory graphMemory) {
+                return graphMemory.getIteration() >= 2;
+            }
+
+            public Map<String, KeyType> getComputeKeys() {
+                return VertexProgram.ofComputeKeys("count", KeyType.VARIABLE);
+            }
+        };
+
+        g.compute().program(program).submit().get();
+        assertEquals(new HashSet<>(Arrays.asList("name")), a.getPropertiesView().keySet());
+    }
+
+    @Test
+    public void shouldExecuteEveryVertexOnceWithTheProvidedWorkers() throws Exception {
+        final TinkerGraph g = TinkerGraph.open();
+        final Vertex hub = g.addVertex();
+        for (int i = 0; i < 5000; i++) {
+            final Vertex v = g.addVertex();
+            if (i % 2 == 0)
+                v.addEdge("knows", hub);
+        }
+        final VertexProgram<Long> program = new VertexProgram<Long>() {
+            public void setup(final GraphMemory graphMemory) {
+            }
+
+            public void execute(final Vertex vertex, final Messenger<Long> messenger, final GraphMemory graphMemory) {
+                vertex.setProperty("count", graphMemory.isInitialIteration() ? 1l : vertex.<Long>getValue("count") + 1);
+            }
+
+            public boolean terminate(final GraphMemory graphMemory) {
+                return graphMemory.getIteration() >= 3;
+            }
+
+            public Map<String, KeyType> getComputeKeys() {
+                return VertexProgram.ofComputeKeys("count", KeyType.VARIABLE);
+            }
+        };
+
+        final ComputeResult result = g.compute().workers(3).program(program).submit().get();
+        for (final Vertex vertex : g.query().vertices()) {
+            assertEquals(3l, (long) result.getVertexMemory().<Long>getProperty(vertex, "count").get());
+        }
+
+        try {
+            g.compute().workers(0);
+            fail("A graph computer needs at least one worker");
+        } catch (IllegalArgumentException e) {
+        }
+    }
 }
@@ -0,0 +1,77 @@
+package com.tinkerpop.blueprints.tinkergraph;
+
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class TinkerLongMapTest {
+
+    @Test
+    public void shouldOnlyTreatCanonicalLongsAsLongKeys() {
+        assertTrue(TinkerLongMap.isLongKey("0"));
+        assertTrue(TinkerLongMap.isLongKey("12"));
+        assertTrue(TinkerLongMap.isLongKey("-12"));
+        assertTrue(TinkerLongMap.isLongKey(Long.toString(Long.MAX_VALUE)));
+        assertTrue(TinkerLongMap.isLongKey(Long.toString(Long.MIN_VALUE)));
+        assertFalse(TinkerLongMap.isLongKey("012"));
+        assertFalse(TinkerLongMap.isLongKey("-0"));
+        assertFalse(TinkerLongMap.isLongKey("-"));
+        assertFalse(TinkerLongMap.isLongKey(""));
+        assertFalse(TinkerLongMap.isLongKey("marko"));
+        assertFalse(TinkerLongMap.isLongKey("9223372036854775808"));
+        assertFalse(TinkerLongMap.isLongKey(12l));
+    }
+
+    @Test
+    public void shouldBehaveLikeAHashMap() {
+        final Map<String, Integer> expected = new HashMap<>();
+        final TinkerLongMap<Integer> map = new TinkerLongMap<>();
+        final Random random = new Random(12345l);
+        for (int i = 0; i < 100000; i++) {
+            final int value = random.nextInt(5000);
+            final String key = random.nextInt(10) == 0 ? "0" + value : Integer.toString(value - 2500);
+            if (random.nextBoolean()) {
+                assertEquals(expected.put(key, i), map.put(key, i));
+            } else {
+                assertEquals(expected.remove(key), map.remove(key));
+            }
+            assertEquals(expected.size(), map.size());
+        }
+        for (final Map.Entry<String, Integer> entry : expected.entrySet()) {
+            assertTrue(map.containsKey(entry.getKey()));
+            assertEquals(entry.getValue(), map.get(entry.getKey()));
+        }
+        assertEquals(expected.entrySet(), new HashSet<>(map.entrySet()));
+        assertEquals(new HashSet<>(expected.values()), new HashSet<>(map.values()));
+        assertNull(map.get("marko"));
+
+        map.clear();
+        assertEquals(0, map.size());
+        assertFalse(map.values().iterator().hasNext());
+    }
+
+    @Test
+    public void shouldAgreeOnLongAndStringKeys() {
+        final TinkerLongMap<String> map = new TinkerLongMap<>();
+        assertNull(map.putIfAbsent(12l, "a"));
+        assertEquals("a", map.putIfAbsent(12l, "b"));
+        assertEquals("a", map.putIfAbsent("12", "c"));
+        assertEquals("a", map.get("12"));
+        assertEquals("a", map.get(12l));
+        assertFalse(map.remove(12l, "b"));
+        assertFalse(map.remove("12", "b"));
+        assertTrue(map.remove(12l, "a"));
+        assertNull(map.get("12"));
+        assertNull(map.putIfAbsent("012", "d"));
+        assertTrue(map.remove("012", "d"));
+        assertEquals(0, map.size());
+    }
+}
@@ -9,8 +9,10 @@ import com.tinkerpop.blueprints.computer.VertexProgram;
 import com.tinkerpop.blueprints.query.util.VertexQueryBuilder;
 import com.tinkerpop.blueprints.util.StreamFactory;
 
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.function.BinaryOperator;
 
 /**
  * @author Marko A. Rodriguez (http://markorodriguez.com)
@@ -37,6 +39,10 @@ public class PageRankVertexProgram implements VertexProgram<Double> {
         return computeKeys;
     }
 
+    public Map<String, BinaryOperator<Double>> getMessageCombiners() {
+        return Collections.singletonMap(this.messageType.getLabel(), Double::sum);
+    }
+
     public void setup(final GraphMemory graphMemory) {
 
     }
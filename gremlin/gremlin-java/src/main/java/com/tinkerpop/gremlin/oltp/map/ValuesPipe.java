@@ -18,7 +18,7 @@ public class ValuesPipe extends MapPipe<Element, Map<String, Object>> {
             final Map<String, Object> values = new HashMap<>();
             final Element element = holder.get();
             if (null == keys || keys.length == 0) {
-                element.getPropertyKeys().forEach(key -> values.put(key, element.getValue(key)));
+                element.getPropertiesView().forEach((key, property) -> values.put(key, property.get()));
             } else {
                 for (final String key : keys) {
                     if (key.equals(Property.Key.ID))
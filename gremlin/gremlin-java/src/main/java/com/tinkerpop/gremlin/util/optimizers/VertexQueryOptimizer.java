@@ -52,8 +52,11 @@ public class VertexQueryOptimizer implements Optimizer.StepOptimizer {
                     return true;
             } else if (pipe instanceof IntervalPipe) {
                 final IntervalPipe intervalPipe = (IntervalPipe) pipe;
-                vertexQueryPipe.queryBuilder.has(intervalPipe.startContainer.key, intervalPipe.startContainer.predicate, intervalPipe.startContainer.value);
-                vertexQueryPipe.queryBuilder.has(intervalPipe.endContainer.key, intervalPipe.endContainer.predicate, intervalPipe.endContainer.value);
+                if (!vertexQueryPipe.returnClass.equals(Vertex.class)) {
+                    vertexQueryPipe.queryBuilder.has(intervalPipe.startContainer.key, intervalPipe.startContainer.predicate, intervalPipe.startContainer.value);
+                    vertexQueryPipe.queryBuilder.has(intervalPipe.endContainer.key, intervalPipe.endContainer.predicate, intervalPipe.endContainer.value);
+                } else
+                    return true;
             } else if (pipe instanceof RangePipe) {
                 final RangePipe rangePipe = (RangePipe) pipe;
                 vertexQueryPipe.low = rangePipe.low;
@@ -5,9 +5,11 @@ import com.tinkerpop.blueprints.Direction;
 import com.tinkerpop.blueprints.Edge;
 import com.tinkerpop.blueprints.Vertex;
 import com.tinkerpop.blueprints.tinkergraph.TinkerFactory;
+import com.tinkerpop.blueprints.util.StreamFactory;
 import com.tinkerpop.gremlin.FlatMapPipe;
 import com.tinkerpop.gremlin.Gremlin;
 import com.tinkerpop.gremlin.oltp.filter.HasPipe;
+import com.tinkerpop.gremlin.oltp.filter.IntervalPipe;
 import com.tinkerpop.gremlin.oltp.map.EdgeVertexPipe;
 import com.tinkerpop.gremlin.oltp.map.GraphQueryPipe;
 import com.tinkerpop.gremlin.oltp.map.VertexQueryPipe;
@@ -117,4 +119,22 @@ public class VertexQueryOptimizerTest {
         assertTrue(gremlin.getPipes().get(0) instanceof GraphQueryPipe);
         assertTrue(gremlin.getPipes().get(1) instanceof VertexQueryPipe);
     }
+
+    @Test
+    public void shouldOnlyPutIntervalParametersIntoVertexEdgeQueryBuilder() {
+        Gremlin gremlin = (Gremlin) Gremlin.of(TinkerFactory.createClassic());
+        gremlin.V().outE("created").interval("weight", 0.3f, 0.5f);
+        assertEquals(2, gremlin.getPipes().size());
+        assertEquals(2, ((VertexQueryPipe) gremlin.getPipes().get(1)).queryBuilder.hasContainers.size());
+        assertEquals(2, StreamFactory.stream(gremlin).count());
+
+        gremlin = (Gremlin) Gremlin.of(TinkerFactory.createClassic());
+        gremlin.V().out("knows").interval("age", 20, 30);
+        assertEquals(3, gremlin.getPipes().size());
+        assertTrue(gremlin.getPipes().get(2) instanceof IntervalPipe);
+        assertEquals(0, ((VertexQueryPipe) gremlin.getPipes().get(1)).queryBuilder.hasContainers.size());
+        assertTrue(gremlin.hasNext());
+        assertEquals("2", ((Vertex) gremlin.next()).getId());
+        assertFalse(gremlin.hasNext());
+    }
 }
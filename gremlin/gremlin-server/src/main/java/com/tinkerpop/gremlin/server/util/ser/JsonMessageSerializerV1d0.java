@@ -144,7 +144,7 @@ public class JsonMessageSerializerV1d0 implements MessageSerializer {
             jsonGenerator.writeStringField(TOKEN_TYPE, TOKEN_EDGE);
             jsonGenerator.writeObjectField(TOKEN_IN, edge.getVertex(Direction.IN).getId());
             jsonGenerator.writeObjectField(TOKEN_OUT, edge.getVertex(Direction.OUT).getId());
-            jsonGenerator.writeObjectField(TOKEN_PROPERTIES, edge.getProperties());
+            jsonGenerator.writeObjectField(TOKEN_PROPERTIES, edge.getPropertiesView());
             jsonGenerator.writeEndObject();
         }
     }
@@ -162,7 +162,7 @@ public class JsonMessageSerializerV1d0 implements MessageSerializer {
             jsonGenerator.writeObjectField(TOKEN_ID, vertex.getId());
             jsonGenerator.writeStringField(TOKEN_LABEL, vertex.getLabel());
             jsonGenerator.writeStringField(TOKEN_TYPE, TOKEN_VERTEX);
-            jsonGenerator.writeObjectField(TOKEN_PROPERTIES, vertex.getProperties());
+            jsonGenerator.writeObjectField(TOKEN_PROPERTIES, vertex.getPropertiesView());
             jsonGenerator.writeEndObject();
         }
     }